@@ -0,0 +1,88 @@
+package bench;
+
+import java.lang.management.ManagementFactory;
+
+import com.sun.management.ThreadMXBean;
+
+import math.*;
+import physics.*;
+
+/**
+ * Checks that stepping a simulation does not allocate any memory once the
+ * solver has been created. <br>
+ * <br>
+ * Every solver is warmed up against every simulation so the JIT has compiled
+ * the step, then the bytes allocated by this thread over a long run of steps 
+ * are read from the JVM. Anything other than 0 bytes per step is a failure.
+ * @author AD417
+ *
+ */
+public class AllocationCheck 
+{
+	/**
+	 * The number of steps taken before measuring. 
+	 */
+	static final int warmupSteps = 200_000;
+	
+	/**
+	 * The number of steps that are measured. 
+	 */
+	static final int measuredSteps = 1_000_000;
+	
+	static final ThreadMXBean threads = 
+			(ThreadMXBean) ManagementFactory.getThreadMXBean();
+	
+	/**
+	 * Measure the memory allocated per step by a solver.
+	 * @param solver the solver to step. 
+	 * @param stepSize the amount of time per step, in seconds.
+	 * @return the average number of bytes allocated per step. 
+	 */
+	static double bytesPerStep(AbstractSolverMethod solver, double stepSize)
+	{
+		for (int i = 0; i < warmupSteps; i++) solver.step(stepSize);
+		
+		final long threadId = Thread.currentThread().getId();
+		final long before = threads.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < measuredSteps; i++) solver.step(stepSize);
+		final long after = threads.getThreadAllocatedBytes(threadId);
+		
+		return (double) (after - before) / measuredSteps;
+	}
+	
+	/**
+	 * Report the allocation of a single solver, and record whether it passed.
+	 * @return true if the solver allocated nothing while stepping. 
+	 */
+	static boolean check(String name, AbstractSolverMethod solver)
+	{
+		double bytes = bytesPerStep(solver, Config.tickSize / 1000);
+		// The counter itself allocates a few bytes when it is read.
+		boolean passed = bytes < 0.01;
+		System.out.printf("%-40s %10.4f bytes/step %s%n", 
+				name, bytes, passed ? "OK" : "FAIL");
+		return passed;
+	}
+	
+	public static void main(String[] args) throws Exception
+	{
+		threads.setThreadAllocatedMemoryEnabled(true);
+		boolean passed = true;
+		
+		Pendulum p = new Pendulum(3, 5);
+		AbstractODE ode = p.new ODE();
+		passed &= check("Pendulum / EulersMethod", new EulersMethod(ode));
+		passed &= check("Pendulum / ModifiedEulersMethod", 
+				new ModifiedEulersMethod(ode));
+		passed &= check("Pendulum / RungeKutta", new RungeKutta(ode));
+		
+		DoublePendulum dp = new DoublePendulum(1, 0.1, 2.5, 30.0);
+		ode = dp.new ODE();
+		passed &= check("DoublePendulum / EulersMethod", new EulersMethod(ode));
+		passed &= check("DoublePendulum / ModifiedEulersMethod", 
+				new ModifiedEulersMethod(ode));
+		passed &= check("DoublePendulum / RungeKutta", new RungeKutta(ode));
+		
+		System.exit(passed ? 0 : 1);
+	}
+}
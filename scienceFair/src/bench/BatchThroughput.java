@@ -0,0 +1,92 @@
+package bench;
+
+import math.RungeKutta;
+import physics.*;
+
+/**
+ * Compares pendulum-steps per second of {@link DoublePendulumBatch} with 
+ * the usual one {@link DoublePendulum} and {@link RungeKutta} per pendulum.
+ * <br><br>
+ * Run with <code>--add-modules jdk.incubator.vector</code> to include the 
+ * SIMD version. 
+ * @author AD417
+ *
+ */
+public class BatchThroughput 
+{
+	/**
+	 * The number of pendulums stepped together. 
+	 */
+	static final int pendulums = 4096;
+	
+	/**
+	 * The number of steps each pendulum takes per measurement. 
+	 */
+	static final int steps = 2000;
+	
+	static final double stepSize = 0.001;
+	
+	static double startingAngle(int i)
+	{
+		return Math.PI * i / pendulums;
+	}
+	
+	static double objectRate() throws Exception
+	{
+		RungeKutta[] solvers = new RungeKutta[pendulums];
+		for (int i = 0; i < pendulums; i++)
+		{
+			DoublePendulum p = new DoublePendulum(1, 1, 1, 1, 
+					startingAngle(i), 0, Math.PI / 2, 0);
+			solvers[i] = new RungeKutta(p.createODE());
+		}
+		
+		final long start = System.nanoTime();
+		for (int s = 0; s < steps; s++)
+			for (RungeKutta solver : solvers) solver.step(stepSize);
+		return (double) pendulums * steps / 
+				((System.nanoTime() - start) * 1e-9);
+	}
+	
+	static double batchRate(boolean vectorized) throws Exception
+	{
+		DoublePendulumBatch batch = new DoublePendulumBatch(pendulums);
+		for (int i = 0; i < pendulums; i++)
+			batch.set(i, 1, 1, 1, 1, startingAngle(i), 0, Math.PI / 2, 0);
+		batch.setVectorized(vectorized);
+		
+		final long start = System.nanoTime();
+		for (int s = 0; s < steps; s++) batch.step(stepSize);
+		return (double) pendulums * steps / 
+				((System.nanoTime() - start) * 1e-9);
+	}
+	
+	public static void main(String[] args) throws Exception
+	{
+		System.out.printf("%-28s %16s%n", "Path", "Pendulum-steps / s");
+		// The first round warms up the JIT and isn't printed.
+		for (int round = 0; round < 3; round++)
+		{
+			final boolean print = round > 0;
+			double rate = objectRate();
+			if (print) System.out.printf("%-28s %16.0f%n", 
+					"DoublePendulum + RungeKutta", rate);
+			
+			rate = batchRate(false);
+			if (print) System.out.printf("%-28s %16.0f%n", "Batch, scalar", rate);
+			
+			DoublePendulumBatch probe = new DoublePendulumBatch(1);
+			if (probe.isVectorized())
+			{
+				rate = batchRate(true);
+				if (print) 
+					System.out.printf("%-28s %16.0f%n", "Batch, vector", rate);
+			}
+			else if (print) 
+			{
+				System.out.printf("%-28s %16s%n", "Batch, vector", 
+						"module not loaded");
+			}
+		}
+	}
+}
@@ -0,0 +1,400 @@
+package bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+import com.sun.management.ThreadMXBean;
+
+import math.*;
+import physics.*;
+
+/**
+ * Micro-benchmarks for every solver against every simulation, and for each
+ * phase of a step on its own. <br>
+ * <br>
+ * Works like a small JMH: each benchmark is run in its own JVM (so one 
+ * benchmark's JIT profile can't slow down another), warmed up, then timed
+ * over several iterations. Time is reported in ns per operation and 
+ * allocation in bytes per operation, read from the JVM's per-thread 
+ * allocation counter (what JMH's gc profiler calls gc.alloc.rate.norm).
+ * <br><br>
+ * Every result goes into a {@link Blackhole}, and the input changes a 
+ * little on every operation, so the JIT can neither throw the work away 
+ * nor do it once for the whole loop. 
+ * <br><br>
+ * Usage: <code>Benchmarks [-list] [-nofork] [name prefix...]</code>
+ * @author AD417
+ *
+ */
+public class Benchmarks 
+{
+	static final int warmupIterations = 5;
+	static final int measurementIterations = 10;
+	
+	/**
+	 * The length of each iteration, in nanoseconds. 
+	 */
+	static final long iterationNanos = 200_000_000L;
+	
+	static final double stepSize = Config.tickSize / 1000;
+	
+	/**
+	 * A benchmark, ready to be run a given number of times in a row. 
+	 */
+	interface Operation 
+	{
+		void run(long times);
+	}
+	
+	/**
+	 * Creates a fresh operation. 
+	 */
+	interface Setup 
+	{
+		Operation create() throws Exception;
+	}
+	
+	/**
+	 * Every benchmark, by name, in the order they run. 
+	 */
+	static final Map<String, Setup> benchmarks = new LinkedHashMap<>();
+	
+	/**
+	 * Somewhere to put results so the JIT can't skip computing them, like
+	 * JMH's Blackhole: every value is compared with two volatile fields 
+	 * that can never both equal it, so it has to be worked out, but nothing
+	 * is ever written. Reading the fields also stops the JIT from moving 
+	 * work from one operation out of the loop. 
+	 */
+	static final class Blackhole
+	{
+		volatile double d1 = 1, d2 = 2;
+		
+		void consume(double d)
+		{
+			if (d == d1 & d == d2) 
+				throw new IllegalStateException("The blackhole was fooled!");
+		}
+	}
+	
+	static final Blackhole blackhole = new Blackhole();
+	
+	static final ThreadMXBean threads = 
+			(ThreadMXBean) ManagementFactory.getThreadMXBean();
+	
+	static
+	{
+		Map<String, Function<AbstractODE, AbstractSolverMethod>> solvers = 
+				new LinkedHashMap<>();
+		solvers.put("EulersMethod", EulersMethod::new);
+		solvers.put("ModifiedEulersMethod", ModifiedEulersMethod::new);
+		solvers.put("RungeKutta", RungeKutta::new);
+		solvers.put("DormandPrince", DormandPrince::new);
+		solvers.put("VelocityVerlet", VelocityVerlet::new);
+		solvers.put("Yoshida", Yoshida::new);
+		
+		for (Map.Entry<String, Function<AbstractODE, AbstractSolverMethod>> 
+				solver : solvers.entrySet())
+		{
+			benchmarks.put("step." + solver.getKey() + ".Pendulum", 
+					() -> stepping(newPendulum(), solver.getValue()));
+			benchmarks.put("step." + solver.getKey() + ".DoublePendulum", 
+					() -> stepping(newDoublePendulum(), solver.getValue()));
+		}
+		
+		// Each operation changes the state a little first, through a call 
+		// that also marks any cached energies as out of date. 
+		benchmarks.put("getVars.Pendulum", () -> {
+			Pendulum p = newPendulum();
+			return gettingVars(p.createODE(), nudge(p));
+		});
+		benchmarks.put("getVars.DoublePendulum", () -> {
+			DoublePendulum p = newDoublePendulum();
+			return gettingVars(p.createODE(), nudge(p));
+		});
+		benchmarks.put("setVars.Pendulum", 
+				() -> settingVars(newPendulum().createODE()));
+		benchmarks.put("setVars.DoublePendulum", 
+				() -> settingVars(newDoublePendulum().createODE()));
+		benchmarks.put("evaluateChange.Pendulum", 
+				() -> evaluatingChange(newPendulum().createODE()));
+		benchmarks.put("evaluateChange.DoublePendulum", 
+				() -> evaluatingChange(newDoublePendulum().createODE()));
+		
+		benchmarks.put("energy.Pendulum.getTotalEnergy", () -> {
+			Pendulum p = newPendulum();
+			LongConsumer nudge = nudge(p);
+			return times -> {
+				for (long i = 0; i < times; i++) 
+				{
+					nudge.accept(i);
+					blackhole.consume(p.getTotalEnergy());
+				}
+			};
+		});
+		benchmarks.put("energy.DoublePendulum.getTotalEnergy", () -> {
+			DoublePendulum p = newDoublePendulum();
+			LongConsumer nudge = nudge(p);
+			return times -> {
+				for (long i = 0; i < times; i++) 
+				{
+					nudge.accept(i);
+					blackhole.consume(p.getTotalEnergy());
+				}
+			};
+		});
+		// The four energies recorded by DoublePendulum.appendSimState.
+		benchmarks.put("energy.DoublePendulum.bobs", () -> {
+			DoublePendulum p = newDoublePendulum();
+			Bob bob1 = p.getBob1(), bob2 = p.getBob2();
+			final double thetaPrime = bob1.getThetaPrime();
+			return times -> {
+				for (long i = 0; i < times; i++) 
+				{
+					bob1.setThetaPrime(thetaPrime + (i & 1) * 1e-3);
+					blackhole.consume(bob1.getPotentialEnergy() + 
+							bob1.getKineticEnergy() + 
+							bob2.getPotentialEnergy(bob1.getY()) + 
+							bob2.getKineticEnergy());
+				}
+			};
+		});
+	}
+	
+	/**
+	 * Change the angular velocity of a pendulum a little, depending on the
+	 * operation number. 
+	 */
+	static LongConsumer nudge(Pendulum p)
+	{
+		final double thetaPrime = p.getThetaPrime();
+		return i -> p.setThetaPrime(thetaPrime + (i & 1) * 1e-3);
+	}
+	
+	/**
+	 * Change the angular velocity of bob 1 a little, depending on the
+	 * operation number, and mark the cached energies as out of date. 
+	 */
+	static LongConsumer nudge(DoublePendulum p)
+	{
+		final Bob bob1 = p.getBob1();
+		final double thetaPrime = bob1.getThetaPrime();
+		return i -> {
+			bob1.setThetaPrime(thetaPrime + (i & 1) * 1e-3);
+			p.invalidate();
+		};
+	}
+	
+	static Pendulum newPendulum() throws Exception
+	{
+		Pendulum p = new Pendulum(3, 5);
+		p.setTheta(1);
+		return p;
+	}
+	
+	static DoublePendulum newDoublePendulum() throws Exception
+	{
+		return new DoublePendulum(1, 1, 1, 1, 1, 0, Math.PI / 2, 0);
+	}
+	
+	static Operation stepping(sim.Model model, 
+			Function<AbstractODE, AbstractSolverMethod> factory)
+	{
+		AbstractODE ode = model.createODE();
+		AbstractSolverMethod solver = factory.apply(ode);
+		final double[] start = ode.getVars();
+		final double[] vars = new double[ode.getSize()];
+		return times -> {
+			// Start every batch from the same state, so the unstable solvers
+			// can't run off to infinity. 
+			ode.setVars(start);
+			for (long i = 0; i < times; i++) solver.step(stepSize);
+			// Each step starts from the last one's result, so only the end
+			// of the batch needs to be used. 
+			ode.getVars(vars);
+			blackhole.consume(vars[0]);
+		};
+	}
+	
+	/**
+	 * @param nudge changes the state before each operation. 
+	 */
+	static Operation gettingVars(AbstractODE ode, LongConsumer nudge)
+	{
+		final double[] vars = new double[ode.getSize()];
+		return times -> {
+			for (long i = 0; i < times; i++) 
+			{
+				nudge.accept(i);
+				ode.getVars(vars);
+				blackhole.consume(mix(vars));
+			}
+		};
+	}
+	
+	/**
+	 * Combine every value of an array into one, cheaply: the bits are 
+	 * XORed together, which is much quicker than adding them up. 
+	 */
+	static double mix(double[] values)
+	{
+		long bits = 0;
+		for (double value : values) bits ^= Double.doubleToRawLongBits(value);
+		return Double.longBitsToDouble(bits);
+	}
+	
+	static Operation settingVars(AbstractODE ode)
+	{
+		final double[] vars = ode.getVars();
+		final double theta = vars[0];
+		return times -> {
+			for (long i = 0; i < times; i++) 
+			{
+				// Change the state a little so nothing can be skipped.
+				vars[0] = theta + (i & 1) * 1e-3;
+				ode.setVars(vars);
+			}
+		};
+	}
+	
+	static Operation evaluatingChange(AbstractODE ode)
+	{
+		final double[] vars = ode.getVars();
+		final double[] change = new double[ode.getSize()];
+		final double thetaPrime = vars[1];
+		return times -> {
+			for (long i = 0; i < times; i++) 
+			{
+				vars[1] = thetaPrime + (i & 1) * 1e-3;
+				ode.evaluateChange(vars, 0, change);
+				blackhole.consume(mix(change));
+			}
+		};
+	}
+	
+	/**
+	 * Run a single benchmark in this JVM and print its results. 
+	 */
+	static void run(String name) throws Exception
+	{
+		Operation op = benchmarks.get(name).create();
+		
+		// Find a batch size that takes about a tenth of an iteration. 
+		long batch = 1;
+		while (true)
+		{
+			final long start = System.nanoTime();
+			op.run(batch);
+			if (System.nanoTime() - start > iterationNanos / 10) break;
+			batch *= 2;
+		}
+		
+		for (int i = 0; i < warmupIterations; i++) iteration(op, batch);
+		
+		final long threadId = Thread.currentThread().getId();
+		double[] nanosPerOp = new double[measurementIterations];
+		long ops = 0;
+		final long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < measurementIterations; i++)
+		{
+			final long start = System.nanoTime();
+			final long done = iteration(op, batch);
+			nanosPerOp[i] = (double) (System.nanoTime() - start) / done;
+			ops += done;
+		}
+		final long bytes = 
+				threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+		
+		double mean = 0;
+		for (double n : nanosPerOp) mean += n;
+		mean /= measurementIterations;
+		double variance = 0;
+		for (double n : nanosPerOp) variance += (n - mean) * (n - mean);
+		final double error = 
+				Math.sqrt(variance / (measurementIterations - 1));
+		
+		System.out.printf("%-44s %12.2f +- %8.2f ns/op %12.3f B/op%n", 
+				name, mean, error, (double) bytes / ops);
+	}
+	
+	/**
+	 * Run batches of an operation for one iteration. 
+	 * @return the number of operations run. 
+	 */
+	static long iteration(Operation op, long batch)
+	{
+		final long end = System.nanoTime() + iterationNanos;
+		long done = 0;
+		do 
+		{
+			op.run(batch);
+			done += batch;
+		} while (System.nanoTime() < end);
+		return done;
+	}
+	
+	/**
+	 * Run a single benchmark in a new JVM with the same settings as this one.
+	 */
+	static void fork(String name) throws Exception
+	{
+		List<String> command = new ArrayList<>();
+		command.add(ProcessHandle.current().info().command()
+				.orElse("java"));
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		
+		String modulePath = System.getProperty("jdk.module.path");
+		if (modulePath != null)
+		{
+			command.add("-p");
+			command.add(modulePath);
+			command.add("-m");
+			command.add("scienceFair/" + Benchmarks.class.getName());
+		}
+		else 
+		{
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(Benchmarks.class.getName());
+		}
+		command.add("-nofork");
+		command.add(name);
+		
+		Process process = new ProcessBuilder(command).inheritIO().start();
+		if (process.waitFor() != 0) 
+			System.out.println(name + " failed!");
+	}
+	
+	public static void main(String[] args) throws Exception
+	{
+		boolean fork = true;
+		List<String> prefixes = new ArrayList<>();
+		for (String arg : args)
+		{
+			if (arg.equals("-list"))
+			{
+				benchmarks.keySet().forEach(System.out::println);
+				return;
+			}
+			else if (arg.equals("-nofork")) fork = false;
+			else prefixes.add(arg);
+		}
+		threads.setThreadAllocatedMemoryEnabled(true);
+		
+		for (String name : benchmarks.keySet())
+		{
+			boolean selected = prefixes.isEmpty();
+			for (String prefix : prefixes) 
+				selected |= name.startsWith(prefix);
+			if (!selected) continue;
+			
+			if (fork) fork(name);
+			else run(name);
+		}
+	}
+}
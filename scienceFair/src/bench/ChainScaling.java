@@ -0,0 +1,189 @@
+package bench;
+
+import java.util.Random;
+
+import math.*;
+import physics.*;
+
+/**
+ * Checks and times the {@link ChainPendulum} dynamics. <br>
+ * <br>
+ * First, a 2-link chain is checked against a {@link DoublePendulum} with
+ * the same setup. Then, for chains of 2 to 100 links,
+ * the recursive solver is compared against the textbook approach of
+ * building the full N x N mass matrix and solving it by Gaussian
+ * elimination on every evaluation: both for agreement and for time per
+ * evaluation and per Runge-Kutta step.
+ * @author AD417
+ *
+ */
+public class ChainScaling
+{
+	static final int[] links = {2, 3, 5, 10, 20, 50, 100};
+
+	/**
+	 * Work out theta'' for every link by building and solving the full
+	 * mass matrix. O(N^3); only here to check against.
+	 * @param p the chain, for its lengths and masses.
+	 * @param current the state, laid out like {@link ChainPendulum.ODE}.
+	 * @param M an N x N scratch matrix.
+	 * @param rhs N values; the answer is left here.
+	 */
+	static void denseAccelerations(ChainPendulum p, double[] current,
+			double[][] M, double[] rhs)
+	{
+		final int n = p.getLinks();
+		final double g = p.getParameters().gravity;
+
+		// The mass of each bob and everything after it.
+		double[] below = new double[n + 1];
+		for (int i = n - 1; i >= 0; i--)
+			below[i] = below[i + 1] + p.getBob(i).getMass();
+
+		for (int i = 0; i < n; i++)
+		{
+			final double Li = p.getBob(i).getLength();
+			final double ti = current[2 * i];
+			rhs[i] = -below[i] * g * Li * Math.sin(ti);
+			for (int j = 0; j < n; j++)
+			{
+				final double Lj = p.getBob(j).getLength();
+				final double tj = current[2 * j];
+				final double dtj = current[2 * j + 1];
+				final double mass = below[Math.max(i, j)];
+				M[i][j] = mass * Li * Lj * Math.cos(ti - tj);
+				rhs[i] -= mass * Li * Lj * Math.sin(ti - tj) * dtj * dtj;
+			}
+		}
+
+		// Gaussian elimination. The mass matrix is symmetric positive
+		// definite, so no pivoting is needed.
+		for (int k = 0; k < n; k++)
+		{
+			for (int i = k + 1; i < n; i++)
+			{
+				final double f = M[i][k] / M[k][k];
+				for (int j = k; j < n; j++) M[i][j] -= f * M[k][j];
+				rhs[i] -= f * rhs[k];
+			}
+		}
+		for (int i = n - 1; i >= 0; i--)
+		{
+			for (int j = i + 1; j < n; j++) rhs[i] -= M[i][j] * rhs[j];
+			rhs[i] /= M[i][i];
+		}
+	}
+
+	/**
+	 * Check a 2-link chain against a double pendulum with the same setup:
+	 * first their equations at random states, then their trajectories.
+	 * The double pendulum is chaotic, so rounding differences between the
+	 * two formulas grow exponentially; the trajectories only agree closely
+	 * for the first few seconds.
+	 */
+	static void compareWithDoublePendulum() throws Exception
+	{
+		final double l1 = 1, m1 = 0.1, l2 = 2.5, m2 = 30;
+		DoublePendulum dp = new DoublePendulum(l1, m1, l2, m2);
+		ChainPendulum chain = new ChainPendulum(
+				new double[] {l1, l2}, new double[] {m1, m2},
+				new double[] {0, Math.PI / 2}, new double[] {0, -0.001});
+
+		AbstractODE dpODE = dp.createODE();
+		AbstractODE chainODE = chain.createODE();
+		double[] a = new double[dpODE.getSize()];
+		double[] b = new double[chainODE.getSize()];
+		double[] da = new double[a.length];
+		double[] db = new double[b.length];
+		Random random = new Random(417);
+		double worst = 0;
+		for (int i = 0; i < 100000; i++)
+		{
+			for (int j = 0; j < 4; j++) 
+				a[j] = b[j] = (random.nextDouble() - 0.5) * 10;
+			dpODE.evaluateChange(a, 0, da);
+			chainODE.evaluateChange(b, 0, db);
+			worst = Math.max(worst, Math.max(
+					Math.abs(da[1] - db[1]) / Math.max(1, Math.abs(da[1])),
+					Math.abs(da[3] - db[3]) / Math.max(1, Math.abs(da[3]))));
+		}
+		System.out.printf("N=2 against DoublePendulum: largest relative "
+				+ "difference in theta'' over 100000 random states %.1e%n", 
+				worst);
+
+		AbstractSolverMethod dpSolver = new RungeKutta(dpODE);
+		AbstractSolverMethod chainSolver = new RungeKutta(chainODE);
+		final double stepSize = Config.tickSize / 1000;
+		for (int tick = 1; tick <= 10000; tick++)
+		{
+			dpSolver.step(stepSize);
+			chainSolver.step(stepSize);
+			if (tick % 2000 != 0) continue;
+			System.out.printf("  after %2d s of RK4 at 1 ms: angle "
+					+ "difference %.1e rad%n", tick / 1000, Math.max(
+					Math.abs(dp.getBob1().getTheta()
+							- chain.getBob(0).getTheta()),
+					Math.abs(dp.getBob2().getTheta()
+							- chain.getBob(1).getTheta())));
+		}
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		compareWithDoublePendulum();
+
+		System.out.printf("%n%6s %14s %14s %14s %12s%n", "Links",
+				"Recursive (ns)", "Dense (ns)", "RK4 step (ns)", "Difference");
+		for (int n : links)
+		{
+			ChainPendulum p = new ChainPendulum(n, 1, 1, Math.PI / 2);
+			// Get the chain moving so every term matters.
+			AbstractSolverMethod solver = new RungeKutta(p.createODE());
+			for (int i = 0; i < 500; i++) solver.step(0.001);
+
+			AbstractODE ode = p.createODE();
+			double[] state = ode.getVars();
+			double[] change = new double[ode.getSize()];
+			double[][] M = new double[n][n];
+			double[] rhs = new double[n];
+
+			ode.evaluateChange(state, 0, change);
+			denseAccelerations(p, state, M, rhs);
+			double difference = 0;
+			for (int i = 0; i < n; i++)
+				difference = Math.max(difference,
+						Math.abs(change[2 * i + 1] - rhs[i])
+						/ Math.max(1, Math.abs(rhs[i])));
+
+			final double recursive = time(() ->
+					ode.evaluateChange(state, 0, change));
+			final double dense = time(() ->
+					denseAccelerations(p, state, M, rhs));
+			final double step = time(() -> solver.step(0.001));
+
+			System.out.printf("%6d %14.0f %14.0f %14.0f %12.1e%n", n,
+					recursive, dense, step, difference);
+		}
+	}
+
+	/**
+	 * Time how long a task takes, after warming it up.
+	 * @return the time per run, in nanoseconds.
+	 */
+	static double time(Runnable task)
+	{
+		for (int i = 0; i < 2000; i++) task.run();
+
+		long runs = 0;
+		final long start = System.nanoTime();
+		long elapsed;
+		do
+		{
+			for (int i = 0; i < 100; i++) task.run();
+			runs += 100;
+			elapsed = System.nanoTime() - start;
+		}
+		while (elapsed < 300_000_000L);
+		return (double) elapsed / runs;
+	}
+}
@@ -0,0 +1,122 @@
+package bench;
+
+import math.*;
+import physics.*;
+import sim.*;
+
+/**
+ * Checks the dense output of {@link RungeKutta} and {@link DormandPrince}
+ * by sampling a double pendulum at 40 frames a second with steps that
+ * don't line up with the frames. <br>
+ * <br>
+ * Each way of taking frames is compared against a reference run with a 
+ * very tight tolerance, for how far its frames are from the reference and
+ * how many times it evaluated the simulation. The pendulum is chaotic, so
+ * only the first few seconds are compared. The light first bob of the 
+ * default pendulum swings quickly, so fixed steps need to be well under
+ * 1 ms to keep up.
+ * @author AD417
+ *
+ */
+public class DenseOutputCheck
+{
+	static final double frame = 1 / Config.FPS;
+
+	static final double seconds = 3;
+
+	static final int frames = (int) Math.round(seconds / frame) + 1;
+
+	static DoublePendulum pendulum() throws Exception
+	{
+		return new DoublePendulum(1, 0.1, 2.5, 30.0);
+	}
+
+	/**
+	 * Frames from stepping with a step that divides the frame time exactly,
+	 * and only looking at the steps that land on a frame.
+	 * @param solver creates the solver.
+	 * @param stepSize the step size, in seconds.
+	 * @param thetas where to put theta1 and theta2 of each frame.
+	 * @return the number of evaluations.
+	 */
+	static long onTicks(java.util.function.Function<AbstractODE,
+			AbstractSolverMethod> solver, double stepSize, double[][] thetas)
+			throws Exception
+	{
+		DoublePendulum p = pendulum();
+		AbstractSolverMethod s = solver.apply(p.createODE());
+		final long ticksPerFrame = Math.round(frame / stepSize);
+		SimulationEngine engine = new SimulationEngine(p, s, stepSize,
+				(frames - 1) * ticksPerFrame);
+		thetas[0][0] = p.getBob1().getTheta();
+		thetas[0][1] = p.getBob2().getTheta();
+		engine.addObserver(tick -> {
+			if (tick % ticksPerFrame != 0) return;
+			final int f = (int) (tick / ticksPerFrame);
+			thetas[f][0] = p.getBob1().getTheta();
+			thetas[f][1] = p.getBob2().getTheta();
+		});
+		engine.run();
+		return s.getEvaluations();
+	}
+
+	/**
+	 * Frames from the dense output of a solver, whatever the step size.
+	 * @return the number of evaluations.
+	 */
+	static long dense(java.util.function.Function<AbstractODE,
+			AbstractSolverMethod> solver, double stepSize, double[][] thetas)
+			throws Exception
+	{
+		DoublePendulum p = pendulum();
+		AbstractSolverMethod s = solver.apply(p.createODE());
+		SimulationEngine engine = new SimulationEngine(p, s, stepSize,
+				(long) Math.ceil(seconds / stepSize));
+		new DenseSampler(engine, frame, (sample, time, state) -> {
+			if (sample >= frames) return;
+			thetas[(int) sample][0] = state[0];
+			thetas[(int) sample][1] = state[2];
+		});
+		engine.run();
+		return s.getEvaluations();
+	}
+
+	static double worst(double[][] a, double[][] b)
+	{
+		double worst = 0;
+		for (int f = 0; f < frames; f++)
+			worst = Math.max(worst, Math.max(Math.abs(a[f][0] - b[f][0]),
+					Math.abs(a[f][1] - b[f][1])));
+		return worst;
+	}
+
+	static void report(String name, long evaluations, double[][] thetas,
+			double[][] reference)
+	{
+		System.out.printf("%-44s %10d %14.2e%n", name, evaluations,
+				worst(thetas, reference));
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		double[][] reference = new double[frames][2];
+		dense(ode -> new DormandPrince(ode, 1e-13, 1e-13), 1, reference);
+
+		System.out.printf("%d frames over %.0f s, against Dormand-Prince "
+				+ "at a tolerance of 1e-13%n", frames, seconds);
+		System.out.printf("%-44s %10s %14s%n", "Frames from", "Evaluations",
+				"Worst (rad)");
+
+		double[][] thetas = new double[frames][2];
+		report("RK4, 1 ms steps, every 25th tick",
+				onTicks(RungeKutta::new, 0.001, thetas), thetas, reference);
+		report("RK4, 0.25 ms steps, every 100th tick",
+				onTicks(RungeKutta::new, 0.00025, thetas), thetas, reference);
+		report("RK4, 0.3 ms steps, dense output",
+				dense(RungeKutta::new, 0.0003, thetas), thetas, reference);
+		report("Dormand-Prince, 25 ms steps, every tick",
+				onTicks(DormandPrince::new, frame, thetas), thetas, reference);
+		report("Dormand-Prince, 1 s steps, dense output",
+				dense(DormandPrince::new, 1, thetas), thetas, reference);
+	}
+}
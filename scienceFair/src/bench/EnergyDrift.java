@@ -0,0 +1,91 @@
+package bench;
+
+import java.util.function.DoubleSupplier;
+
+import math.*;
+import physics.*;
+
+/**
+ * Compares how much work each solver needs to keep the energy of a 
+ * {@link DoublePendulum} close to where it started. <br>
+ * <br>
+ * Each solver runs the same simulation for {@link #duration} seconds of 
+ * simulated time. The worst relative energy error seen along the way is 
+ * reported next to the number of calls to evaluateChange it took.
+ * @author AD417
+ *
+ */
+public class EnergyDrift 
+{
+	/**
+	 * The amount of simulated time each solver runs for, in seconds. 
+	 */
+	static final double duration = 100;
+	
+	/**
+	 * How often the energy is checked, in seconds of simulated time. 
+	 */
+	static final double sampleInterval = 0.1;
+	
+	/**
+	 * Run a solver for the given amount of simulated time, in steps of 
+	 * stepSize.
+	 * @param ode the simulation the solver is stepping. 
+	 * @param totalEnergy reads the total energy of the simulation.
+	 * @return the worst relative energy error seen. 
+	 */
+	static double worstEnergyError(AbstractODE ode, DoubleSupplier totalEnergy,
+			AbstractSolverMethod solver, double stepSize, double duration)
+	{
+		// Make sure the energy matches the initial state. 
+		ode.setVars(ode.getVars());
+		final double initialEnergy = totalEnergy.getAsDouble();
+		
+		final int stepsPerSample = 
+				Math.max(1, (int) Math.round(sampleInterval / stepSize));
+		final int samples = (int) Math.round(
+				duration / (stepsPerSample * stepSize));
+		
+		double worst = 0;
+		for (int i = 0; i < samples; i++)
+		{
+			for (int j = 0; j < stepsPerSample; j++) solver.step(stepSize);
+			double error = Math.abs(totalEnergy.getAsDouble() - initialEnergy) 
+					/ Math.abs(initialEnergy);
+			worst = Math.max(worst, error);
+		}
+		return worst;
+	}
+	
+	static DoublePendulum newPendulum() throws Exception
+	{
+		return new DoublePendulum(1, 0.1, 2.5, 30.0);
+	}
+	
+	public static void main(String[] args) throws Exception
+	{
+		System.out.printf("%-32s %14s %14s%n", 
+				"Solver", "Energy error", "Evaluations");
+		
+		DoublePendulum p = newPendulum();
+		AbstractODE ode = p.new ODE();
+		final double tick = Config.tickSize / 1000;
+		double error = worstEnergyError(ode, p::getTotalEnergy, 
+				new RungeKutta(ode), tick, duration);
+		System.out.printf("%-32s %14.3e %14d%n", "RungeKutta, 1ms", 
+				error, 4 * Math.round(duration / tick));
+		
+		for (double tolerance : new double[] {1e-6, 1e-8, 1e-10, 1e-12})
+		{
+			p = newPendulum();
+			ode = p.new ODE();
+			DormandPrince solver = new DormandPrince(ode, tolerance, tolerance);
+			error = worstEnergyError(ode, p::getTotalEnergy, solver, 
+					sampleInterval, duration);
+			System.out.printf("%-32s %14.3e %14d   (%d accepted, %d rejected)%n", 
+					"DormandPrince, tol " + tolerance, error, 
+					solver.getEvaluations(), 
+					solver.getAcceptedSteps(), solver.getRejectedSteps());
+		}
+	}
+}
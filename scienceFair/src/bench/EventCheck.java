@@ -0,0 +1,139 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import math.*;
+import physics.*;
+import sim.*;
+
+/**
+ * Checks {@link EventDetector} against answers that are known exactly. <br>
+ * <br>
+ * First, the period of a single pendulum swinging through a large angle,
+ * which has an exact formula, is measured from the times it passes the
+ * bottom of its swing going the same way. This is done at several step sizes, and
+ * compared with the old way of looking for the tick where the angle
+ * changed sign. Then a double pendulum is run until bob 2 first flips over
+ * the top, stopping the run right there.
+ * @author AD417
+ *
+ */
+public class EventCheck
+{
+	static final int periods = 10;
+
+	/**
+	 * The exact period of a pendulum, from the complete elliptic integral
+	 * of the first kind, worked out with the arithmetic-geometric mean.
+	 * @param length the length of the rod, in meters.
+	 * @param amplitude the largest angle it reaches, in radians.
+	 * @param g the force of gravity, in m/s^2.
+	 * @return the period, in seconds.
+	 */
+	static double exactPeriod(double length, double amplitude, double g)
+	{
+		final double k = Math.sin(amplitude / 2);
+		double a = 1, b = Math.sqrt(1 - k * k);
+		for (int i = 0; i < 10; i++)
+		{
+			final double mean = (a + b) / 2;
+			b = Math.sqrt(a * b);
+			a = mean;
+		}
+		return 4 * Math.sqrt(length / g) * Math.PI / (2 * a);
+	}
+
+	/**
+	 * Run a pendulum and find the largest error in the time of each swing.
+	 * @param solver the solver to use.
+	 * @param stepSize the step size, in seconds.
+	 * @param events whether to use events, rather than the ticks where the
+	 * angle changed sign.
+	 * @param exact the exact period.
+	 */
+	static void period(String name, java.util.function.Function<AbstractODE,
+			AbstractSolverMethod> solver, double stepSize, boolean events,
+			double exact) throws Exception
+	{
+		Pendulum p = new Pendulum(3, 5);
+		AbstractSolverMethod s = solver.apply(p.createODE());
+		SimulationEngine engine = new SimulationEngine(p, s, stepSize,
+				(long) Math.ceil((periods + 0.5) * exact / stepSize));
+
+		// Times the bob passed the bottom going forwards.
+		List<Double> times = new ArrayList<>();
+		if (events)
+		{
+			new EventDetector(s, 0).add("Bottom", state -> state[0],
+					Event.Direction.RISING, (event, time, state) -> {
+						times.add(time);
+						return Event.Action.CONTINUE;
+					});
+		}
+		else
+		{
+			final double[] last = {0};
+			engine.addObserver(tick -> {
+				final double theta = p.getTheta();
+				if (last[0] < 0 && theta >= 0) times.add(tick * stepSize);
+				last[0] = theta;
+			});
+		}
+		engine.run();
+
+		double worst = 0;
+		for (int i = 1; i < times.size(); i++)
+			worst = Math.max(worst,
+					Math.abs(times.get(i) - times.get(i - 1) - exact));
+		System.out.printf("%-40s %8d %12.2e%n", name, s.getEvaluations(),
+				worst);
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		// The pendulum starts at the bottom moving at 1 rad/s, so its energy
+		// gives how high it swings.
+		Pendulum probe = new Pendulum(3, 5);
+		final double length = 3, g = probe.getParameters().gravity;
+		final double amplitude = Math.acos(1 - length * 1 / (2 * g));
+		final double exact = exactPeriod(length, amplitude, g);
+		System.out.printf("Pendulum period: exactly %.12f s; worst error "
+				+ "over %d swings%n", exact, periods);
+		System.out.printf("%-40s %8s %12s%n", "Swings found from",
+				"Evals", "Error (s)");
+		period("RK4, 1 ms steps, sign change per tick", RungeKutta::new,
+				0.001, false, exact);
+		period("RK4, 1 ms steps, events", RungeKutta::new, 0.001, true,
+				exact);
+		period("RK4, 50 ms steps, events", RungeKutta::new, 0.05, true,
+				exact);
+		period("Dormand-Prince, 1 s steps, events", DormandPrince::new, 1,
+				true, exact);
+
+		System.out.printf("%nDouble pendulum, until bob 2 first flips%n");
+		flip("Dormand-Prince, tolerance 1e-13, 0.1 s steps",
+				ode -> new DormandPrince(ode, 1e-13, 1e-13));
+		flip("Dormand-Prince, default tolerance, 0.1 s steps",
+				DormandPrince::new);
+	}
+
+	/**
+	 * Run a double pendulum until bob 2 first goes over the top.
+	 */
+	static void flip(String name, java.util.function.Function<AbstractODE,
+			AbstractSolverMethod> solver) throws Exception
+	{
+		DoublePendulum p = new DoublePendulum(1, 1, 1, 1, 2, 0, 2.5, 0);
+		AbstractSolverMethod s = solver.apply(p.createODE());
+		final double stepSize = 0.1;
+		SimulationEngine engine = new SimulationEngine(p, s, stepSize, 1000);
+		EventDetector detector = new EventDetector(s, 0).add("Flip",
+				state -> Math.PI - Math.abs(state[2]), Event.Direction.FALLING,
+				Event.stop());
+		engine.stopWhen(detector::isStopped);
+		engine.run();
+		System.out.printf("%-48s flipped at %.9f s, stopped after %d of "
+				+ "1000 ticks%n", name, detector.getStopTime(), p.getTicks());
+	}
+}
@@ -0,0 +1,184 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import io.*;
+import math.RungeKutta;
+import physics.DoublePendulum;
+import sim.SimulationEngine;
+
+/**
+ * Checks {@link PyramidTrajectoryReader} against reading every row of the
+ * same recording, and times plotting the whole recording both ways. <br>
+ * <br>
+ * A double pendulum is recorded to a binary trajectory, which is then
+ * played back into a pyramid in one go, and into another that is stopped
+ * part way and resumed from a row in the middle of a bucket, the way a
+ * checkpoint would. Both pyramids should give the same answers as the
+ * trajectory, for ranges of any length.
+ * @author AD417
+ *
+ */
+public class PyramidCheck
+{
+	static final long ticks = 2_000_000;
+
+	static final int[] trajectoryColumns = {
+			TrajectoryFormat.T1, TrajectoryFormat.T2, TrajectoryFormat.TOTAL};
+
+	/**
+	 * Play rows of a trajectory into a pyramid.
+	 */
+	static void replay(BinaryTrajectoryReader trajectory,
+			PyramidTrajectoryWriter pyramid, long from, long to)
+			throws IOException
+	{
+		double[] row = new double[TrajectoryFormat.columns];
+		for (long r = from; r < to; r++)
+		{
+			trajectory.readRow(r, row);
+			pyramid.write((long) row[0], row[1], row[2], row[3], row[4],
+					row[5], row[6], row[7], row[8], row[9]);
+		}
+	}
+
+	/**
+	 * Find the min, max and mean of a column by reading every row.
+	 */
+	static void scan(BinaryTrajectoryReader trajectory, int column,
+			long from, long to, double[] out)
+	{
+		double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+		double sum = 0;
+		for (long r = from; r < to; r++)
+		{
+			final double value = trajectory.get(r, column);
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+			sum += value;
+		}
+		out[0] = min;
+		out[1] = max;
+		out[2] = sum / (to - from);
+	}
+
+	/**
+	 * Find the worst difference from reading every row over random ranges.
+	 * @return the worst difference in min or max, and in the mean.
+	 */
+	static double[] compare(BinaryTrajectoryReader trajectory,
+			PyramidTrajectoryReader pyramid)
+	{
+		Random random = new Random(1);
+		double[] expected = new double[3], actual = new double[3];
+		double[] worst = new double[2];
+		for (int i = 0; i < 300; i++)
+		{
+			// Lengths from a single row up to the whole recording.
+			final long length = Math.max(1, (long) Math.pow(ticks,
+					random.nextDouble()));
+			final long from = (long) (random.nextDouble() * (ticks - length));
+			final int channel = random.nextInt(PyramidFormat.channels);
+			scan(trajectory, trajectoryColumns[channel], from, from + length,
+					expected);
+			pyramid.summarize(channel, from, from + length, actual);
+			worst[0] = Math.max(worst[0], Math.max(
+					Math.abs(actual[0] - expected[0]),
+					Math.abs(actual[1] - expected[1])));
+			worst[1] = Math.max(worst[1], Math.abs(actual[2] - expected[2]));
+		}
+		return worst;
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		Path directory = Files.createTempDirectory("pyramid");
+		Path trajectoryPath = directory.resolve("trajectory.bin");
+		Path whole = directory.resolve("whole.lod");
+		Path resumed = directory.resolve("resumed.lod");
+
+		DoublePendulum p = new DoublePendulum(1, 1, 1, 1, 2, 0, 2.5, 0);
+		SimulationEngine engine = new SimulationEngine(p,
+				new RungeKutta(p.createODE()), 0.0005, ticks);
+		p.startRecording(trajectoryPath.toString());
+		engine.addObserver(tick -> p.appendSimState());
+		engine.run();
+		p.stopRecording();
+
+		try (BinaryTrajectoryReader trajectory =
+				new BinaryTrajectoryReader(trajectoryPath))
+		{
+			long start = System.nanoTime();
+			try (PyramidTrajectoryWriter pyramid =
+					new PyramidTrajectoryWriter(whole))
+			{
+				replay(trajectory, pyramid, 0, ticks);
+			}
+			System.out.printf("Built a pyramid of %d rows in %.0f ms%n",
+					ticks, (System.nanoTime() - start) * 1e-6);
+
+			// Stopped well after the row it is resumed from, which is in
+			// the middle of a bucket at every level.
+			final long stop = 1_300_000, resumeAt = 1_000_003;
+			try (PyramidTrajectoryWriter pyramid =
+					new PyramidTrajectoryWriter(resumed))
+			{
+				replay(trajectory, pyramid, 0, stop);
+			}
+			try (PyramidTrajectoryWriter pyramid =
+					PyramidTrajectoryWriter.resume(resumed, resumeAt))
+			{
+				replay(trajectory, pyramid, resumeAt, ticks);
+			}
+
+			for (Path path : new Path[] {whole, resumed})
+			{
+				try (PyramidTrajectoryReader pyramid =
+						new PyramidTrajectoryReader(path))
+				{
+					double[] worst = compare(trajectory, pyramid);
+					System.out.printf("%-12s %d rows, worst min/max "
+							+ "difference %.1e, worst mean difference %.1e%n",
+							path.getFileName(), pyramid.getRows(), worst[0],
+							worst[1]);
+				}
+			}
+
+			// Plot all of theta2 across 1000 pixels.
+			final int pixels = 1000;
+			double[] min = new double[pixels], max = new double[pixels];
+			double[] mean = new double[pixels], out = new double[3];
+			try (PyramidTrajectoryReader pyramid =
+					new PyramidTrajectoryReader(whole))
+			{
+				for (int i = 0; i < 5; i++)
+				{
+					start = System.nanoTime();
+					pyramid.plot(PyramidFormat.THETA2, 0, ticks, min, max,
+							mean);
+				}
+				System.out.printf("Plot of %d pixels from the pyramid: "
+						+ "%.2f ms%n", pixels,
+						(System.nanoTime() - start) * 1e-6);
+			}
+			for (int i = 0; i < 3; i++)
+			{
+				start = System.nanoTime();
+				for (int x = 0; x < pixels; x++)
+					scan(trajectory, TrajectoryFormat.T2, ticks * x / pixels,
+							ticks * (x + 1) / pixels, out);
+			}
+			System.out.printf("Plot of %d pixels reading every row: "
+					+ "%.2f ms%n", pixels, (System.nanoTime() - start) * 1e-6);
+		}
+
+		try (var paths = Files.walk(directory))
+		{
+			paths.sorted(java.util.Comparator.reverseOrder())
+					.forEach(path -> path.toFile().delete());
+		}
+	}
+}
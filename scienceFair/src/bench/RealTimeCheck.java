@@ -0,0 +1,110 @@
+package bench;
+
+import math.RungeKutta;
+import physics.*;
+import sim.*;
+
+/**
+ * Checks that {@link RealTimeScheduler} keeps simulated time on real time.
+ * <br><br>
+ * A pendulum is run in real time with tick sizes that aren't a whole
+ * number of milliseconds, and at the end of every frame the simulated time
+ * is compared with how much real time has passed, apart from any ticks
+ * that were dropped. Then the simulation is made to stall for a second
+ * part way through, and finally made too slow to ever keep up, to check
+ * that it catches up without running away. Ticks longer than a frame can
+ * be up to a tick behind, since a tick is only run once its time has come.
+ * @author AD417
+ *
+ */
+public class RealTimeCheck
+{
+	/**
+	 * How long each case runs for, in seconds of real time.
+	 */
+	static final double seconds = 3;
+
+	/**
+	 * Run a pendulum in real time and report how well it kept up.
+	 * @param tickSize the length of a tick, in milliseconds.
+	 * @param stallAt the tick to stall for a second at, or -1.
+	 * @param workPerTick how long to busy-wait after every tick, in
+	 * nanoseconds, to make the simulation slower.
+	 */
+	static void run(String name, double tickSize, long stallAt,
+			long workPerTick) throws Exception
+	{
+		Pendulum p = new Pendulum(3, 5,
+				SimulationParameters.defaults.withTickSize(tickSize));
+		final double stepSize = tickSize / 1000;
+		SimulationEngine engine = new SimulationEngine(p,
+				new RungeKutta(p.createODE()), stepSize, Long.MAX_VALUE);
+		RealTimeScheduler scheduler = new RealTimeScheduler(engine);
+
+		final long start = System.nanoTime();
+		// Frames, and at the end of the last one, the simulated time over the
+		// real time, and how far apart they were in nanoseconds.
+		final long[] frames = {0};
+		final double[] ratio = {0}, error = {0};
+		engine.addObserver(new SimulationObserver() {
+			@Override
+			public void onTick(long tick)
+			{
+				if (tick == stallAt) sleep(1000);
+				final long until = System.nanoTime() + workPerTick;
+				while (workPerTick > 0 && System.nanoTime() < until);
+			}
+
+			@Override
+			public void onFrame(long tick)
+			{
+				final long elapsed = System.nanoTime() - start;
+				if (elapsed > seconds * 1e9)
+				{
+					engine.stop();
+					return;
+				}
+				frames[0]++;
+				ratio[0] = tick * stepSize * 1e9 / elapsed;
+				error[0] = elapsed - (tick + scheduler.getDroppedTicks())
+						* stepSize * 1e9;
+			}
+		});
+		scheduler.run();
+
+		if (name == null) return;
+		System.out.printf("%-30s %9.4f %8.3f %6d %9d %10.3f%n", name,
+				tickSize, ratio[0], frames[0],
+				scheduler.getDroppedTicks(), error[0] * 1e-6);
+	}
+
+	static void sleep(long millis)
+	{
+		try
+		{
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		System.out.printf("%.0f s of real time each, at %.0f frames a "
+				+ "second%n", seconds, Config.FPS);
+		// Warm up first, so the first case isn't slowed down by compiling.
+		run(null, 1, -1, 0);
+		System.out.printf("%-30s %9s %8s %6s %9s %10s%n", "Case",
+				"Tick (ms)", "Sim/real", "Frames", "Dropped",
+				"Off by (ms)");
+		run("Whole ticks", 1, -1, 0);
+		run("Ticks of a third of a ms", 1.0 / 3, -1, 0);
+		run("Ticks of 0.37 ms", 0.37, -1, 0);
+		run("Ticks longer than a frame", 37.7, -1, 0);
+		run("Stalls for 1 s", 0.37, Math.round(1000 / 0.37), 0);
+		// Each tick of 0.1 ms takes 0.2 ms of real time.
+		run("Twice as slow as real time", 0.1, -1, 200_000);
+	}
+}
@@ -0,0 +1,91 @@
+package bench;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+import com.sun.management.ThreadMXBean;
+
+import math.*;
+import physics.*;
+import sim.*;
+
+/**
+ * Measures the memory allocated by a whole double pendulum run, the way a
+ * window or exporter would watch it. <br>
+ * <br>
+ * Every tick, the centers and positions of both bobs are read into a
+ * reused {@link Vector}. Optionally, every 25th tick (40 frames a second)
+ * a frame is also drawn offscreen. Each run is done twice, and the second
+ * run is the one that counts, once the JIT has settled. Unlike
+ * {@link AllocationCheck}, drawing is expected to allocate a little inside
+ * Java2D, so nothing here passes or fails.
+ * @author AD417
+ *
+ */
+public class RunAllocation
+{
+	static final ThreadMXBean threads =
+			(ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	/**
+	 * Run a double pendulum and measure what this thread allocated.
+	 * @param ticks the number of ticks to run.
+	 * @param draw whether to draw frames as well.
+	 * @return the number of bytes allocated.
+	 */
+	static long run(long ticks, boolean draw) throws Exception
+	{
+		DoublePendulum p = new DoublePendulum(1, 0.1, 2.5, 30.0);
+		SimulationEngine engine = new SimulationEngine(p,
+				new RungeKutta(p.createODE()),
+				p.getParameters().stepSize, ticks);
+
+		BufferedImage image = new BufferedImage(500, 500,
+				BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_ON);
+		double[] snapshot = new double[DoublePendulum.snapshotSize];
+		Vector v = new Vector();
+		double[] sum = {0};
+
+		engine.addObserver(tick -> {
+			Bob bob1 = p.getBob1(), bob2 = p.getBob2();
+			sum[0] += bob1.getCenter(v).x + bob1.getPosition(v).y
+					+ bob2.getCenter(v).x + bob2.getPosition(v).y;
+			if (!draw || tick % 25 != 0) return;
+			p.getSnapshot(snapshot);
+			DoublePendulum.drawSnapshot(g, snapshot);
+		});
+
+		final long threadId = Thread.currentThread().getId();
+		final long before = threads.getThreadAllocatedBytes(threadId);
+		engine.run();
+		final long after = threads.getThreadAllocatedBytes(threadId);
+		g.dispose();
+		// Keep the positions from being optimized away.
+		if (sum[0] == 0.5) System.out.println();
+		return after - before;
+	}
+
+	/**
+	 * Usage: <code>RunAllocation [ticks]</code>
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		threads.setThreadAllocatedMemoryEnabled(true);
+		final long ticks = args.length > 0
+				? Long.parseLong(args[0]) : 1_000_000;
+
+		for (boolean draw : new boolean[] {false, true})
+		{
+			run(ticks, draw);
+			final long bytes = run(ticks, draw);
+			System.out.printf("%-22s %10.1f MB %10.2f bytes/tick%n",
+					draw ? "Positions and frames" : "Positions", bytes / 1e6,
+					(double) bytes / ticks);
+		}
+	}
+}
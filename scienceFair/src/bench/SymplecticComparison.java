@@ -0,0 +1,123 @@
+package bench;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+
+import math.*;
+import physics.*;
+
+/**
+ * Compares the symplectic solvers against the existing ones on long runs. 
+ * <br><br>
+ * Every solver is run at a range of step sizes, and the largest step that
+ * keeps the energy error under {@link #targetError} is found. The speed of 
+ * each solver at that step is then reported as steps per second and as 
+ * seconds of simulated time per second of real time, which is the number
+ * that matters for long runs.
+ * @author AD417
+ *
+ */
+public class SymplecticComparison 
+{
+	/**
+	 * The largest acceptable relative energy error over the whole run. 
+	 */
+	static final double targetError = 1e-5;
+	
+	/**
+	 * The step sizes tried, in milliseconds. 
+	 */
+	static final double[] stepSizes = {0.5, 1, 2, 5, 10, 20, 50};
+	
+	/**
+	 * A fresh simulation, along with a way to read its energy. 
+	 */
+	static class Case
+	{
+		final AbstractODE ode;
+		final DoubleSupplier totalEnergy;
+		
+		Case(AbstractODE _ode, DoubleSupplier _totalEnergy)
+		{
+			ode = _ode;
+			totalEnergy = _totalEnergy;
+		}
+	}
+	
+	interface CaseFactory
+	{
+		Case create() throws Exception;
+	}
+	
+	static void compare(String name, CaseFactory factory, double duration,
+			Map<String, Function<AbstractODE, AbstractSolverMethod>> solvers) 
+			throws Exception
+	{
+		System.out.printf("%n%s, %.0f s simulated, energy error <= %.0e%n", 
+				name, duration, targetError);
+		System.out.printf("%-22s %10s %14s %14s %16s%n", "Solver", 
+				"Step (ms)", "Energy error", "Steps / s", "Sim s / real s");
+		
+		for (Map.Entry<String, Function<AbstractODE, AbstractSolverMethod>> 
+				entry : solvers.entrySet())
+		{
+			double bestStep = 0, bestError = 0, bestRate = 0;
+			for (double stepMillis : stepSizes)
+			{
+				Case c = factory.create();
+				AbstractSolverMethod solver = entry.getValue().apply(c.ode);
+				final double stepSize = stepMillis / 1000;
+				
+				final long start = System.nanoTime();
+				double error;
+				try 
+				{
+					error = EnergyDrift.worstEnergyError(c.ode, 
+							c.totalEnergy, solver, stepSize, duration);
+				}
+				catch (IllegalStateException e)
+				{
+					// The solver gave up, so this step is too large. 
+					break;
+				}
+				final double seconds = (System.nanoTime() - start) * 1e-9;
+				
+				if (error > targetError) break;
+				bestStep = stepMillis;
+				bestError = error;
+				bestRate = (duration / stepSize) / seconds;
+			}
+			
+			if (bestStep == 0)
+				System.out.printf("%-22s %10s%n", entry.getKey(), 
+						"none of the steps are accurate enough");
+			else
+				System.out.printf("%-22s %10.1f %14.3e %14.0f %16.1f%n", 
+						entry.getKey(), bestStep, bestError, bestRate, 
+						bestRate * bestStep / 1000);
+		}
+	}
+	
+	public static void main(String[] args) throws Exception
+	{
+		Map<String, Function<AbstractODE, AbstractSolverMethod>> solvers = 
+				new LinkedHashMap<>();
+		solvers.put("ModifiedEulersMethod", ModifiedEulersMethod::new);
+		solvers.put("RungeKutta", RungeKutta::new);
+		solvers.put("VelocityVerlet", VelocityVerlet::new);
+		solvers.put("Yoshida", Yoshida::new);
+		
+		compare("Pendulum", () -> {
+			Pendulum p = new Pendulum(3, 5);
+			p.setTheta(2.5);
+			return new Case(p.new ODE(), p::getTotalEnergy);
+		}, 10_000, solvers);
+		
+		compare("DoublePendulum", () -> {
+			DoublePendulum p = new DoublePendulum(1, 1, 1, 1);
+			return new Case(p.new ODE(), p::getTotalEnergy);
+		}, 1_000, solvers);
+	}
+}
@@ -0,0 +1,186 @@
+package io;
+
+import static io.TrajectoryFormat.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a trajectory written by {@link BinaryTrajectoryWriter}. <br>
+ * <br>
+ * The file is memory-mapped rather than read, so opening even a huge 
+ * trajectory is instant, and the operating system only loads the parts 
+ * that are actually looked at. Any value of any row can be found in O(1). 
+ * @author AD417
+ *
+ */
+public class BinaryTrajectoryReader implements Closeable 
+{
+	/**
+	 * A single mapping can't be larger than 2GB, so large files are mapped 
+	 * in segments of (about) this size. 
+	 */
+	static final long segmentBytes = 1L << 30;
+	
+	final FileChannel channel;
+	
+	final int blockRows;
+	
+	final long blockBytes;
+	
+	/**
+	 * The number of rows in the file. 
+	 */
+	final long rows;
+	
+	/**
+	 * The number of whole blocks in each segment. 
+	 */
+	final long blocksPerSegment;
+	
+	final MappedByteBuffer[] segments;
+	
+	/**
+	 * Open a trajectory file. 
+	 * @param path the file to read. 
+	 * @throws IOException If the file can't be read, or is not a trajectory.
+	 */
+	public BinaryTrajectoryReader(Path path) throws IOException
+	{
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		try 
+		{
+			if (channel.size() < headerBytes) 
+				throw new IOException("Not a trajectory file: " + path);
+			MappedByteBuffer header = 
+					channel.map(MapMode.READ_ONLY, 0, headerBytes);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getInt(magicOffset) != magic) 
+				throw new IOException("Not a trajectory file: " + path);
+			if (header.getInt(versionOffset) != version ||
+					header.getInt(columnsOffset) != columns)
+				throw new IOException("Unsupported trajectory file: " + path);
+			
+			blockRows = header.getInt(blockRowsOffset);
+			blockBytes = blockBytes(blockRows);
+			rows = header.getLong(rowsOffset);
+			
+			final long blocks = (rows + blockRows - 1) / blockRows;
+			blocksPerSegment = Math.max(1, segmentBytes / blockBytes);
+			segments = new MappedByteBuffer[
+					(int) ((blocks + blocksPerSegment - 1) / blocksPerSegment)];
+			for (int i = 0; i < segments.length; i++)
+			{
+				final long first = i * blocksPerSegment;
+				final long count = Math.min(blocksPerSegment, blocks - first);
+				segments[i] = channel.map(MapMode.READ_ONLY, 
+						headerBytes + first * blockBytes, count * blockBytes);
+				segments[i].order(ByteOrder.LITTLE_ENDIAN);
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Get the number of rows in the trajectory. 
+	 * @return the number of rows. 
+	 */
+	public long getRows()
+	{
+		return rows;
+	}
+	
+	/**
+	 * Find where a value is in its segment.
+	 */
+	int position(long row, int column)
+	{
+		final long block = row / blockRows;
+		final long inSegment = block % blocksPerSegment;
+		return (int) (inSegment * blockBytes + 
+				((long) column * blockRows + row % blockRows) * Long.BYTES);
+	}
+	
+	MappedByteBuffer segment(long row)
+	{
+		if (row < 0 || row >= rows) throw new IndexOutOfBoundsException(
+				"Row " + row + " of " + rows);
+		return segments[(int) (row / blockRows / blocksPerSegment)];
+	}
+	
+	/**
+	 * Get the tick of a row. 
+	 */
+	public long getTick(long row)
+	{
+		return segment(row).getLong(position(row, TICK));
+	}
+	
+	/**
+	 * Get a single value of a row. 
+	 * @param column one of the columns in {@link TrajectoryFormat}, other 
+	 * than the tick. 
+	 */
+	public double get(long row, int column)
+	{
+		if (column <= TICK || column >= columns) 
+			throw new IndexOutOfBoundsException("Column " + column);
+		return segment(row).getDouble(position(row, column));
+	}
+	
+	/**
+	 * Copy every value of a row into an array. The tick is converted to a 
+	 * double. 
+	 * @param values an array of at least {@link TrajectoryFormat#columns}
+	 * values to fill. 
+	 */
+	public void readRow(long row, double[] values)
+	{
+		final MappedByteBuffer segment = segment(row);
+		final int at = position(row, TICK);
+		final int stride = blockRows * Long.BYTES;
+		values[TICK] = segment.getLong(at);
+		for (int column = T1; column < columns; column++)
+			values[column] = segment.getDouble(at + column * stride);
+	}
+	
+	/**
+	 * Find the row that recorded a tick. 
+	 * @return the row, or -1 if the tick was never recorded. 
+	 */
+	public long findTick(long tick)
+	{
+		if (rows == 0) return -1;
+		
+		// Recordings normally have one row for every tick.
+		final long guess = tick - getTick(0);
+		if (guess >= 0 && guess < rows && getTick(guess) == tick) return guess;
+		
+		long low = 0, high = rows - 1;
+		while (low <= high)
+		{
+			final long middle = (low + high) >>> 1;
+			final long middleTick = getTick(middle);
+			if (middleTick < tick) low = middle + 1;
+			else if (middleTick > tick) high = middle - 1;
+			else return middle;
+		}
+		return -1;
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+}
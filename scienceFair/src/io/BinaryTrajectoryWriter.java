@@ -0,0 +1,241 @@
+package io;
+
+import static io.TrajectoryFormat.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import monitor.RecordingEvent;
+
+/**
+ * Records a trajectory in the binary format described by 
+ * {@link TrajectoryFormat}. <br>
+ * <br>
+ * Each block of rows is memory-mapped as the trajectory reaches it, and 
+ * values are put straight into the mapping, so there is no formatting and 
+ * no write call per row. The row count in the header is updated every
+ * block, so a run that dies part way still leaves a readable file. 
+ * @author AD417
+ *
+ */
+public class BinaryTrajectoryWriter implements TrajectorySink 
+{
+	final FileChannel channel;
+	
+	final MappedByteBuffer header;
+	
+	/**
+	 * The number of rows in each block. 
+	 */
+	final int blockRows;
+	
+	final long blockBytes;
+	
+	/**
+	 * The block currently being written to. Volatile so {@link #sync()} 
+	 * can find it from another thread. 
+	 */
+	volatile MappedByteBuffer block;
+	
+	/**
+	 * The number of rows written so far. 
+	 */
+	long rows = 0;
+	
+	/**
+	 * Create a new trajectory file, replacing any file already at the path.
+	 * @param path where to write the file. 
+	 * @throws IOException If the file can't be created. 
+	 */
+	public BinaryTrajectoryWriter(Path path) throws IOException
+	{
+		this(path, defaultBlockRows);
+	}
+	
+	/**
+	 * Create a new trajectory file, replacing any file already at the path.
+	 * @param path where to write the file. 
+	 * @param _blockRows the number of rows in each block. 
+	 * @throws IOException If the file can't be created. 
+	 */
+	public BinaryTrajectoryWriter(Path path, int _blockRows) throws IOException
+	{
+		this(FileChannel.open(path, StandardOpenOption.CREATE, 
+				StandardOpenOption.READ, StandardOpenOption.WRITE, 
+				StandardOpenOption.TRUNCATE_EXISTING), _blockRows, 0);
+		header.putInt(magicOffset, magic);
+		header.putInt(versionOffset, version);
+		header.putInt(columnsOffset, columns);
+		header.putInt(blockRowsOffset, blockRows);
+		header.putLong(rowsOffset, 0);
+	}
+	
+	/**
+	 * Start writing to an open file, after a number of rows. 
+	 */
+	BinaryTrajectoryWriter(FileChannel _channel, int _blockRows, long _rows) 
+			throws IOException
+	{
+		if (_blockRows < 1) 
+		{
+			_channel.close();
+			throw new IllegalArgumentException("Invalid block size!");
+		}
+		channel = _channel;
+		blockRows = _blockRows;
+		blockBytes = blockBytes(blockRows);
+		rows = _rows;
+		header = channel.map(MapMode.READ_WRITE, 0, headerBytes);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	/**
+	 * Carry on a recording from a given row, throwing away any rows after 
+	 * it. Used when resuming from a {@link Checkpoint}. 
+	 * @param path the file to continue. 
+	 * @param rows the number of rows to keep. 
+	 * @return a writer that adds rows after the ones kept. 
+	 * @throws IOException If the file can't be opened, isn't a trajectory,
+	 * or has fewer rows. 
+	 */
+	public static BinaryTrajectoryWriter resume(Path path, long rows) 
+			throws IOException
+	{
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, 
+				StandardOpenOption.WRITE);
+		final int blockRows;
+		try
+		{
+			if (channel.size() < headerBytes) 
+				throw new IOException("Not a trajectory file: " + path);
+			ByteBuffer header = ByteBuffer.allocate(headerBytes);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) 
+				channel.read(header, header.position());
+			if (header.getInt(magicOffset) != magic
+					|| header.getInt(versionOffset) != version
+					|| header.getInt(columnsOffset) != columns)
+				throw new IOException("Not a trajectory file: " + path);
+			if (header.getLong(rowsOffset) < rows)
+				throw new IOException(
+						"Recording has fewer than " + rows + " rows: " + path);
+			blockRows = header.getInt(blockRowsOffset);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			channel.close();
+			throw e;
+		}
+		
+		BinaryTrajectoryWriter writer = 
+				new BinaryTrajectoryWriter(channel, blockRows, rows);
+		// Drop any blocks past the one the next row goes in. Rows after it
+		// in the same block will be written over. 
+		final long blocks = (rows + blockRows - 1) / blockRows;
+		channel.truncate(headerBytes + blocks * writer.blockBytes);
+		writer.header.putLong(rowsOffset, rows);
+		if (rows % blockRows != 0)
+		{
+			writer.block = channel.map(MapMode.READ_WRITE, 
+					headerBytes + (blocks - 1) * writer.blockBytes, 
+					writer.blockBytes);
+			writer.block.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		return writer;
+	}
+	
+	@Override
+	public void write(long tick, double t1, double dt1, double t2, double dt2,
+			double p1, double k1, double p2, double k2, double total) 
+			throws IOException
+	{
+		final int row = (int) (rows % blockRows);
+		if (row == 0) nextBlock();
+		
+		final int stride = blockRows * Long.BYTES;
+		final int at = row * Long.BYTES;
+		block.putLong(at, tick);
+		block.putDouble(at + T1 * stride, t1);
+		block.putDouble(at + DT1 * stride, dt1);
+		block.putDouble(at + T2 * stride, t2);
+		block.putDouble(at + DT2 * stride, dt2);
+		block.putDouble(at + P1 * stride, p1);
+		block.putDouble(at + K1 * stride, k1);
+		block.putDouble(at + P2 * stride, p2);
+		block.putDouble(at + K2 * stride, k2);
+		block.putDouble(at + TOTAL * stride, total);
+		rows++;
+	}
+	
+	/**
+	 * Map the block that the next row goes into. 
+	 */
+	void nextBlock() throws IOException
+	{
+		RecordingEvent event = new RecordingEvent();
+		event.begin();
+		// Every row before this one is complete. 
+		header.putLong(rowsOffset, rows);
+		final long position = headerBytes + (rows / blockRows) * blockBytes;
+		block = channel.map(MapMode.READ_WRITE, position, blockBytes);
+		block.order(ByteOrder.LITTLE_ENDIAN);
+		if (event.shouldCommit())
+		{
+			event.format = "Binary";
+			event.bytes = blockBytes;
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Get the number of rows written so far.
+	 * @return the number of rows. 
+	 */
+	public long getRows()
+	{
+		return rows;
+	}
+	
+	/**
+	 * Count every row written so far in the header. The rows are already 
+	 * in the mapped file, so this doesn't wait for anything. 
+	 */
+	@Override
+	public void flush()
+	{
+		header.putLong(rowsOffset, rows);
+	}
+	
+	/**
+	 * Save the current block and the header to disk, then the rest of the
+	 * file, which covers the earlier blocks. 
+	 */
+	@Override
+	public void sync() throws IOException
+	{
+		final MappedByteBuffer current = block;
+		if (current != null) current.force();
+		header.force();
+		channel.force(false);
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			flush();
+			sync();
+		}
+		finally 
+		{
+			channel.close();
+		}
+	}
+}
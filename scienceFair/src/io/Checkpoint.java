@@ -0,0 +1,207 @@
+package io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Everything needed to carry on a simulation exactly where it left off.
+ * <br><br>
+ * A checkpoint is saved as a small binary file: <br>
+ * - magic ("PDCK") and version, as ints <br>
+ * - tick, as a long; step size, as a double <br>
+ * - rows recorded so far, as a long <br>
+ * - the model, solver and recording file names, as UTF-8 strings <br>
+ * - the model's state and the solver's state, as arrays of doubles <br>
+ * - a CRC32 of everything before it, as an int <br>
+ * Strings and arrays start with their length as an int. Everything is
+ * little-endian, like {@link TrajectoryFormat}.
+ * @author AD417
+ *
+ */
+public final class Checkpoint
+{
+	public static final int magic = 0x4B434450;
+
+	public static final int version = 1;
+
+	/**
+	 * The class of the simulation.
+	 */
+	public final String model;
+
+	/**
+	 * The number of ticks simulated.
+	 */
+	public final long tick;
+
+	/**
+	 * The amount of simulated time per tick, in seconds.
+	 */
+	public final double stepSize;
+
+	/**
+	 * The name of the solver, as used by {@link math.Solvers}.
+	 */
+	public final String solver;
+
+	/**
+	 * Everything the simulation needs to rebuild itself. What each value
+	 * means is up to the simulation.
+	 */
+	public final double[] state;
+
+	/**
+	 * What the solver remembers between steps.
+	 */
+	public final double[] solverState;
+
+	/**
+	 * Where the trajectory is being recorded, or "" if it isn't.
+	 */
+	public final String recording;
+
+	/**
+	 * The number of rows recorded, all of which were written to the
+	 * recording before this checkpoint was taken.
+	 */
+	public final long recordedRows;
+
+	public Checkpoint(String _model, long _tick, double _stepSize,
+			String _solver, double[] _state, double[] _solverState,
+			String _recording, long _recordedRows)
+	{
+		model = _model;
+		tick = _tick;
+		stepSize = _stepSize;
+		solver = _solver;
+		state = _state.clone();
+		solverState = _solverState.clone();
+		recording = _recording == null ? "" : _recording;
+		recordedRows = _recordedRows;
+	}
+
+	/**
+	 * Save this checkpoint. The file is replaced all at once, so a crash
+	 * part way through leaves the last checkpoint as it was.
+	 * @param path where to save the checkpoint.
+	 * @throws IOException If the file can't be written.
+	 */
+	public void write(Path path) throws IOException
+	{
+		byte[] modelBytes = model.getBytes(StandardCharsets.UTF_8);
+		byte[] solverBytes = solver.getBytes(StandardCharsets.UTF_8);
+		byte[] recordingBytes = recording.getBytes(StandardCharsets.UTF_8);
+
+		ByteBuffer buffer = ByteBuffer.allocate(8 + 8 + 8 + 8
+				+ 4 + modelBytes.length + 4 + solverBytes.length
+				+ 4 + recordingBytes.length
+				+ 4 + 8 * state.length + 4 + 8 * solverState.length + 4);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(magic).putInt(version);
+		buffer.putLong(tick).putDouble(stepSize).putLong(recordedRows);
+		putBytes(buffer, modelBytes);
+		putBytes(buffer, solverBytes);
+		putBytes(buffer, recordingBytes);
+		putDoubles(buffer, state);
+		putDoubles(buffer, solverState);
+
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), 0, buffer.position());
+		buffer.putInt((int) crc.getValue());
+		buffer.flip();
+
+		Path absolute = path.toAbsolutePath();
+		Path temp = Files.createTempFile(absolute.getParent(),
+				absolute.getFileName().toString(), ".tmp");
+		try
+		{
+			try (FileChannel channel = FileChannel.open(temp,
+					StandardOpenOption.WRITE))
+			{
+				while (buffer.hasRemaining()) channel.write(buffer);
+				// Make sure the new checkpoint is on disk before it
+				// replaces the old one.
+				channel.force(true);
+			}
+			Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Read a checkpoint saved by {@link #write(Path)}.
+	 * @param path where the checkpoint is.
+	 * @return the checkpoint.
+	 * @throws IOException If the file can't be read, or isn't a complete
+	 * checkpoint.
+	 */
+	public static Checkpoint read(Path path) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		try
+		{
+			if (buffer.getInt() != magic)
+				throw new IOException("Not a checkpoint: " + path);
+			if (buffer.getInt() != version)
+				throw new IOException("Unknown checkpoint version: " + path);
+
+			CRC32 crc = new CRC32();
+			crc.update(buffer.array(), 0, buffer.limit() - 4);
+			if (buffer.getInt(buffer.limit() - 4) != (int) crc.getValue())
+				throw new IOException("Corrupt checkpoint: " + path);
+
+			final long tick = buffer.getLong();
+			final double stepSize = buffer.getDouble();
+			final long recordedRows = buffer.getLong();
+			final String model = getString(buffer);
+			final String solver = getString(buffer);
+			final String recording = getString(buffer);
+			final double[] state = getDoubles(buffer);
+			final double[] solverState = getDoubles(buffer);
+			return new Checkpoint(model, tick, stepSize, solver, state,
+					solverState, recording, recordedRows);
+		}
+		catch (RuntimeException e)
+		{
+			throw new IOException("Corrupt checkpoint: " + path, e);
+		}
+	}
+
+	static void putBytes(ByteBuffer buffer, byte[] bytes)
+	{
+		buffer.putInt(bytes.length).put(bytes);
+	}
+
+	static void putDoubles(ByteBuffer buffer, double[] values)
+	{
+		buffer.putInt(values.length);
+		for (double value : values) buffer.putDouble(value);
+	}
+
+	static String getString(ByteBuffer buffer)
+	{
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	static double[] getDoubles(ByteBuffer buffer)
+	{
+		double[] values = new double[buffer.getInt()];
+		for (int i = 0; i < values.length; i++) values[i] = buffer.getDouble();
+		return values;
+	}
+}
@@ -0,0 +1,114 @@
+package io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records a trajectory as a CSV file, one row per tick. 
+ * @author AD417
+ *
+ */
+public class CsvTrajectoryWriter implements TrajectorySink 
+{
+	final CsvWriter csv;
+	
+	/**
+	 * @param path where to write the file. 
+	 * @param header the names of the columns. 
+	 * @param rowsPerWrite how many rows to collect before writing them.
+	 * @throws IOException If the file can't be created. 
+	 */
+	public CsvTrajectoryWriter(Path path, String header, int rowsPerWrite) 
+			throws IOException
+	{
+		csv = new CsvWriter(path, header, rowsPerWrite);
+	}
+	
+	public CsvTrajectoryWriter(CsvWriter _csv)
+	{
+		csv = _csv;
+	}
+	
+	/**
+	 * Carry on a recording from a given row, throwing away any rows after 
+	 * it. Used when resuming from a {@link Checkpoint}. 
+	 * @param path the file to continue. 
+	 * @param rows the number of rows to keep, not counting the header. 
+	 * @param rowsPerWrite how many rows to collect before writing them.
+	 * @return a writer that adds rows after the ones kept. 
+	 * @throws IOException If the file can't be opened, or has fewer rows.
+	 */
+	public static CsvTrajectoryWriter resume(Path path, long rows, 
+			int rowsPerWrite) throws IOException
+	{
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try
+		{
+			// Skip the header and the rows being kept. 
+			long lines = rows + 1;
+			long position = 0;
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+			while (lines > 0)
+			{
+				buffer.clear();
+				final int read = channel.read(buffer, position);
+				if (read < 0) throw new IOException(
+						"Recording has fewer than " + rows + " rows: " + path);
+				for (int i = 0; i < read && lines > 0; i++)
+				{
+					position++;
+					if (buffer.get(i) == '\n') lines--;
+				}
+			}
+			channel.truncate(position);
+			channel.position(position);
+			return new CsvTrajectoryWriter(new CsvWriter(channel, 
+					rowsPerWrite));
+		}
+		catch (IOException | RuntimeException e)
+		{
+			channel.close();
+			throw e;
+		}
+	}
+	
+	@Override
+	public void write(long tick, double t1, double dt1, double t2, double dt2,
+			double p1, double k1, double p2, double k2, double total) 
+			throws IOException
+	{
+		csv.add(tick)
+				.add(t1)
+				.add(dt1)
+				.add(t2)
+				.add(dt2)
+				.add(p1)
+				.add(k1)
+				.add(p2)
+				.add(k2)
+				.add(total)
+				.endRow();
+	}
+	
+	@Override
+	public void flush() throws IOException
+	{
+		csv.flush();
+	}
+	
+	@Override
+	public void sync() throws IOException
+	{
+		csv.sync();
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		csv.close();
+	}
+}
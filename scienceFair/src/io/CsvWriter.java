@@ -0,0 +1,267 @@
+package io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import monitor.RecordingEvent;
+
+/**
+ * Streams rows of numbers to a CSV file. <br>
+ * <br>
+ * Rows are formatted straight into a fixed-size buffer, without 
+ * String.format or any Strings at all, and the buffer is written to the 
+ * file every few rows. Memory use stays the same however many rows are 
+ * written. <br>
+ * <br>
+ * Decimals are written with 6 digits after the point, exactly the same 
+ * as <code>%f</code>, and values are separated by ", ". The few values 
+ * that are too close to a tie to round by hand are formatted by 
+ * <code>%f</code> itself. 
+ * @author AD417
+ *
+ */
+public class CsvWriter implements Closeable 
+{
+	static final int bufferSize = 1 << 16;
+	
+	/**
+	 * The most bytes a single value can take up. 
+	 */
+	static final int maxValueLength = 64;
+	
+	/**
+	 * Decimals this large or larger are too big to format by hand. 
+	 */
+	static final double maxFastDecimal = 1e12;
+	
+	/**
+	 * How close, in ulps, a decimal scaled up by 1e6 can be to halfway 
+	 * between two whole numbers before it is left to <code>%f</code>. 
+	 * <code>%f</code> rounds the shortest decimal that reads back as the 
+	 * value, which can be up to about 2 ulps from the scaled value, so 
+	 * rounding that by hand can go the other way near a tie. 
+	 */
+	static final double tieUlps = 4;
+	
+	final FileChannel channel;
+	
+	final ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+	
+	/**
+	 * Scratch space for the digits of a number, which come out backwards. 
+	 */
+	final byte[] digits = new byte[24];
+	
+	/**
+	 * How many rows are collected before being written to the file. 
+	 */
+	final int rowsPerWrite;
+	
+	/**
+	 * The number of rows written so far, not counting the header. 
+	 */
+	long rows = 0;
+	
+	/**
+	 * Whether the next value is the first in its row. 
+	 */
+	boolean rowStart = true;
+	
+	/**
+	 * Create a new CSV file, replacing any file already at the path. 
+	 * @param path where to write the file.
+	 * @param header the first line of the file, without a line break. 
+	 * @param _rowsPerWrite how many rows to collect before writing them 
+	 * to the file. Rows are also written whenever the buffer fills up. 
+	 * @throws IOException If the file can't be created. 
+	 */
+	public CsvWriter(Path path, String header, int _rowsPerWrite) 
+			throws IOException
+	{
+		this(FileChannel.open(path, StandardOpenOption.CREATE, 
+				StandardOpenOption.WRITE, 
+				StandardOpenOption.TRUNCATE_EXISTING), _rowsPerWrite);
+		byte[] line = (header + "\n").getBytes(StandardCharsets.US_ASCII);
+		buffer.put(line);
+	}
+	
+	/**
+	 * Continue writing rows to an already open file, from wherever its 
+	 * position is. No header is written. 
+	 * @param _channel the file to write to. 
+	 * @param _rowsPerWrite how many rows to collect before writing them. 
+	 */
+	public CsvWriter(FileChannel _channel, int _rowsPerWrite)
+	{
+		if (_rowsPerWrite < 1) 
+			throw new IllegalArgumentException("Invalid rows per write!");
+		channel = _channel;
+		rowsPerWrite = _rowsPerWrite;
+	}
+	
+	/**
+	 * Add a whole number to the current row. 
+	 */
+	public CsvWriter add(long value) throws IOException
+	{
+		startValue();
+		putLong(value);
+		return this;
+	}
+	
+	/**
+	 * Add a decimal to the current row, with 6 digits after the point. 
+	 */
+	public CsvWriter add(double value) throws IOException
+	{
+		startValue();
+		
+		final double abs = Math.abs(value);
+		if (!(abs < maxFastDecimal)) 
+		{
+			// NaN, infinity and huge values are rare; let Java handle them.
+			putFormatted(value);
+			return this;
+		}
+		
+		final double exact = abs * 1e6;
+		final double half = exact - Math.floor(exact) - 0.5;
+		if (Math.abs(half) <= tieUlps * Math.ulp(exact))
+		{
+			// Too close to a tie to be sure which way %f rounds.
+			putFormatted(value);
+			return this;
+		}
+		
+		final long scaled = Math.round(exact);
+		// Java keeps the sign of values that round to 0, so we do too.
+		if (value < 0 || (value == 0 && 1 / value < 0)) buffer.put((byte) '-');
+		putLong(scaled / 1_000_000);
+		buffer.put((byte) '.');
+		
+		long fraction = scaled % 1_000_000;
+		for (int i = 5; i >= 0; i--)
+		{
+			digits[i] = (byte) ('0' + fraction % 10);
+			fraction /= 10;
+		}
+		buffer.put(digits, 0, 6);
+		return this;
+	}
+	
+	/**
+	 * Finish the current row. Every {@link #rowsPerWrite} rows, the 
+	 * collected rows are written to the file. 
+	 */
+	public void endRow() throws IOException
+	{
+		ensureSpace(1);
+		buffer.put((byte) '\n');
+		rowStart = true;
+		if (++rows % rowsPerWrite == 0) flush();
+	}
+	
+	/**
+	 * Get the number of rows finished so far, not counting the header.
+	 * @return the number of rows. 
+	 */
+	public long getRows()
+	{
+		return rows;
+	}
+	
+	void startValue() throws IOException
+	{
+		ensureSpace(maxValueLength);
+		if (!rowStart)
+		{
+			buffer.put((byte) ',');
+			buffer.put((byte) ' ');
+		}
+		rowStart = false;
+	}
+	
+	/**
+	 * Add a decimal using <code>%f</code>, which can be longer than 
+	 * {@link #maxValueLength}. 
+	 */
+	void putFormatted(double value) throws IOException
+	{
+		byte[] text = String.format("%f", value)
+				.getBytes(StandardCharsets.US_ASCII);
+		ensureSpace(text.length);
+		buffer.put(text);
+	}
+	
+	void putLong(long value)
+	{
+		if (value == Long.MIN_VALUE)
+		{
+			buffer.put(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+			return;
+		}
+		if (value < 0)
+		{
+			buffer.put((byte) '-');
+			value = -value;
+		}
+		int i = digits.length;
+		do 
+		{
+			digits[--i] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+		buffer.put(digits, i, digits.length - i);
+	}
+	
+	void ensureSpace(int bytes) throws IOException
+	{
+		if (buffer.remaining() < bytes) flush();
+	}
+	
+	/**
+	 * Write everything collected so far to the file. 
+	 */
+	public void flush() throws IOException
+	{
+		RecordingEvent event = new RecordingEvent();
+		event.begin();
+		buffer.flip();
+		final int bytes = buffer.remaining();
+		while (buffer.hasRemaining()) channel.write(buffer);
+		buffer.clear();
+		if (event.shouldCommit())
+		{
+			event.format = "CSV";
+			event.bytes = bytes;
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Wait until everything written to the file so far is saved on the 
+	 * disk. Can be called from any thread. 
+	 */
+	public void sync() throws IOException
+	{
+		channel.force(false);
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			flush();
+		}
+		finally 
+		{
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package io;
+
+import java.nio.file.Path;
+
+/**
+ * Layout of a trajectory pyramid: theta1, theta2 and the total energy of a
+ * recording, summed up at several zoom levels so that a plot of any part
+ * of it only has to read about as many values as it has pixels. <br>
+ * <br>
+ * A pyramid is a directory with a file for each level. Level 0 has a value
+ * of each channel for every row, and each bucket of the level above covers
+ * {@link #fanout} buckets of the one below, so level n covers fanout^n rows
+ * per bucket (1, 16, 256, 4096, ...). Every file starts with a
+ * {@link #headerBytes} byte header, and is followed by one record per
+ * complete bucket. A level 0 record is each channel's value; a record of
+ * any other level is the min, max and mean of each channel, channel by
+ * channel. The last few rows, which don't fill a bucket yet, are only in
+ * the levels below. All values are little-endian, like
+ * {@link TrajectoryFormat}.
+ * @author AD417
+ *
+ */
+public final class PyramidFormat
+{
+	/**
+	 * "PDLD", the first 4 bytes of every level file.
+	 */
+	public static final int magic = 0x444C4450;
+
+	public static final int version = 1;
+
+	static final int headerBytes = 32;
+
+	// Positions of each header field.
+	static final int magicOffset = 0;
+	static final int versionOffset = 4;
+	static final int levelOffset = 8;
+	static final int fanoutOffset = 12;
+	static final int firstTickOffset = 16;
+	static final int rowsOffset = 24;
+
+	/**
+	 * The number of buckets of one level that make up a bucket of the next.
+	 */
+	public static final int fanout = 16;
+
+	/**
+	 * The default number of levels, enough that the top level has a bucket
+	 * per 16^7 (about 270 million) rows.
+	 */
+	public static final int defaultLevels = 8;
+
+	/**
+	 * The channels of a pyramid.
+	 */
+	public static final int THETA1 = 0, THETA2 = 1, ENERGY = 2;
+
+	public static final int channels = 3;
+
+	/**
+	 * The values stored for each channel of a bucket above level 0.
+	 */
+	static final int MIN = 0, MAX = 1, MEAN = 2;
+
+	private PyramidFormat() {}
+
+	/**
+	 * Get the file that holds a level of a pyramid.
+	 */
+	static Path levelPath(Path directory, int level)
+	{
+		return directory.resolve("level" + level + ".lod");
+	}
+
+	/**
+	 * Get the number of rows in each bucket of a level.
+	 */
+	public static long rowsPerBucket(int level)
+	{
+		long rows = 1;
+		for (int i = 0; i < level; i++) rows *= fanout;
+		return rows;
+	}
+
+	/**
+	 * Get the size of a single bucket of a level.
+	 * @return the size of a bucket, in bytes.
+	 */
+	static int recordBytes(int level)
+	{
+		return (level == 0 ? channels : channels * 3) * Double.BYTES;
+	}
+}
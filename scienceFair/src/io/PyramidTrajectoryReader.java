@@ -0,0 +1,275 @@
+package io;
+
+import static io.PyramidFormat.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a pyramid written by {@link PyramidTrajectoryWriter}, for plotting
+ * a recording at any zoom. <br>
+ * <br>
+ * The min, max or mean of a channel over any range of rows is put together
+ * from the largest buckets that fit inside it, dropping a level at each end
+ * for the parts that don't, so it reads at most about 2 * fanout buckets
+ * per level however long the range is. Plotting a range onto a number of
+ * pixels does that once per pixel. Like {@link BinaryTrajectoryReader}, the
+ * files are memory-mapped, so only the buckets looked at are loaded.
+ * @author AD417
+ *
+ */
+public class PyramidTrajectoryReader implements Closeable
+{
+	/**
+	 * A single mapping can't be larger than 2GB, so large levels are mapped
+	 * in segments of (about) this size.
+	 */
+	static final long segmentBytes = 1L << 30;
+
+	final FileChannel[] files;
+
+	final int levels;
+
+	final long firstTick;
+
+	/**
+	 * The number of rows in the recording.
+	 */
+	final long rows;
+
+	/**
+	 * The number of complete buckets in each level.
+	 */
+	final long[] buckets;
+
+	/**
+	 * The number of buckets in each segment of each level.
+	 */
+	final long[] bucketsPerSegment;
+
+	final MappedByteBuffer[][] segments;
+
+	/**
+	 * The min, max, sum and count of a range, while it is being put
+	 * together.
+	 */
+	final double[] range = new double[4];
+
+	/**
+	 * Open a pyramid.
+	 * @param directory the directory with the level files.
+	 * @throws IOException If the files can't be read, or aren't a pyramid.
+	 */
+	public PyramidTrajectoryReader(Path directory) throws IOException
+	{
+		int count = 0;
+		while (Files.exists(levelPath(directory, count))) count++;
+		if (count == 0)
+			throw new IOException("Not a trajectory pyramid: " + directory);
+		levels = count;
+		files = new FileChannel[levels];
+		buckets = new long[levels];
+		bucketsPerSegment = new long[levels];
+		segments = new MappedByteBuffer[levels][];
+		try
+		{
+			long firstTick = 0, rows = 0;
+			for (int level = 0; level < levels; level++)
+			{
+				files[level] = FileChannel.open(levelPath(directory, level),
+						StandardOpenOption.READ);
+				if (files[level].size() < headerBytes)
+					throw new IOException(
+							"Not a trajectory pyramid: " + directory);
+				MappedByteBuffer header = files[level].map(MapMode.READ_ONLY,
+						0, headerBytes);
+				header.order(ByteOrder.LITTLE_ENDIAN);
+				if (header.getInt(magicOffset) != magic
+						|| header.getInt(levelOffset) != level)
+					throw new IOException(
+							"Not a trajectory pyramid: " + directory);
+				if (header.getInt(versionOffset) != version
+						|| header.getInt(fanoutOffset) != fanout)
+					throw new IOException(
+							"Unsupported trajectory pyramid: " + directory);
+				// Every level is written with the same count, but take the
+				// smallest in case a run died while updating them.
+				final long levelRows = header.getLong(rowsOffset);
+				rows = level == 0 ? levelRows : Math.min(rows, levelRows);
+				firstTick = header.getLong(firstTickOffset);
+			}
+			this.firstTick = firstTick;
+			this.rows = rows;
+
+			for (int level = 0; level < levels; level++)
+			{
+				final int size = recordBytes(level);
+				buckets[level] = rows / rowsPerBucket(level);
+				bucketsPerSegment[level] = segmentBytes / size;
+				final long segmentCount = (buckets[level]
+						+ bucketsPerSegment[level] - 1)
+						/ bucketsPerSegment[level];
+				segments[level] = new MappedByteBuffer[(int) segmentCount];
+				for (int i = 0; i < segmentCount; i++)
+				{
+					final long first = i * bucketsPerSegment[level];
+					final long n = Math.min(bucketsPerSegment[level],
+							buckets[level] - first);
+					segments[level][i] = files[level].map(MapMode.READ_ONLY,
+							headerBytes + first * size, n * size);
+					segments[level][i].order(ByteOrder.LITTLE_ENDIAN);
+				}
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Get the number of rows in the recording.
+	 */
+	public long getRows()
+	{
+		return rows;
+	}
+
+	/**
+	 * Get the tick of the first row. Row n is tick getFirstTick() + n.
+	 */
+	public long getFirstTick()
+	{
+		return firstTick;
+	}
+
+	public int getLevels()
+	{
+		return levels;
+	}
+
+	/**
+	 * Get a value of a bucket.
+	 * @param value one of MIN, MAX or MEAN. Level 0 only has one value.
+	 */
+	double get(int level, long bucket, int channel, int value)
+	{
+		final int size = recordBytes(level);
+		final MappedByteBuffer segment = segments[level][(int) (bucket
+				/ bucketsPerSegment[level])];
+		final long inSegment = bucket % bucketsPerSegment[level];
+		final int field = level == 0 ? channel : 3 * channel + value;
+		return segment.getDouble((int) (inSegment * size
+				+ field * Double.BYTES));
+	}
+
+	/**
+	 * Add the rows from one row up to another into {@link #range}, using
+	 * a level and the ones below it.
+	 */
+	void gather(int level, int channel, long from, long to)
+	{
+		if (from >= to) return;
+		if (level == 0)
+		{
+			for (long row = from; row < to; row++)
+			{
+				final double value = get(0, row, channel, MEAN);
+				range[MIN] = Math.min(range[MIN], value);
+				range[MAX] = Math.max(range[MAX], value);
+				range[2] += value;
+			}
+			range[3] += to - from;
+			return;
+		}
+
+		final long size = rowsPerBucket(level);
+		final long first = (from + size - 1) / size;
+		final long last = Math.min(to / size, buckets[level]);
+		if (first >= last)
+		{
+			gather(level - 1, channel, from, to);
+			return;
+		}
+		gather(level - 1, channel, from, first * size);
+		for (long bucket = first; bucket < last; bucket++)
+		{
+			range[MIN] = Math.min(range[MIN], get(level, bucket, channel, MIN));
+			range[MAX] = Math.max(range[MAX], get(level, bucket, channel, MAX));
+			range[2] += get(level, bucket, channel, MEAN) * size;
+		}
+		range[3] += (last - first) * size;
+		gather(level - 1, channel, last * size, to);
+	}
+
+	/**
+	 * Find the min, max and mean of a channel over a range of rows.
+	 * @param channel one of the channels in {@link PyramidFormat}.
+	 * @param from the first row.
+	 * @param to the row after the last one.
+	 * @param out where to put the min, max and mean, in that order.
+	 */
+	public void summarize(int channel, long from, long to, double[] out)
+	{
+		if (channel < 0 || channel >= channels)
+			throw new IndexOutOfBoundsException("Channel " + channel);
+		if (from < 0 || to > rows || from >= to)
+			throw new IndexOutOfBoundsException(
+					"Rows " + from + " to " + to + " of " + rows);
+		range[MIN] = Double.POSITIVE_INFINITY;
+		range[MAX] = Double.NEGATIVE_INFINITY;
+		range[2] = range[3] = 0;
+		gather(levels - 1, channel, from, to);
+		out[0] = range[MIN];
+		out[1] = range[MAX];
+		out[2] = range[2] / range[3];
+	}
+
+	/**
+	 * Find what to draw in each column of a plot of a channel over a range
+	 * of rows. Each column covers an equal share of the rows, and columns
+	 * with no rows of their own are NaN.
+	 * @param channel one of the channels in {@link PyramidFormat}.
+	 * @param from the first row.
+	 * @param to the row after the last one.
+	 * @param min where to put the min of each column. Its length is the
+	 * number of columns.
+	 * @param max where to put the max of each column.
+	 * @param mean where to put the mean of each column, or null.
+	 */
+	public void plot(int channel, long from, long to, double[] min,
+			double[] max, double[] mean)
+	{
+		final int columns = min.length;
+		final double[] out = new double[3];
+		for (int x = 0; x < columns; x++)
+		{
+			final long start = from + (to - from) * x / columns;
+			final long end = from + (to - from) * (x + 1) / columns;
+			if (start == end)
+			{
+				min[x] = max[x] = Double.NaN;
+				if (mean != null) mean[x] = Double.NaN;
+				continue;
+			}
+			summarize(channel, start, end, out);
+			min[x] = out[0];
+			max[x] = out[1];
+			if (mean != null) mean[x] = out[2];
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		for (FileChannel file : files) if (file != null) file.close();
+	}
+}
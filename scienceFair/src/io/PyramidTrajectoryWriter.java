@@ -0,0 +1,375 @@
+package io;
+
+import static io.PyramidFormat.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records a trajectory as a pyramid, described by {@link PyramidFormat},
+ * as the simulation runs. <br>
+ * <br>
+ * Every row adds to a running min, max and sum at each level, and a
+ * bucket is only written once it is complete, so each row costs a few
+ * comparisons and there is never a second pass over the recording.
+ * Records are collected in a buffer per level and written in large
+ * pieces. Rows are expected to be one tick apart, as
+ * {@link physics.DoublePendulum#appendSimState()} records them.
+ * @author AD417
+ *
+ */
+public class PyramidTrajectoryWriter implements TrajectorySink
+{
+	/**
+	 * The size of the buffer of records for each level, in bytes.
+	 */
+	static final int bufferBytes = 1 << 16;
+
+	final int levels;
+
+	final FileChannel[] files;
+
+	/**
+	 * Records waiting to be written, for each level.
+	 */
+	final ByteBuffer[] buffers;
+
+	final ByteBuffer header = ByteBuffer.allocate(headerBytes)
+			.order(ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * The bucket being filled at each level above 0: the min, max and sum
+	 * of each channel, channel by channel. Index 0 holds the row being
+	 * added.
+	 */
+	final double[][] partial;
+
+	/**
+	 * The number of buckets of the level below in each partial bucket.
+	 */
+	final int[] filled;
+
+	long firstTick = 0;
+
+	/**
+	 * The number of rows written so far.
+	 */
+	long rows = 0;
+
+	/**
+	 * Create a new pyramid with {@link PyramidFormat#defaultLevels} levels,
+	 * replacing any pyramid already in the directory.
+	 * @param directory where to write the level files.
+	 * @throws IOException If the files can't be created.
+	 */
+	public PyramidTrajectoryWriter(Path directory) throws IOException
+	{
+		this(directory, defaultLevels);
+	}
+
+	/**
+	 * Create a new pyramid, replacing any pyramid already in the directory.
+	 * @param directory where to write the level files.
+	 * @param _levels the number of levels, including level 0.
+	 * @throws IOException If the files can't be created.
+	 */
+	public PyramidTrajectoryWriter(Path directory, int _levels)
+			throws IOException
+	{
+		this(open(directory, _levels, true));
+		writeHeaders();
+	}
+
+	PyramidTrajectoryWriter(FileChannel[] _files)
+	{
+		files = _files;
+		levels = files.length;
+		buffers = new ByteBuffer[levels];
+		partial = new double[levels][channels * 3];
+		filled = new int[levels];
+		for (int level = 0; level < levels; level++)
+		{
+			buffers[level] = ByteBuffer.allocateDirect(bufferBytes)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			clear(partial[level]);
+		}
+	}
+
+	/**
+	 * Open the file of every level of a pyramid.
+	 * @param create whether to start new files, rather than open old ones.
+	 */
+	static FileChannel[] open(Path directory, int levels, boolean create)
+			throws IOException
+	{
+		if (levels < 1)
+			throw new IllegalArgumentException("Invalid number of levels!");
+		if (create) Files.createDirectories(directory);
+		FileChannel[] files = new FileChannel[levels];
+		try
+		{
+			for (int level = 0; level < levels; level++)
+			{
+				files[level] = create
+						? FileChannel.open(levelPath(directory, level),
+								StandardOpenOption.CREATE,
+								StandardOpenOption.READ,
+								StandardOpenOption.WRITE,
+								StandardOpenOption.TRUNCATE_EXISTING)
+						: FileChannel.open(levelPath(directory, level),
+								StandardOpenOption.READ,
+								StandardOpenOption.WRITE);
+				files[level].position(headerBytes);
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			for (FileChannel file : files) if (file != null) file.close();
+			throw e;
+		}
+		return files;
+	}
+
+	/**
+	 * Carry on a pyramid from a given row, throwing away any rows after it.
+	 * Used when resuming from a {@link Checkpoint}. The partial buckets are
+	 * rebuilt from the complete buckets of the level below.
+	 * @param directory the pyramid to continue.
+	 * @param rows the number of rows to keep.
+	 * @return a writer that adds rows after the ones kept.
+	 * @throws IOException If the files can't be opened, aren't a pyramid, or
+	 * have fewer rows.
+	 */
+	public static PyramidTrajectoryWriter resume(Path directory, long rows)
+			throws IOException
+	{
+		int levels = 0;
+		while (Files.exists(levelPath(directory, levels))) levels++;
+		if (levels == 0)
+			throw new IOException("Not a trajectory pyramid: " + directory);
+		PyramidTrajectoryWriter writer = new PyramidTrajectoryWriter(
+				open(directory, levels, false));
+		try
+		{
+			for (int level = 0; level < levels; level++)
+			{
+				ByteBuffer header = writer.header;
+				header.clear();
+				while (header.hasRemaining()
+						&& writer.files[level].read(header,
+								header.position()) >= 0);
+				if (header.hasRemaining() || header.getInt(magicOffset) != magic
+						|| header.getInt(versionOffset) != version
+						|| header.getInt(levelOffset) != level
+						|| header.getInt(fanoutOffset) != fanout)
+					throw new IOException(
+							"Not a trajectory pyramid: " + directory);
+				if (header.getLong(rowsOffset) < rows)
+					throw new IOException("Recording has fewer than " + rows
+							+ " rows: " + directory);
+				writer.firstTick = header.getLong(firstTickOffset);
+			}
+			writer.rows = rows;
+
+			for (int level = 0; level < levels; level++)
+			{
+				final long end = headerBytes
+						+ rows / rowsPerBucket(level) * recordBytes(level);
+				writer.files[level].truncate(end);
+				writer.files[level].position(end);
+			}
+			// Each partial bucket is the complete buckets of the level below
+			// that come after the last complete bucket of its own level.
+			ByteBuffer record = ByteBuffer.allocate(recordBytes(levels - 1))
+					.order(ByteOrder.LITTLE_ENDIAN);
+			for (int level = 1; level < levels; level++)
+			{
+				final long first = rows / rowsPerBucket(level) * fanout;
+				final long last = rows / rowsPerBucket(level - 1);
+				final int below = recordBytes(level - 1);
+				for (long bucket = first; bucket < last; bucket++)
+				{
+					record.clear().limit(below);
+					final long position = headerBytes + bucket * below;
+					while (record.hasRemaining()
+							&& writer.files[level - 1].read(record,
+									position + record.position()) >= 0);
+					writer.readBucket(level - 1, record, writer.partial[0]);
+					include(writer.partial[level], writer.partial[0]);
+					writer.filled[level]++;
+				}
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			writer.close();
+			throw e;
+		}
+		return writer;
+	}
+
+	/**
+	 * Turn a record of a level into a min, max and sum for each channel.
+	 */
+	void readBucket(int level, ByteBuffer record, double[] bucket)
+	{
+		final long size = rowsPerBucket(level);
+		for (int c = 0; c < channels; c++)
+		{
+			if (level == 0)
+			{
+				final double value = record.getDouble(c * Double.BYTES);
+				bucket[3 * c + MIN] = value;
+				bucket[3 * c + MAX] = value;
+				bucket[3 * c + MEAN] = value;
+			}
+			else
+			{
+				final int at = 3 * c * Double.BYTES;
+				bucket[3 * c + MIN] = record.getDouble(at);
+				bucket[3 * c + MAX] = record.getDouble(at + Double.BYTES);
+				bucket[3 * c + MEAN] = record.getDouble(at + 2 * Double.BYTES)
+						* size;
+			}
+		}
+	}
+
+	static void clear(double[] bucket)
+	{
+		for (int c = 0; c < channels; c++)
+		{
+			bucket[3 * c + MIN] = Double.POSITIVE_INFINITY;
+			bucket[3 * c + MAX] = Double.NEGATIVE_INFINITY;
+			bucket[3 * c + MEAN] = 0;
+		}
+	}
+
+	/**
+	 * Add a bucket's min, max and sum into a partial bucket.
+	 */
+	static void include(double[] into, double[] bucket)
+	{
+		for (int c = 0; c < channels; c++)
+		{
+			into[3 * c + MIN] = Math.min(into[3 * c + MIN], bucket[3 * c + MIN]);
+			into[3 * c + MAX] = Math.max(into[3 * c + MAX], bucket[3 * c + MAX]);
+			into[3 * c + MEAN] += bucket[3 * c + MEAN];
+		}
+	}
+
+	/**
+	 * Only theta1, theta2 and the total energy are kept.
+	 */
+	@Override
+	public void write(long tick, double t1, double dt1, double t2, double dt2,
+			double p1, double k1, double p2, double k2, double total)
+			throws IOException
+	{
+		if (rows == 0) firstTick = tick;
+		rows++;
+
+		ByteBuffer buffer = buffer(0);
+		buffer.putDouble(t1).putDouble(t2).putDouble(total);
+		final double[] row = partial[0];
+		row[3 * THETA1 + MIN] = row[3 * THETA1 + MAX] = row[3 * THETA1 + MEAN]
+				= t1;
+		row[3 * THETA2 + MIN] = row[3 * THETA2 + MAX] = row[3 * THETA2 + MEAN]
+				= t2;
+		row[3 * ENERGY + MIN] = row[3 * ENERGY + MAX] = row[3 * ENERGY + MEAN]
+				= total;
+
+		// Pass each completed bucket up to the next level.
+		for (int level = 1; level < levels; level++)
+		{
+			include(partial[level], partial[level - 1]);
+			if (level > 1) clear(partial[level - 1]);
+			if (++filled[level] < fanout) return;
+
+			filled[level] = 0;
+			final double size = rowsPerBucket(level);
+			final double[] bucket = partial[level];
+			buffer = buffer(level);
+			for (int c = 0; c < channels; c++)
+				buffer.putDouble(bucket[3 * c + MIN])
+						.putDouble(bucket[3 * c + MAX])
+						.putDouble(bucket[3 * c + MEAN] / size);
+		}
+		if (levels > 1) clear(partial[levels - 1]);
+	}
+
+	/**
+	 * Get the buffer of a level, with room for another record.
+	 */
+	ByteBuffer buffer(int level) throws IOException
+	{
+		ByteBuffer buffer = buffers[level];
+		if (buffer.remaining() < recordBytes(level)) drain(level);
+		return buffer;
+	}
+
+	void drain(int level) throws IOException
+	{
+		ByteBuffer buffer = buffers[level];
+		buffer.flip();
+		while (buffer.hasRemaining()) files[level].write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Write the header of every level, with the rows written so far.
+	 */
+	void writeHeaders() throws IOException
+	{
+		for (int level = 0; level < levels; level++)
+		{
+			header.clear();
+			header.putInt(magic).putInt(version).putInt(level).putInt(fanout)
+					.putLong(firstTick).putLong(rows);
+			header.flip();
+			while (header.hasRemaining())
+				files[level].write(header, header.position());
+		}
+	}
+
+	/**
+	 * Get the number of rows written so far.
+	 */
+	public long getRows()
+	{
+		return rows;
+	}
+
+	/**
+	 * Write every complete bucket to its file, then the row count.
+	 */
+	@Override
+	public void flush() throws IOException
+	{
+		for (int level = 0; level < levels; level++) drain(level);
+		writeHeaders();
+	}
+
+	@Override
+	public void sync() throws IOException
+	{
+		for (FileChannel file : files) file.force(false);
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			flush();
+		}
+		finally
+		{
+			for (FileChannel file : files) file.close();
+		}
+	}
+}
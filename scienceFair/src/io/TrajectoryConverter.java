@@ -0,0 +1,97 @@
+package io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import physics.DoublePendulum;
+
+/**
+ * Converts trajectories between the CSV layout written by 
+ * {@link DoublePendulum} and the binary {@link TrajectoryFormat}. 
+ * <br><br>
+ * Usage: <code>TrajectoryConverter in.csv out.ptraj</code> or 
+ * <code>TrajectoryConverter in.ptraj out.csv</code>. 
+ * @author AD417
+ *
+ */
+public class TrajectoryConverter 
+{
+	/**
+	 * Convert a CSV trajectory into a binary one. Older CSV files without
+	 * the TOTAL column are accepted, and the total is worked out.
+	 * @return the number of rows converted. 
+	 */
+	public static long csvToBinary(Path csv, Path binary) throws IOException
+	{
+		long rows = 0;
+		try (BufferedReader in = Files.newBufferedReader(csv);
+				BinaryTrajectoryWriter out = new BinaryTrajectoryWriter(binary))
+		{
+			// Skip the header.
+			String line = in.readLine();
+			double[] v = new double[TrajectoryFormat.columns];
+			while ((line = in.readLine()) != null)
+			{
+				if (line.isBlank()) continue;
+				// Keep trailing empty cells, so a trailing comma is caught.
+				String[] cells = line.split(",", -1);
+				if (cells.length < TrajectoryFormat.columns - 1 
+						|| cells.length > TrajectoryFormat.columns) 
+					throw new IOException("Invalid row " + (rows + 1) + 
+							": " + line);
+				
+				for (int i = 1; i < cells.length; i++) 
+					v[i] = Double.parseDouble(cells[i].trim());
+				if (cells.length < TrajectoryFormat.columns) 
+					v[TrajectoryFormat.TOTAL] = v[TrajectoryFormat.P1] + 
+							v[TrajectoryFormat.K1] + v[TrajectoryFormat.P2] + 
+							v[TrajectoryFormat.K2];
+				
+				out.write(Long.parseLong(cells[0].trim()), v[1], v[2], v[3], 
+						v[4], v[5], v[6], v[7], v[8], v[9]);
+				rows++;
+			}
+		}
+		return rows;
+	}
+	
+	/**
+	 * Convert a binary trajectory into a CSV one. 
+	 * @return the number of rows converted. 
+	 */
+	public static long binaryToCsv(Path binary, Path csv) throws IOException
+	{
+		try (BinaryTrajectoryReader in = new BinaryTrajectoryReader(binary);
+				CsvTrajectoryWriter out = 
+						new CsvTrajectoryWriter(csv, DoublePendulum.header, 4096))
+		{
+			double[] v = new double[TrajectoryFormat.columns];
+			for (long row = 0; row < in.getRows(); row++)
+			{
+				in.readRow(row, v);
+				out.write(in.getTick(row), v[1], v[2], v[3], v[4], v[5], 
+						v[6], v[7], v[8], v[9]);
+			}
+			return in.getRows();
+		}
+	}
+	
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length != 2)
+		{
+			System.out.println("Usage: TrajectoryConverter <in> <out>");
+			System.out.println("Files ending in .csv are CSV; anything else "
+					+ "is a binary trajectory.");
+			return;
+		}
+		Path in = Path.of(args[0]);
+		Path out = Path.of(args[1]);
+		long rows = args[0].endsWith(".csv") 
+				? csvToBinary(in, out) 
+				: binaryToCsv(in, out);
+		System.out.println("Converted " + rows + " rows.");
+	}
+}
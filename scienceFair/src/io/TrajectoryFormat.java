@@ -0,0 +1,60 @@
+package io;
+
+/**
+ * Layout of a binary trajectory file. <br>
+ * <br>
+ * The file starts with a {@link #headerBytes} byte header. After that, rows
+ * are stored in blocks of blockRows rows (also stored in the header). Inside
+ * a block, each column is stored on its own, one 8 byte value per row, so the
+ * value of any column at any row is at a fixed position: <br>
+ * <code>headerBytes + block * blockBytes + (column * blockRows + row) * 8
+ * </code><br>
+ * All values are little-endian. The tick column is a long; every other 
+ * column is a double. 
+ * @author AD417
+ *
+ */
+public final class TrajectoryFormat 
+{
+	/**
+	 * "PDTR", the first 4 bytes of every trajectory file. 
+	 */
+	public static final int magic = 0x52544450;
+	
+	public static final int version = 1;
+	
+	static final int headerBytes = 64;
+	
+	// Positions of each header field. 
+	static final int magicOffset = 0;
+	static final int versionOffset = 4;
+	static final int columnsOffset = 8;
+	static final int blockRowsOffset = 12;
+	static final int rowsOffset = 16;
+	
+	/**
+	 * The default number of rows in each block. 
+	 */
+	static final int defaultBlockRows = 4096;
+	
+	/**
+	 * The columns of a trajectory, the same as the columns of 
+	 * {@link physics.DoublePendulum#header}. 
+	 */
+	public static final int TICK = 0, T1 = 1, DT1 = 2, T2 = 3, DT2 = 4, 
+			P1 = 5, K1 = 6, P2 = 7, K2 = 8, TOTAL = 9;
+	
+	public static final int columns = 10;
+	
+	private TrajectoryFormat() {}
+	
+	/**
+	 * Get the size of a single block of rows. 
+	 * @param blockRows the number of rows in each block. 
+	 * @return the size of a block, in bytes. 
+	 */
+	static long blockBytes(int blockRows)
+	{
+		return (long) blockRows * columns * Long.BYTES;
+	}
+}
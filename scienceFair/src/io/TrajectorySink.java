@@ -0,0 +1,38 @@
+package io;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Somewhere the state of a {@link physics.DoublePendulum} can be recorded,
+ * one tick at a time. 
+ * @author AD417
+ *
+ */
+public interface TrajectorySink extends Closeable 
+{
+	/**
+	 * Record the state of a single tick. The values are the columns of 
+	 * {@link physics.DoublePendulum#header}, in order. 
+	 * @throws IOException If the state can't be recorded. 
+	 */
+	void write(long tick, double t1, double dt1, double t2, double dt2, 
+			double p1, double k1, double p2, double k2, double total) 
+			throws IOException;
+	
+	/**
+	 * Make sure everything recorded so far is in the file, as far as 
+	 * anything reading it can tell. This doesn't wait for the disk, so it
+	 * is cheap enough to call on the simulation thread. 
+	 * @throws IOException If the recording can't be written. 
+	 */
+	default void flush() throws IOException {}
+	
+	/**
+	 * Wait until everything flushed so far is saved on the disk itself. 
+	 * Can be called from another thread while recording carries on, so 
+	 * the simulation never has to wait for the disk. 
+	 * @throws IOException If the recording can't be saved. 
+	 */
+	default void sync() throws IOException {}
+}
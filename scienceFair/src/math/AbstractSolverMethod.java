@@ -1,5 +1,8 @@
 package math;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import physics.AbstractODE;
 
 /**
@@ -7,7 +10,10 @@ import physics.AbstractODE;
  * by whatever simulation we are using. <br>
  * <br>
  * An abstract solver that must be inherited to provide functionality for 
- * iterating simulations. 
+ * iterating simulations. <br>
+ * <br>
+ * The state arrays used while stepping are allocated once, when the solver
+ * is created, and reused for every step after that. 
  * @author AD417
  *
  */
@@ -15,10 +21,74 @@ public abstract class AbstractSolverMethod {
 	
 	AbstractODE ode;
 	
+	/**
+	 * The number of values in the state of the simulation. 
+	 */
+	final int len;
+	
+	/**
+	 * The state of the simulation at the start of the current step. 
+	 */
+	final double[] vars;
+	
+	/**
+	 * Scratch state used to evaluate each stage of the current step. 
+	 */
+	final double[] simState;
+	
+	/**
+	 * The number of times the simulation's change has been evaluated. 
+	 */
+	long evaluations = 0;
+	
+	/**
+	 * Told about every accepted step, by solvers with {@link DenseOutput}.
+	 */
+	final List<DenseOutput.StepListener> stepListeners = new ArrayList<>();
+	
 	public AbstractSolverMethod(AbstractODE _ode)
 	{
 		ode = _ode;
+		len = ode.getSize();
+		vars = new double[len];
+		simState = new double[len];
 	}
 	
 	public abstract void step(double stepSize);
+	
+	/**
+	 * Tell the step listeners about a step that was just accepted. 
+	 */
+	void stepAccepted()
+	{
+		for (int i = 0; i < stepListeners.size(); i++)
+			stepListeners.get(i).onStep((DenseOutput) this);
+	}
+	
+	/**
+	 * Get the number of times the simulation's change has been evaluated. 
+	 * @return the number of calls to evaluateChange.
+	 */
+	public long getEvaluations()
+	{
+		return evaluations;
+	}
+	
+	/**
+	 * Get anything this solver remembers from one step to the next, so a 
+	 * checkpoint can carry on exactly where it left off. 
+	 * @return the remembered values. Empty, unless overridden. 
+	 */
+	public double[] saveState()
+	{
+		return new double[0];
+	}
+	
+	/**
+	 * Put back what {@link #saveState()} returned. 
+	 * @param state the values from saveState. 
+	 */
+	public void restoreState(double[] state)
+	{
+	}
 }
@@ -0,0 +1,62 @@
+package math;
+
+/**
+ * A solver that can say where the simulation was at any time during its 
+ * last accepted step, not just at the end of it. <br>
+ * <br>
+ * The interpolant is built from values the solver worked out anyway, so 
+ * asking for a point costs a few multiplications per value, and no calls 
+ * to the simulation. This lets frames and recordings be taken at exact 
+ * times, however large the steps are. <br>
+ * <br>
+ * Times are in seconds, measured from the start of the last call to 
+ * {@link AbstractSolverMethod#step(double)}. 
+ * @author AD417
+ *
+ */
+public interface DenseOutput 
+{
+	/**
+	 * Called by a solver after every step it accepts, including the 
+	 * internal steps of an adaptive solver. 
+	 */
+	@FunctionalInterface
+	interface StepListener
+	{
+		/**
+		 * @param step the solver, whose interpolant now covers the step 
+		 * that was just accepted. Only valid until this returns. 
+		 */
+		void onStep(DenseOutput step);
+	}
+	
+	/**
+	 * Get when the last accepted step started. 
+	 * @return the time, in seconds. 
+	 */
+	double getStepStart();
+	
+	/**
+	 * Get when the last accepted step ended. 
+	 * @return the time, in seconds. 
+	 */
+	double getStepEnd();
+	
+	/**
+	 * Work out the state of the simulation at a time during the last 
+	 * accepted step. 
+	 * @param time a time from {@link #getStepStart()} to 
+	 * {@link #getStepEnd()}. 
+	 * @param out an array the size of the state to fill. 
+	 */
+	void interpolate(double time, double[] out);
+	
+	/**
+	 * Have a listener told about every accepted step, after any listeners
+	 * already added. 
+	 * @param listener the listener. 
+	 */
+	void addStepListener(StepListener listener);
+	
+	void removeStepListener(StepListener listener);
+}
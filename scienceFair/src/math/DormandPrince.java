@@ -0,0 +1,370 @@
+package math;
+
+import physics.AbstractODE;
+
+/**
+ * Half of an iterative equation solver. The other half (sim delta) is provided
+ * by whatever simulation we are using. <br>
+ * <br>
+ * An adaptive Runge-Kutta method (Dormand-Prince 5(4), or "RK45"). Every 
+ * internal step produces a 5th order and a 4th order answer, and the 
+ * difference between them is used as an estimate of the error. Steps with
+ * too much error are thrown out and retried with a smaller step; steps with
+ * very little error make the next step larger. <br>
+ * <br>
+ * A call to {@link #step(double)} always advances the simulation by exactly
+ * the requested amount of time, taking as many internal steps as needed, so
+ * calling it with large steps is where this solver saves work. <br>
+ * <br>
+ * Every accepted internal step also leaves behind a 4th order interpolant,
+ * so the state between steps can be found without any more evaluations.
+ * @author AD417<br>
+ * Coefficients from Dormand &amp; Prince (1980); interpolant from Hairer, 
+ * N&oslash;rsett &amp; Wanner's DOPRI5.
+ *
+ */
+public class DormandPrince extends AbstractSolverMethod implements DenseOutput {
+	
+	// Butcher tableau. 
+	static final double c2 = 1.0 / 5, c3 = 3.0 / 10, c4 = 4.0 / 5, c5 = 8.0 / 9;
+	
+	static final double a21 = 1.0 / 5;
+	static final double a31 = 3.0 / 40, a32 = 9.0 / 40;
+	static final double a41 = 44.0 / 45, a42 = -56.0 / 15, a43 = 32.0 / 9;
+	static final double a51 = 19372.0 / 6561, a52 = -25360.0 / 2187, 
+			a53 = 64448.0 / 6561, a54 = -212.0 / 729;
+	static final double a61 = 9017.0 / 3168, a62 = -355.0 / 33, 
+			a63 = 46732.0 / 5247, a64 = 49.0 / 176, a65 = -5103.0 / 18656;
+	static final double a71 = 35.0 / 384, a73 = 500.0 / 1113, 
+			a74 = 125.0 / 192, a75 = -2187.0 / 6784, a76 = 11.0 / 84;
+	
+	// Error coefficients: the 5th order weights (a7x) minus the 4th order ones.
+	static final double e1 = 71.0 / 57600, e3 = -71.0 / 16695, 
+			e4 = 71.0 / 1920, e5 = -17253.0 / 339200, e6 = 22.0 / 525, 
+			e7 = -1.0 / 40;
+	
+	// Dense output coefficients. 
+	static final double d1 = -12715105075.0 / 11282082432.0, 
+			d3 = 87487479700.0 / 32700410799.0, 
+			d4 = -10690763975.0 / 1880347072.0, 
+			d5 = 701980252875.0 / 199316789632.0, 
+			d6 = -1453857185.0 / 822651844.0, 
+			d7 = 69997945.0 / 29380423.0;
+	
+	/**
+	 * Safety factor applied to the "optimal" new step size. 
+	 */
+	static final double safety = 0.9;
+	
+	/**
+	 * The most a step can shrink or grow by after a single attempt. 
+	 */
+	static final double minScale = 0.2, maxScale = 5;
+	
+	/**
+	 * Absolute error tolerance of each value in the state. 
+	 */
+	final double absTolerance;
+	
+	/**
+	 * Error tolerance of each value in the state, relative to its size. 
+	 */
+	final double relTolerance;
+	
+	/**
+	 * Scratch arrays for the change in state at each stage of the step. 
+	 */
+	final double[] k1, k2, k3, k4, k5, k6, k7;
+	
+	/**
+	 * The 5th order solution of the internal step being attempted. 
+	 */
+	final double[] next;
+	
+	/**
+	 * The interpolant of the last accepted internal step: the state at 
+	 * theta of the way through it is <br>
+	 * r1 + theta (r2 + (1 - theta) (r3 + theta (r4 + (1 - theta) r5)))
+	 */
+	final double[] r1, r2, r3, r4, r5;
+	
+	/**
+	 * When the last accepted internal step started and ended, in seconds
+	 * since the start of the last call to {@link #step(double)}. 
+	 */
+	double stepStart = 0, stepEnd = 0;
+	
+	/**
+	 * The size of the next internal step to attempt, in seconds. 
+	 * 0 until the first step is taken.
+	 */
+	double internalStep = 0;
+	
+	/**
+	 * Statistics about the work done by this solver. 
+	 */
+	long acceptedSteps = 0, rejectedSteps = 0;
+	
+	public DormandPrince(AbstractODE _ode, double _absTolerance, 
+			double _relTolerance)
+	{
+		super(_ode);
+		if (_absTolerance <= 0 || _relTolerance < 0) 
+			throw new IllegalArgumentException("Invalid tolerance!");
+		absTolerance = _absTolerance;
+		relTolerance = _relTolerance;
+		k1 = new double[len];
+		k2 = new double[len];
+		k3 = new double[len];
+		k4 = new double[len];
+		k5 = new double[len];
+		k6 = new double[len];
+		k7 = new double[len];
+		next = new double[len];
+		r1 = new double[len];
+		r2 = new double[len];
+		r3 = new double[len];
+		r4 = new double[len];
+		r5 = new double[len];
+	}
+	
+	public DormandPrince(AbstractODE _ode)
+	{
+		this(_ode, 1e-9, 1e-9);
+	}
+	
+	/**
+	 * Steps this much smaller than the whole step, relative to the whole
+	 * step's own rounding, can no longer move time forwards. 
+	 */
+	static final double minStepUlps = 16;
+	
+	/**
+	 * @throws IllegalStateException If the error can't be worked out, such
+	 * as when the state has blown up to infinity, or the steps needed get 
+	 * too small to make progress. The simulation is left at the last state
+	 * that was accepted. 
+	 */
+	@Override
+	public void step(double stepSize)
+	{
+		ode.getVars(vars);
+		ode.evaluateChange(vars, 0, k1);
+		evaluations++;
+		
+		if (internalStep <= 0 || internalStep > stepSize) 
+			internalStep = stepSize;
+		
+		final double minStep = minStepUlps * Math.ulp(stepSize);
+		double time = 0;
+		while (time < stepSize)
+		{
+			final double remaining = stepSize - time;
+			final boolean last = internalStep >= remaining;
+			final double h = last ? remaining : internalStep;
+			
+			final double error = attempt(h);
+			if (!(error >= 0))
+				fail("Non-finite error", time);
+			if (error <= 1)
+			{
+				acceptedSteps++;
+				buildInterpolant(h);
+				stepStart = time;
+				stepEnd = last ? stepSize : time + h;
+				stepAccepted();
+				time = stepEnd;
+				// The change at the end of this step is the change at the
+				// start of the next one. 
+				for (int i = 0; i < len; i++) 
+				{
+					vars[i] = next[i];
+					k1[i] = k7[i];
+				}
+			}
+			else 
+			{
+				rejectedSteps++;
+			}
+			
+			double scale = error == 0 
+					? maxScale 
+					: safety * Math.pow(error, -0.2);
+			scale = Math.max(minScale, Math.min(maxScale, scale));
+			// Never grow straight after a rejection.
+			if (error > 1) scale = Math.min(scale, 1);
+			
+			// A truncated final step says nothing about the natural step size.
+			if (!(last && error <= 1 && h < internalStep)) 
+				internalStep = h * scale;
+			if (internalStep < minStep) fail("Step size underflow", time);
+		}
+		
+		ode.setVars(vars);
+	}
+	
+	/**
+	 * Give up on a step, leaving the simulation at the last accepted state.
+	 * @param time how far into the step that state is, in seconds. 
+	 */
+	void fail(String reason, double time)
+	{
+		ode.setVars(vars);
+		throw new IllegalStateException(reason + " " + time 
+				+ " s into a step, with an internal step of " + internalStep
+				+ " s!");
+	}
+	
+	/**
+	 * Attempt a single internal step from vars, with k1 already filled in. 
+	 * The result is put into next, and the change at next into k7.
+	 * @param h the size of the step. 
+	 * @return the estimated error, scaled so that 1 is the largest 
+	 * acceptable error. 
+	 */
+	double attempt(double h)
+	{
+		for (int i = 0; i < len; i++) 
+			simState[i] = vars[i] + h * a21 * k1[i];
+		ode.evaluateChange(simState, h * c2, k2);
+		
+		for (int i = 0; i < len; i++) 
+			simState[i] = vars[i] + h * (a31 * k1[i] + a32 * k2[i]);
+		ode.evaluateChange(simState, h * c3, k3);
+		
+		for (int i = 0; i < len; i++) 
+			simState[i] = vars[i] + h * (a41 * k1[i] + a42 * k2[i] 
+					+ a43 * k3[i]);
+		ode.evaluateChange(simState, h * c4, k4);
+		
+		for (int i = 0; i < len; i++) 
+			simState[i] = vars[i] + h * (a51 * k1[i] + a52 * k2[i] 
+					+ a53 * k3[i] + a54 * k4[i]);
+		ode.evaluateChange(simState, h * c5, k5);
+		
+		for (int i = 0; i < len; i++) 
+			simState[i] = vars[i] + h * (a61 * k1[i] + a62 * k2[i] 
+					+ a63 * k3[i] + a64 * k4[i] + a65 * k5[i]);
+		ode.evaluateChange(simState, h, k6);
+		
+		for (int i = 0; i < len; i++) 
+			next[i] = vars[i] + h * (a71 * k1[i] + a73 * k3[i] 
+					+ a74 * k4[i] + a75 * k5[i] + a76 * k6[i]);
+		ode.evaluateChange(next, h, k7);
+		evaluations += 6;
+		
+		// RMS of the error, relative to the tolerance of each value.
+		double sum = 0;
+		for (int i = 0; i < len; i++)
+		{
+			final double err = h * (e1 * k1[i] + e3 * k3[i] + e4 * k4[i] 
+					+ e5 * k5[i] + e6 * k6[i] + e7 * k7[i]);
+			final double tolerance = absTolerance + relTolerance * 
+					Math.max(Math.abs(vars[i]), Math.abs(next[i]));
+			final double scaled = err / tolerance;
+			sum += scaled * scaled;
+		}
+		return Math.sqrt(sum / len);
+	}
+	
+	/**
+	 * Work out the interpolant of a step that was just accepted, from vars,
+	 * next and the stages of the step. 
+	 * @param h the size of the step. 
+	 */
+	void buildInterpolant(double h)
+	{
+		for (int i = 0; i < len; i++)
+		{
+			final double change = next[i] - vars[i];
+			final double start = h * k1[i] - change;
+			r1[i] = vars[i];
+			r2[i] = change;
+			r3[i] = start;
+			r4[i] = change - h * k7[i] - start;
+			r5[i] = h * (d1 * k1[i] + d3 * k3[i] + d4 * k4[i] + d5 * k5[i] 
+					+ d6 * k6[i] + d7 * k7[i]);
+		}
+	}
+	
+	@Override
+	public double getStepStart()
+	{
+		return stepStart;
+	}
+	
+	@Override
+	public double getStepEnd()
+	{
+		return stepEnd;
+	}
+	
+	@Override
+	public void interpolate(double time, double[] out)
+	{
+		final double h = stepEnd - stepStart;
+		final double theta = h == 0 ? 0 : (time - stepStart) / h;
+		final double theta1 = 1 - theta;
+		for (int i = 0; i < len; i++)
+			out[i] = r1[i] + theta * (r2[i] + theta1 * (r3[i] 
+					+ theta * (r4[i] + theta1 * r5[i])));
+	}
+	
+	@Override
+	public void addStepListener(DenseOutput.StepListener listener)
+	{
+		stepListeners.add(listener);
+	}
+	
+	@Override
+	public void removeStepListener(DenseOutput.StepListener listener)
+	{
+		stepListeners.remove(listener);
+	}
+	
+	/**
+	 * Get the number of internal steps that met the error tolerance.
+	 * @return the number of accepted steps. 
+	 */
+	public long getAcceptedSteps()
+	{
+		return acceptedSteps;
+	}
+	
+	/**
+	 * Get the number of internal steps that were thrown out for having 
+	 * too much error. 
+	 * @return the number of rejected steps. 
+	 */
+	public long getRejectedSteps()
+	{
+		return rejectedSteps;
+	}
+	
+	/**
+	 * The tolerances, followed by the size of the next internal step. 
+	 */
+	@Override
+	public double[] saveState()
+	{
+		return new double[] {absTolerance, relTolerance, internalStep};
+	}
+	
+	@Override
+	public void restoreState(double[] state)
+	{
+		if (state.length != 3 || state[0] != absTolerance 
+				|| state[1] != relTolerance)
+			throw new IllegalArgumentException("Not this solver's state!");
+		internalStep = state[2];
+	}
+	
+	/**
+	 * Get the size of the next internal step this solver will attempt.
+	 * @return the step size, in seconds. 
+	 */
+	public double getInternalStep()
+	{
+		return internalStep;
+	}
+}
@@ -13,21 +13,25 @@ import physics.AbstractODE;
  */
 public class EulersMethod extends AbstractSolverMethod {
 
+	/**
+	 * Scratch array for the change in state at the start of the step. 
+	 */
+	final double[] k1;
+
 	public EulersMethod(AbstractODE _ode) {
 		super(_ode);
+		k1 = new double[len];
 	}
 
 	@Override 
 	public void step(double stepSize)
 	{
 		// Get the current state of the simulation, and copy it into simState.
-		double[] vars = ode.getVars();
-		final int len = vars.length; // NullPointerException	
-		
-		final double[] simState = new double[len];
+		ode.getVars(vars);
 		for (int i = 0; i < len; i++) simState[i] = vars[i];
 
-		final double[] k1 = ode.evaluateChange(simState, 0);
+		ode.evaluateChange(simState, 0, k1);
+		evaluations++;
 
 		for (int i = 0; i < len; i++) simState[i] += k1[i] * stepSize;
 
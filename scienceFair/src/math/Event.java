@@ -0,0 +1,131 @@
+package math;
+
+import java.io.PrintStream;
+
+/**
+ * Something that happens at an exact moment in a simulation, such as a bob
+ * passing the bottom of its swing or flipping over the top. <br>
+ * <br>
+ * An event is described by a function of the state that changes sign when
+ * the event happens. An {@link EventDetector} watches the function over
+ * every step, and finds the exact time it crosses 0.
+ * @author AD417
+ *
+ */
+public final class Event
+{
+	/**
+	 * A function of the state that crosses 0 when the event happens.
+	 * Values of exactly 0 count as positive.
+	 */
+	@FunctionalInterface
+	public interface Function
+	{
+		double g(double[] state);
+	}
+
+	/**
+	 * Which way the function has to cross 0.
+	 */
+	public enum Direction
+	{
+		/** From negative to positive. */
+		RISING,
+		/** From positive to negative. */
+		FALLING,
+		/** Either way. */
+		BOTH
+	}
+
+	/**
+	 * What to do after an event.
+	 */
+	public enum Action
+	{
+		CONTINUE,
+		/** Stop checking any events, and stop the simulation if it is
+		 * being watched for that. */
+		STOP
+	}
+
+	/**
+	 * Called when an event happens.
+	 */
+	@FunctionalInterface
+	public interface Handler
+	{
+		/**
+		 * @param event the event.
+		 * @param time when it happened, in seconds.
+		 * @param state the state when it happened. Only valid until this
+		 * returns.
+		 * @return what to do next.
+		 */
+		Action onEvent(Event event, double time, double[] state);
+	}
+
+	public final String name;
+
+	final Function function;
+
+	final Direction direction;
+
+	final Handler handler;
+
+	/**
+	 * @param _name what to call the event, for logs.
+	 * @param _function crosses 0 when the event happens.
+	 * @param _direction which way it has to cross.
+	 * @param _handler called when the event happens.
+	 */
+	public Event(String _name, Function _function, Direction _direction,
+			Handler _handler)
+	{
+		name = _name;
+		function = _function;
+		direction = _direction;
+		handler = _handler;
+	}
+
+	/**
+	 * A handler that stops at the first event.
+	 */
+	public static Handler stop()
+	{
+		return (event, time, state) -> Action.STOP;
+	}
+
+	/**
+	 * A handler that prints each event and carries on.
+	 * @param out where to print.
+	 */
+	public static Handler log(PrintStream out)
+	{
+		return (event, time, state) -> {
+			out.printf("%s at %.9f s%n", event.name, time);
+			return Action.CONTINUE;
+		};
+	}
+
+	/**
+	 * Check whether a change in sign from one value of the function to the
+	 * next is this event.
+	 */
+	boolean crosses(double from, double to)
+	{
+		final boolean rising = from < 0 && to >= 0;
+		final boolean falling = from >= 0 && to < 0;
+		switch (direction)
+		{
+		case RISING: return rising;
+		case FALLING: return falling;
+		default: return rising || falling;
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Event{" + name + ", " + direction + "}";
+	}
+}
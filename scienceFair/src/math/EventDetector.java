@@ -0,0 +1,225 @@
+package math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the exact times of {@link Event}s, however large the solver's
+ * steps are. <br>
+ * <br>
+ * After every step the solver accepts, each event's function is checked at
+ * the end of the step. If its sign changed the right way, the moment it
+ * crossed 0 is found by root-finding on the step's {@link DenseOutput}
+ * interpolant, which costs no extra evaluations of the simulation. Events
+ * in the same step are handled in the order they happened. <br>
+ * <br>
+ * An event that happens twice within a single step changes sign twice, and
+ * is missed; keep the steps shorter than the time between events.
+ * @author AD417
+ *
+ */
+public class EventDetector implements DenseOutput.StepListener
+{
+	/**
+	 * Root-finding stops once the crossing is known to within this many
+	 * seconds.
+	 */
+	static final double timeTolerance = 1e-12;
+
+	static final int maxIterations = 100;
+
+	final List<Event> events = new ArrayList<>();
+
+	/**
+	 * The value of each event's function at the end of the last step, or
+	 * NaN before the first step.
+	 */
+	double[] last = new double[0];
+
+	/**
+	 * The time at the start of the solver's current call to step, and the
+	 * end of the last step inside it, in seconds.
+	 */
+	double base, lastEnd = 0;
+
+	boolean seenStep = false;
+
+	/**
+	 * When each event crossed during the current step, or NaN.
+	 */
+	double[] crossings = new double[0];
+
+	final double[] state;
+
+	boolean stopped = false;
+
+	double stopTime = Double.NaN;
+
+	final double[] stopState;
+
+	long count = 0;
+
+	/**
+	 * Start watching a solver for events.
+	 * @param solver a solver with {@link DenseOutput}.
+	 * @param startTime the time the simulation is at now, in seconds.
+	 */
+	public EventDetector(AbstractSolverMethod solver, double startTime)
+	{
+		if (!(solver instanceof DenseOutput))
+			throw new IllegalArgumentException("Solver has no dense output!");
+		base = startTime;
+		state = new double[solver.len];
+		stopState = new double[solver.len];
+		((DenseOutput) solver).addStepListener(this);
+	}
+
+	/**
+	 * Start watching for an event.
+	 * @return this detector.
+	 */
+	public EventDetector add(Event event)
+	{
+		events.add(event);
+		final int n = events.size();
+		last = Arrays.copyOf(last, n);
+		last[n - 1] = Double.NaN;
+		crossings = new double[n];
+		return this;
+	}
+
+	/**
+	 * Shorthand for {@link #add(Event)}.
+	 */
+	public EventDetector add(String name, Event.Function function,
+			Event.Direction direction, Event.Handler handler)
+	{
+		return add(new Event(name, function, direction, handler));
+	}
+
+	@Override
+	public void onStep(DenseOutput step)
+	{
+		final double start = step.getStepStart();
+		final double end = step.getStepEnd();
+		// Times restart from 0 with every call to step.
+		if (seenStep && start == 0) base += lastEnd;
+		seenStep = true;
+		lastEnd = end;
+		if (stopped) return;
+
+		final int n = events.size();
+		for (int i = 0; i < n; i++)
+		{
+			final Event event = events.get(i);
+			if (Double.isNaN(last[i]))
+			{
+				step.interpolate(start, state);
+				last[i] = event.function.g(state);
+			}
+			step.interpolate(end, state);
+			final double g = event.function.g(state);
+			crossings[i] = event.crosses(last[i], g)
+					? findCrossing(step, event, start, last[i], end, g)
+					: Double.NaN;
+			last[i] = g;
+		}
+
+		// Handle the crossings in the order they happened.
+		while (true)
+		{
+			int first = -1;
+			for (int i = 0; i < n; i++)
+				if (!Double.isNaN(crossings[i])
+						&& (first < 0 || crossings[i] < crossings[first]))
+					first = i;
+			if (first < 0) return;
+
+			final double time = crossings[first];
+			crossings[first] = Double.NaN;
+			step.interpolate(time, state);
+			count++;
+			final Event event = events.get(first);
+			if (event.handler.onEvent(event, base + time, state)
+					== Event.Action.STOP)
+			{
+				stopped = true;
+				stopTime = base + time;
+				System.arraycopy(state, 0, stopState, 0, state.length);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Find when an event's function crossed 0 during a step, with the
+	 * Illinois version of the false position method. Each guess only costs
+	 * an interpolation.
+	 * @return the first time found at which the function has its new sign.
+	 */
+	double findCrossing(DenseOutput step, Event event, double a, double ga,
+			double b, double gb)
+	{
+		// Which side of 0 the function ends up on.
+		final boolean after = gb >= 0;
+		int side = 0;
+		for (int i = 0; i < maxIterations && b - a > timeTolerance; i++)
+		{
+			double t = b - gb * (b - a) / (gb - ga);
+			if (!(t > a && t < b)) t = 0.5 * (a + b);
+			step.interpolate(t, state);
+			final double g = event.function.g(state);
+			if ((g >= 0) == after)
+			{
+				b = t;
+				gb = g;
+				// Twice in a row on this side: halve the other end's weight.
+				if (side == 1) ga *= 0.5;
+				side = 1;
+			}
+			else
+			{
+				a = t;
+				ga = g;
+				if (side == -1) gb *= 0.5;
+				side = -1;
+			}
+		}
+		return b;
+	}
+
+	/**
+	 * Check whether an event has asked to stop.
+	 */
+	public boolean isStopped()
+	{
+		return stopped;
+	}
+
+	/**
+	 * Get when the event that asked to stop happened.
+	 * @return the time, in seconds, or NaN if nothing has asked to stop.
+	 */
+	public double getStopTime()
+	{
+		return stopTime;
+	}
+
+	/**
+	 * Get the state when the event that asked to stop happened.
+	 * @return a copy of the state.
+	 */
+	public double[] getStopState()
+	{
+		return stopState.clone();
+	}
+
+	/**
+	 * Get the number of events that have happened.
+	 */
+	public long getCount()
+	{
+		return count;
+	}
+}
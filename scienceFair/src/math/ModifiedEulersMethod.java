@@ -13,26 +13,31 @@ import physics.AbstractODE;
  */
 public class ModifiedEulersMethod extends AbstractSolverMethod {
 
+	/**
+	 * Scratch arrays for the change in state at each stage of the step. 
+	 */
+	final double[] k1, k2;
+
 	public ModifiedEulersMethod(AbstractODE _ode)
 	{
 		super(_ode);
+		k1 = new double[len];
+		k2 = new double[len];
 	}
 	
 	@Override
 	public void step(double stepSize) 
 	{
 		// Get the current state of the simulation, and copy it into simState.
-		double[] vars = ode.getVars();
-		final int len = vars.length; // NullPointerException	
-		
-		final double[] simState = new double[len];
+		ode.getVars(vars);
 		for (int i = 0; i < len; i++) simState[i] = vars[i];
 		
-		final double[] k1 = ode.evaluateChange(simState, 0);
+		ode.evaluateChange(simState, 0, k1);
 		
 		for (int i = 0; i < len; i++) simState[i] += k1[i] * stepSize;
 		
-		final double[] k2 = ode.evaluateChange(simState, stepSize);
+		ode.evaluateChange(simState, stepSize, k2);
+		evaluations += 2;
 		
 		for (int i = 0; i < len; i++) 
 			simState[i] = vars[i] + (0.5 * (k1[i] + k2[i]) * stepSize);
@@ -2,37 +2,59 @@ package math;
 
 import physics.AbstractODE;
 
-public class RungeKutta extends AbstractSolverMethod {
+/**
+ * Half of an iterative equation solver. The other half (sim delta) is provided
+ * by whatever simulation we are using. <br>
+ * <br>
+ * The classic 4th order Runge-Kutta method. Between steps, the state is 
+ * interpolated with the method's own 3rd order continuous extension, 
+ * which only needs the 4 stages the step already evaluated. 
+ * @author AD417
+ *
+ */
+public class RungeKutta extends AbstractSolverMethod implements DenseOutput {
+	
+	/**
+	 * Scratch arrays for the change in state at each stage of the step. 
+	 */
+	final double[] k1, k2, k3, k4;
+	
+	/**
+	 * The size of the last step, in seconds. 0 before the first step. 
+	 */
+	double lastStep = 0;
 	
 	public RungeKutta(AbstractODE _ode) {
 		super(_ode);
+		k1 = new double[len];
+		k2 = new double[len];
+		k3 = new double[len];
+		k4 = new double[len];
 	}
 	
 	public void step(double stepSize)
 	{
 		// Get the current state of the simulation, and copy it into simState.
-		double[] vars = ode.getVars();
-		final int len = vars.length; // NullPointerException	
-		
-		final double[] simState = new double[len];
+		ode.getVars(vars);
 		for (int i = 0; i < len; i++) simState[i] = vars[i];
 		
-		final double[] k1 = ode.evaluateChange(simState, 0);
+		ode.evaluateChange(simState, 0, k1);
 		
 		for (int i = 0; i < len; i++) 
 			simState[i] = vars[i] + k1[i] * stepSize/2;
 		
-		final double[] k2 = ode.evaluateChange(simState, stepSize * 0.5);
+		ode.evaluateChange(simState, stepSize * 0.5, k2);
 		
 		for (int i = 0; i < len; i++) 
 			simState[i] = vars[i] + k2[i] * stepSize/2;
 		
-		final double[] k3 = ode.evaluateChange(simState, stepSize * 0.5);
+		ode.evaluateChange(simState, stepSize * 0.5, k3);
 
 		for (int i = 0; i < len; i++) 
 			simState[i] = vars[i] + k3[i] * stepSize;
 		
-		final double[] k4 = ode.evaluateChange(simState, stepSize);
+		ode.evaluateChange(simState, stepSize, k4);
+		evaluations += 4;
 		
 		for (int i = 0; i < len; i++)
 			simState[i] = vars[i] + (k1[i] + 2 * k2[i] + 2 * k3[i] + k4[i]) * stepSize / 6;
@@ -43,5 +65,52 @@ public class RungeKutta extends AbstractSolverMethod {
 		// System.out.println(k4[1]);
 		// System.out.println();
 		ode.setVars(simState);
+		
+		lastStep = stepSize;
+		stepAccepted();
+	}
+	
+	@Override
+	public double getStepStart()
+	{
+		return 0;
+	}
+	
+	@Override
+	public double getStepEnd()
+	{
+		return lastStep;
+	}
+	
+	/**
+	 * vars and k1 to k4 are left untouched until the next step, so this 
+	 * keeps working after the step is done. 
+	 */
+	@Override
+	public void interpolate(double time, double[] out)
+	{
+		final double h = lastStep;
+		final double theta = h == 0 ? 0 : time / h;
+		final double theta2 = theta * theta;
+		final double theta3 = theta2 * theta;
+		// Weights of each stage at theta. At 1 they are 1/6, 1/3, 1/3, 1/6.
+		final double b1 = theta - 1.5 * theta2 + 2.0 / 3 * theta3;
+		final double b23 = theta2 - 2.0 / 3 * theta3;
+		final double b4 = -0.5 * theta2 + 2.0 / 3 * theta3;
+		for (int i = 0; i < len; i++)
+			out[i] = vars[i] + h * (b1 * k1[i] + b23 * (k2[i] + k3[i]) 
+					+ b4 * k4[i]);
+	}
+	
+	@Override
+	public void addStepListener(DenseOutput.StepListener listener)
+	{
+		stepListeners.add(listener);
+	}
+	
+	@Override
+	public void removeStepListener(DenseOutput.StepListener listener)
+	{
+		stepListeners.remove(listener);
 	}
 }
@@ -0,0 +1,69 @@
+package math;
+
+import physics.AbstractODE;
+
+/**
+ * Creates solvers by name, so a choice of solver can be saved to a file 
+ * and read back. 
+ * @author AD417
+ *
+ */
+public final class Solvers 
+{
+	/**
+	 * The names of every solver that can be created. 
+	 */
+	public static final String[] names = {"EulersMethod", 
+			"ModifiedEulersMethod", "RungeKutta", "DormandPrince", 
+			"VelocityVerlet", "Yoshida"};
+	
+	private Solvers() {}
+	
+	/**
+	 * Get the name of a solver, as used by {@link #create(String, AbstractODE)}.
+	 * @param solver the solver. 
+	 * @return the name of its class. 
+	 */
+	public static String nameOf(AbstractSolverMethod solver)
+	{
+		return solver.getClass().getSimpleName();
+	}
+	
+	/**
+	 * Create a solver with its default settings. 
+	 * @param name one of {@link #names}.
+	 * @param ode the simulation to solve. 
+	 * @return a new solver. 
+	 */
+	public static AbstractSolverMethod create(String name, AbstractODE ode)
+	{
+		switch (name)
+		{
+		case "EulersMethod": return new EulersMethod(ode);
+		case "ModifiedEulersMethod": return new ModifiedEulersMethod(ode);
+		case "RungeKutta": return new RungeKutta(ode);
+		case "DormandPrince": return new DormandPrince(ode);
+		case "VelocityVerlet": return new VelocityVerlet(ode);
+		case "Yoshida": return new Yoshida(ode);
+		default: throw new IllegalArgumentException("Unknown solver: " + name);
+		}
+	}
+	
+	/**
+	 * Create a solver and put back the state it had when it was saved.
+	 * @param name one of {@link #names}.
+	 * @param ode the simulation to solve. 
+	 * @param state what {@link AbstractSolverMethod#saveState()} returned.
+	 * @return a solver that carries on from where the saved one was. 
+	 */
+	public static AbstractSolverMethod restore(String name, AbstractODE ode, 
+			double[] state)
+	{
+		AbstractSolverMethod solver = name.equals("DormandPrince") 
+				// Its tolerances are part of its state.
+				? new DormandPrince(ode, state[0], state[1])
+				: create(name, ode);
+		solver.restoreState(state);
+		return solver;
+	}
+}
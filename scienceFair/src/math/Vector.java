@@ -2,7 +2,12 @@ package math;
 
 /**
  * 2D Vector class for storing positions in space.
- * Only implements methods useful for this program. Sorry!
+ * Only implements methods useful for this program. Sorry! <br>
+ * <br>
+ * Every operation that creates a new vector also has a version that writes
+ * its answer into a vector you already have, so hot code can reuse the 
+ * same few vectors instead of making garbage. The vector written to may be
+ * this vector, or the other one, to change it in place. 
  * @author AD417
  *
  */
@@ -34,6 +39,26 @@ public class Vector
 		this.y = vec.y;
 	}
 	
+	/**
+	 * Change both components of this vector. 
+	 * @return this vector. 
+	 */
+	public Vector set(double x, double y)
+	{
+		this.x = x;
+		this.y = y;
+		return this;
+	}
+	
+	/**
+	 * Copy another vector into this one. 
+	 * @return this vector. 
+	 */
+	public Vector set(Vector vec)
+	{
+		return set(vec.x, vec.y);
+	}
+	
 	/**
 	 * Get the length of a vector -- the hypotenuse of a right triangle 
 	 * with side lengths x and y. 
@@ -50,9 +75,19 @@ public class Vector
 	 * @return A vector object with magnitude 1. 
 	 */
 	public Vector getNormal()
+	{
+		return getNormal(new Vector());
+	}
+	
+	/**
+	 * Work out the normalized vector without creating a new one. 
+	 * @param out where to write the vector with magnitude 1. 
+	 * @return out. 
+	 */
+	public Vector getNormal(Vector out)
 	{
 		double vectorLength = getMagnitude();
-		return new Vector(x / vectorLength, y / vectorLength);
+		return out.set(x / vectorLength, y / vectorLength);
 	}
 	
 	/**
@@ -64,11 +99,20 @@ public class Vector
 	 */
 	public Vector withLength(double newLength)
 	{
-		Vector normalVector = getNormal();
-		return new Vector(
-				normalVector.x * newLength, 
-				normalVector.y * newLength
-		);
+		return withLength(newLength, new Vector());
+	}
+	
+	/**
+	 * Work out a vector in the same direction with a set length, without 
+	 * creating a new one. 
+	 * @param newLength The new length of the vector. 
+	 * @param out where to write the vector with the given length. 
+	 * @return out. 
+	 */
+	public Vector withLength(double newLength, Vector out)
+	{
+		getNormal(out);
+		return out.set(out.x * newLength, out.y * newLength);
 	}
 	
 	/**
@@ -77,23 +121,64 @@ public class Vector
 	 */
 	public Vector getPerpendicular()
 	{
-		return new Vector(y, -x);
+		return getPerpendicular(new Vector());
+	}
+	
+	/**
+	 * Work out the perpendicular vector without creating a new one. 
+	 * @param out where to write the rotated vector. 
+	 * @return out. 
+	 */
+	public Vector getPerpendicular(Vector out)
+	{
+		return out.set(y, -x);
 	}
 	
 	public Vector add(Vector other)
 	{
-		return new Vector(
-				this.x + other.x,
-				this.y + other.y
-		);
+		return add(other, new Vector());
+	}
+	
+	/**
+	 * Add another vector to this one, writing the sum into out. 
+	 * @return out. 
+	 */
+	public Vector add(Vector other, Vector out)
+	{
+		return out.set(this.x + other.x, this.y + other.y);
+	}
+	
+	/**
+	 * Add another vector onto this one. 
+	 * @return this vector. 
+	 */
+	public Vector addInPlace(Vector other)
+	{
+		return add(other, this);
 	}
 	
 	public Vector sub(Vector other)
 	{
-		return new Vector(
-				this.x - other.x,
-				this.y - other.y
-		);
+		return sub(other, new Vector());
+	}
+	
+	/**
+	 * Subtract another vector from this one, writing the difference into
+	 * out. 
+	 * @return out. 
+	 */
+	public Vector sub(Vector other, Vector out)
+	{
+		return out.set(this.x - other.x, this.y - other.y);
+	}
+	
+	/**
+	 * Subtract another vector from this one. 
+	 * @return this vector. 
+	 */
+	public Vector subInPlace(Vector other)
+	{
+		return sub(other, this);
 	}
 	
 	@Override
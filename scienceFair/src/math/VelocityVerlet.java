@@ -0,0 +1,245 @@
+package math;
+
+import physics.AbstractODE;
+
+/**
+ * Half of an iterative equation solver. The other half (sim delta) is provided
+ * by whatever simulation we are using. <br>
+ * <br>
+ * A symplectic, 2nd order method that moves the velocities and positions
+ * of the simulation separately: half a step of velocity ("kick"), a full 
+ * step of position ("drift"), then another half step of velocity. Unlike 
+ * {@link RungeKutta}, the energy error of this method stays bounded instead
+ * of drifting, so long runs can use much larger steps. <br>
+ * <br>
+ * When the accelerations of the simulation also depend on its velocities 
+ * (like a {@link physics.DoublePendulum}), the first kick is solved for 
+ * implicitly by fixed-point iteration. The step stays time-reversible, which
+ * is what keeps the energy error from growing. <br>
+ * <br>
+ * The simulation must split its state into positions and velocities; see 
+ * {@link AbstractODE#getPositionIndices()}.
+ * @author AD417
+ *
+ */
+public class VelocityVerlet extends AbstractSolverMethod {
+	
+	/**
+	 * The most iterations used to solve for the velocity at the half step.
+	 */
+	static final int maxIterations = 50;
+	
+	/**
+	 * How close two iterations of the half step velocity must be, relative 
+	 * to its size, to count as solved. 
+	 */
+	static final double iterationTolerance = 1e-14;
+	
+	/**
+	 * Where the positions and velocities are in the state of the simulation. 
+	 */
+	final int[] positions, velocities;
+	
+	/**
+	 * Whether the accelerations depend on the positions only. 
+	 */
+	final boolean separable;
+	
+	/**
+	 * Scratch array for the change in state. 
+	 */
+	final double[] change;
+	
+	/**
+	 * Scratch state used to evaluate the accelerations at the half step. 
+	 */
+	final double[] trial;
+	
+	/**
+	 * The velocity at the half step. 
+	 */
+	final double[] halfVelocity;
+	
+	/**
+	 * The last acceleration evaluated, at the positions stored in 
+	 * accelerationPositions. For separable simulations, the acceleration at
+	 * the end of one step is also the acceleration at the start of the next.
+	 * Otherwise, it is used as the first guess of the next half step. 
+	 */
+	final double[] acceleration, accelerationPositions;
+	
+	boolean accelerationValid = false;
+
+	public VelocityVerlet(AbstractODE _ode) 
+	{
+		super(_ode);
+		positions = ode.getPositionIndices();
+		velocities = ode.getVelocityIndices();
+		if (positions == null || velocities == null || 
+				positions.length != velocities.length)
+			throw new IllegalArgumentException(
+					"Simulation has no position / velocity split!");
+		separable = ode.isSeparable();
+		
+		final int n = positions.length;
+		change = new double[len];
+		trial = new double[len];
+		halfVelocity = new double[n];
+		acceleration = new double[n];
+		accelerationPositions = new double[n];
+	}
+
+	/**
+	 * @throws IllegalStateException If the velocity at the half step can't 
+	 * be solved for, which happens when the step is too large for how 
+	 * strongly the accelerations depend on the velocities. The simulation 
+	 * is left where it was. 
+	 */
+	@Override 
+	public void step(double stepSize)
+	{
+		// Get the current state of the simulation, and copy it into simState.
+		ode.getVars(vars);
+		for (int i = 0; i < len; i++) simState[i] = vars[i];
+		
+		advance(stepSize);
+		
+		ode.setVars(simState);
+	}
+	
+	/**
+	 * Take a single step of size h, updating simState in place. 
+	 * @param h the size of the step. May be negative. 
+	 */
+	void advance(double h)
+	{
+		if (separable) advanceSeparable(h);
+		else advanceImplicit(h);
+	}
+	
+	void advanceSeparable(double h)
+	{
+		final int n = positions.length;
+		if (!hasAcceleration()) updateAcceleration(simState);
+		
+		for (int i = 0; i < n; i++)
+			simState[velocities[i]] += 0.5 * h * acceleration[i];
+		for (int i = 0; i < n; i++) 
+			simState[positions[i]] += h * simState[velocities[i]];
+		
+		updateAcceleration(simState);
+		for (int i = 0; i < n; i++)
+			simState[velocities[i]] += 0.5 * h * acceleration[i];
+	}
+	
+	void advanceImplicit(double h)
+	{
+		final int n = positions.length;
+		for (int i = 0; i < len; i++) trial[i] = simState[i];
+		
+		// Solve v(1/2) = v + h/2 * a(q, v(1/2)). The last acceleration at
+		// these positions is a much better first guess than none at all.
+		final boolean guess = hasAcceleration();
+		for (int i = 0; i < n; i++) 
+		{
+			halfVelocity[i] = simState[velocities[i]];
+			if (guess) halfVelocity[i] += 0.5 * h * acceleration[i];
+		}
+		boolean solved = false;
+		for (int iteration = 0; iteration < maxIterations && !solved; 
+				iteration++)
+		{
+			for (int i = 0; i < n; i++) trial[velocities[i]] = halfVelocity[i];
+			ode.evaluateChange(trial, 0.5 * h, change);
+			evaluations++;
+			
+			solved = true;
+			for (int i = 0; i < n; i++)
+			{
+				final double v = simState[velocities[i]] + 
+						0.5 * h * change[velocities[i]];
+				if (Math.abs(v - halfVelocity[i]) > 
+						iterationTolerance * (1 + Math.abs(v))) 
+					solved = false;
+				halfVelocity[i] = v;
+			}
+		}
+		// Carrying on would quietly lose the accuracy and reversibility of 
+		// the step. The simulation itself hasn't been changed yet. 
+		if (!solved) throw new IllegalStateException("Half step velocity "
+				+ "didn't converge in " + maxIterations + " iterations, with "
+				+ "a step of " + h + " s!");
+		
+		// Drift the positions with the half step velocity.
+		for (int i = 0; i < n; i++)
+		{
+			simState[positions[i]] += h * halfVelocity[i];
+			trial[positions[i]] = simState[positions[i]];
+			trial[velocities[i]] = halfVelocity[i];
+		}
+		
+		// v = v(1/2) + h/2 * a(q', v(1/2))
+		ode.evaluateChange(trial, h, change);
+		evaluations++;
+		for (int i = 0; i < n; i++)
+		{
+			acceleration[i] = change[velocities[i]];
+			accelerationPositions[i] = simState[positions[i]];
+			simState[velocities[i]] = halfVelocity[i] + 0.5 * h * acceleration[i];
+		}
+		accelerationValid = true;
+	}
+	
+	/**
+	 * Check whether the stored acceleration is for the positions in simState.
+	 */
+	boolean hasAcceleration()
+	{
+		if (!accelerationValid) return false;
+		for (int i = 0; i < positions.length; i++)
+			if (accelerationPositions[i] != simState[positions[i]]) 
+				return false;
+		return true;
+	}
+	
+	/**
+	 * Evaluate and store the acceleration at the positions of a state.
+	 */
+	void updateAcceleration(double[] state)
+	{
+		ode.evaluateChange(state, 0, change);
+		evaluations++;
+		for (int i = 0; i < positions.length; i++)
+		{
+			acceleration[i] = change[velocities[i]];
+			accelerationPositions[i] = state[positions[i]];
+		}
+		accelerationValid = true;
+	}
+	
+	/**
+	 * Whether the last acceleration is stored, followed by the acceleration
+	 * and the positions it is for. 
+	 */
+	@Override
+	public double[] saveState()
+	{
+		final int n = positions.length;
+		double[] state = new double[1 + 2 * n];
+		state[0] = accelerationValid ? 1 : 0;
+		System.arraycopy(acceleration, 0, state, 1, n);
+		System.arraycopy(accelerationPositions, 0, state, 1 + n, n);
+		return state;
+	}
+	
+	@Override
+	public void restoreState(double[] state)
+	{
+		final int n = positions.length;
+		if (state.length != 1 + 2 * n) 
+			throw new IllegalArgumentException("Not this solver's state!");
+		accelerationValid = state[0] != 0;
+		System.arraycopy(state, 1, acceleration, 0, n);
+		System.arraycopy(state, 1 + n, accelerationPositions, 0, n);
+	}
+}
@@ -0,0 +1,49 @@
+package math;
+
+import physics.AbstractODE;
+
+/**
+ * Half of an iterative equation solver. The other half (sim delta) is provided
+ * by whatever simulation we are using. <br>
+ * <br>
+ * Yoshida's 4th order symplectic method. Each step is made of three 
+ * {@link VelocityVerlet} steps of carefully chosen sizes (the middle one 
+ * goes backwards in time), which cancel out the 3rd order error of a single
+ * Verlet step while keeping its bounded energy error. 
+ * @author AD417<br>
+ * Coefficients from Yoshida (1990).
+ *
+ */
+public class Yoshida extends VelocityVerlet {
+	
+	static final double cubeRootOf2 = Math.cbrt(2);
+	
+	/**
+	 * The fraction of the step used by the outer Verlet steps.
+	 */
+	static final double w1 = 1 / (2 - cubeRootOf2);
+	
+	/**
+	 * The fraction of the step used by the middle Verlet step. 
+	 */
+	static final double w0 = -cubeRootOf2 / (2 - cubeRootOf2);
+
+	public Yoshida(AbstractODE _ode) 
+	{
+		super(_ode);
+	}
+	
+	@Override 
+	public void step(double stepSize)
+	{
+		// Get the current state of the simulation, and copy it into simState.
+		ode.getVars(vars);
+		for (int i = 0; i < len; i++) simState[i] = vars[i];
+		
+		advance(w1 * stepSize);
+		advance(w0 * stepSize);
+		advance(w1 * stepSize);
+		
+		ode.setVars(simState);
+	}
+}
@@ -7,4 +7,13 @@
  */
 module scienceFair {
 	requires java.desktop;
-}
\ No newline at end of file
+	requires java.management;
+	requires jdk.management;
+	// The events in monitor extend jdk.jfr.Event.
+	requires transitive jdk.jfr;
+	// Optional: only used by physics.DoublePendulumBatch when it's loaded.
+	requires static jdk.incubator.vector;
+	
+	// JMX and JFR can only read MBeans and events in exported packages.
+	exports monitor;
+}
@@ -0,0 +1,33 @@
+package monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for a recording writing to its file. Only the actual 
+ * writes are events, not every row, so there are few of them. 
+ * @author AD417
+ *
+ */
+@Name("scienceFair.Recording")
+@Label("Recording Write")
+@Description("A trajectory recording writing to its file")
+@Category({"Science Fair", "Recording"})
+@StackTrace(false)
+public class RecordingEvent extends jdk.jfr.Event 
+{
+	@Label("Format")
+	public String format;
+	
+	@Label("Bytes")
+	@DataAmount
+	public long bytes;
+	
+	public RecordingEvent()
+	{
+	}
+}
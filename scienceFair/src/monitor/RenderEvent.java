@@ -0,0 +1,29 @@
+package monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for drawing one frame of a simulation, either in a window
+ * or for an export. 
+ * @author AD417
+ *
+ */
+@Name("scienceFair.Render")
+@Label("Render")
+@Description("Drawing one frame of a simulation")
+@Category({"Science Fair", "Rendering"})
+@StackTrace(false)
+public class RenderEvent extends jdk.jfr.Event 
+{
+	@Label("Target")
+	@Description("What the frame was drawn for")
+	public String target;
+	
+	public RenderEvent()
+	{
+	}
+}
@@ -0,0 +1,70 @@
+package monitor;
+
+/**
+ * What a running simulation shows through JMX. 
+ * See {@link sim.SimulationMonitor}. 
+ * @author AD417
+ *
+ */
+public interface SimulationMonitorMBean 
+{
+	/**
+	 * @return the class of the simulation. 
+	 */
+	String getModel();
+	
+	/**
+	 * @return the class of the solver. 
+	 */
+	String getSolver();
+	
+	/**
+	 * @return the number of ticks simulated so far. 
+	 */
+	long getTicks();
+	
+	/**
+	 * @return the number of ticks simulated per second of real time, 
+	 * over the last sample. 
+	 */
+	double getStepsPerSecond();
+	
+	/**
+	 * @return the number of calls to evaluateChange per tick, over the 
+	 * last sample. 
+	 */
+	double getEvaluationsPerStep();
+	
+	/**
+	 * @return the total energy when the monitor started. 
+	 */
+	double getInitialEnergy();
+	
+	/**
+	 * @return the total energy at the last sample. 
+	 */
+	double getEnergy();
+	
+	/**
+	 * @return (energy - initial energy) / initial energy, at the last 
+	 * sample. If the model's energy scale is larger than the initial 
+	 * energy, such as when it starts at rest, it is used instead. 
+	 */
+	double getEnergyDrift();
+	
+	/**
+	 * @return the largest absolute energy drift seen so far. 
+	 */
+	double getWorstEnergyDrift();
+	
+	/**
+	 * @return how far the simulation is behind real time, in 
+	 * milliseconds. 0 unless it is running in real time. 
+	 */
+	double getLagMillis();
+	
+	/**
+	 * @return whether the simulation has finished. 
+	 */
+	boolean isFinished();
+}
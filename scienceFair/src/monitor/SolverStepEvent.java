@@ -0,0 +1,41 @@
+package monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JFR event for one tick of a solver. <br>
+ * <br>
+ * There is one of these per tick, so it is off unless a recording turns 
+ * it on, e.g. with 
+ * <code>-XX:StartFlightRecording:settings=profile,+scienceFair.SolverStep#enabled=true</code>.
+ * When no recording wants it, creating and committing it costs nothing.
+ * @author AD417
+ *
+ */
+@Name("scienceFair.SolverStep")
+@Label("Solver Step")
+@Description("One tick of a simulation's solver")
+@Category({"Science Fair", "Simulation"})
+@Enabled(false)
+@StackTrace(false)
+public class SolverStepEvent extends jdk.jfr.Event 
+{
+	@Label("Solver")
+	public String solver;
+	
+	@Label("Tick")
+	public long tick;
+	
+	@Label("Evaluations")
+	@Description("Calls to evaluateChange during this step")
+	public long evaluations;
+	
+	public SolverStepEvent()
+	{
+	}
+}
@@ -5,7 +5,12 @@ package physics;
  * changed as needed while the simulation runs. <br>
  * <br>
  * Collects data points relevant for the equation solving in one
- * place, and allows for their manipulation. 
+ * place, and allows for their manipulation. <br>
+ * <br>
+ * Every method that returns a new array also has an in-place variant that
+ * writes into an array provided by the caller. The solvers only use the 
+ * in-place variants, so a simulation that overrides them can be stepped 
+ * without allocating anything. 
  * @author AD417<br>
  * Based on code written by myphysicslab.
  *
@@ -15,12 +20,35 @@ public abstract class AbstractODE {
 	
 	public AbstractODE() {}
 	
+	/**
+	 * Get the number of values stored in the state of this simulation. 
+	 * Solvers use this to size their scratch arrays once, up front. 
+	 * @return the length of the array returned by {@link #getVars()}.
+	 */
+	public int getSize()
+	{
+		return getVars().length;
+	}
+	
 	/**
 	 * Get the important variables in this simulation. 
 	 * @return an array containing a number of values from a sim.
 	 */
 	public abstract double[] getVars();
 	
+	/**
+	 * Copy the important variables in this simulation into the given array.
+	 * <br>
+	 * The default implementation allocates; simulations that are stepped
+	 * often should override it. 
+	 * @param vars an array of at least {@link #getSize()} values to fill. 
+	 */
+	public void getVars(double[] vars)
+	{
+		double[] current = getVars();
+		System.arraycopy(current, 0, vars, 0, current.length);
+	}
+	
 	/**
 	 * Determine the change in the state of the simulation, given the 
 	 * provided current state. <br>
@@ -32,6 +60,61 @@ public abstract class AbstractODE {
 	 */
 	public abstract double[] evaluateChange(double[] current, double timeStep);
 	
+	/**
+	 * Determine the change in the state of the simulation, given the 
+	 * provided current state, and write it into the given array. <br>
+	 * <br>
+	 * Every value of change must be written, as solvers reuse the same 
+	 * array between calls. The default implementation allocates; 
+	 * simulations that are stepped often should override it. 
+	 * @param current the state of the simulation to evaluate.
+	 * @param timeStep an indicator of how much time has passed 
+	 * since the true current state.
+	 * @param change an array of at least {@link #getSize()} values that 
+	 * receives the change in the state of the provided simulation.
+	 */
+	public void evaluateChange(double[] current, double timeStep, 
+			double[] change)
+	{
+		double[] result = evaluateChange(current, timeStep);
+		System.arraycopy(result, 0, change, 0, result.length);
+	}
+	
+	/**
+	 * Get where the positions (angles) are stored in the state of this
+	 * simulation. Symplectic solvers need the state split into positions
+	 * and their matching velocities. 
+	 * @return the index of each position, or null if the state can't be 
+	 * split this way. 
+	 */
+	public int[] getPositionIndices()
+	{
+		return null;
+	}
+	
+	/**
+	 * Get where the velocities are stored in the state of this simulation. 
+	 * The change of the position at {@link #getPositionIndices()}[i] is the 
+	 * value at getVelocityIndices()[i]. 
+	 * @return the index of each velocity, or null if the state can't be 
+	 * split this way. 
+	 */
+	public int[] getVelocityIndices()
+	{
+		return null;
+	}
+	
+	/**
+	 * Whether the change in every velocity (the acceleration) depends on 
+	 * the positions only. Symplectic solvers can skip solving for the 
+	 * velocity when this is true. 
+	 * @return true if the accelerations don't depend on the velocities.
+	 */
+	public boolean isSeparable()
+	{
+		return false;
+	}
+	
 	/**
 	 * Sync the simulation to the new state calculated by the second half of 
 	 * the solver. 
@@ -7,10 +7,22 @@ import java.text.DecimalFormat;
 import math.Vector;
 
 public class Bob {
+    /**
+     * Width of the rod when it is drawn, in pixels. 
+     */
+    static final BasicStroke rodStroke = 
+        new BasicStroke(3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+
+    /**
+     * A line to draw rods with, for each thread that draws them. 
+     */
+    static final ThreadLocal<Line2D.Double> rodLine = 
+        ThreadLocal.withInitial(Line2D.Double::new);
+
     /**
      * Position of the center. Default (0,0)
      */
-    Vector center = new Vector();
+    double centerX = 0, centerY = 0;
 
     double lowestPoint = 0;
     
@@ -35,20 +47,32 @@ public class Bob {
      * Mass of the bob. Mass is idealized as a single point. 
      */
     double mass;
+    
+    /**
+     * The constants of the simulation this bob belongs to. 
+     */
+    final SimulationParameters params;
 
     public Bob(double _rodLength, double _mass) throws Exception
+    {
+        this(_rodLength, _mass, SimulationParameters.defaults);
+    }
+
+    public Bob(double _rodLength, double _mass, SimulationParameters _params)
+        throws Exception
     {
         if (_rodLength <= 0) throw new Exception("Invalid Rod Length!");
         if (_mass <= 0) throw new Exception("Invalid mass!");
         rodLength = _rodLength;
         mass = _mass;
+        params = _params;
     }
 
     public Bob(double x, double y, double _rodLength, double _mass) 
         throws Exception
     {
         this(_rodLength, _mass);
-        center = new Vector(x, y);
+        setCenter(x, y);
     }
 
     public Bob(double x, double y, double _rodLength, double _theta, 
@@ -65,7 +89,8 @@ public class Bob {
      */
     public void setCenter(double x, double y)
     {
-        center = new Vector(x, y);
+        centerX = x;
+        centerY = y;
     }
     
     /**
@@ -74,7 +99,7 @@ public class Bob {
      */
     public void setCenter(Vector pos)
     {
-    	center = new Vector(pos.x, pos.y);
+    	setCenter(pos.x, pos.y);
     }
 
     /**
@@ -84,7 +109,27 @@ public class Bob {
      */
     public Vector getCenter()
     {
-        return new Vector(center.x, center.y);
+        return getCenter(new Vector());
+    }
+
+    /**
+     * Get the center position without creating a new vector.
+     * @param out where to write the (x, y) position the bob rotates around.
+     * @return out.
+     */
+    public Vector getCenter(Vector out)
+    {
+        return out.set(centerX, centerY);
+    }
+
+    public double getCenterX()
+    {
+        return centerX;
+    }
+
+    public double getCenterY()
+    {
+        return centerY;
     }
 
     /**
@@ -181,7 +226,7 @@ public class Bob {
      */
     public double getMinimumHeight()
     {
-        return center.y - rodLength;
+        return centerY - rodLength;
     }
 
     /**
@@ -190,7 +235,7 @@ public class Bob {
      */
     public double getX()
     {
-        return center.x + (rodLength * Math.sin(theta));
+        return centerX + (rodLength * Math.sin(theta));
     }
 
     /**
@@ -199,7 +244,7 @@ public class Bob {
      */
     public double getY()
     {
-        return center.y - rodLength * Math.cos(theta);
+        return centerY - rodLength * Math.cos(theta);
     }
 
     /**
@@ -217,7 +262,17 @@ public class Bob {
      */
     public Vector getPosition()
     {
-        return new Vector(getX(), getY());
+        return getPosition(new Vector());
+    }
+
+    /**
+     * Get the current position of the bob without creating a new vector.
+     * @param out where to write the (x,y) position of the bob.
+     * @return out.
+     */
+    public Vector getPosition(Vector out)
+    {
+        return out.set(getX(), getY());
     }
 
     /**
@@ -229,8 +284,7 @@ public class Bob {
     {
         // U(g) = m * g * h
         // h = l * (1 - cos(theta))
-        // TODO: determine how to determine the gravity of the simulation.
-        return mass * Config.gravity * getYDisplacement();
+        return mass * params.gravity * getYDisplacement();
     }
 
     /**
@@ -241,7 +295,7 @@ public class Bob {
     public double getPotentialEnergy(double height)
     {
         return mass * 
-        		Config.gravity * 
+        		params.gravity * 
         		(height + rodLength * getYDisplacement());
     }
     
@@ -282,31 +336,69 @@ public class Bob {
         }
     }
 
+    /**
+     * Convert an X position in the simulation to a pixel on the screen.
+     * @param x The X position, in meters. 
+     * @return The X pixel. 
+     */
+    public static double screenX(double x)
+    {
+        return -50 * x + 250;
+    }
+
+    /**
+     * Convert a Y position in the simulation to a pixel on the screen.
+     * @param y The Y position, in meters. 
+     * @return The Y pixel. 
+     */
+    public static double screenY(double y)
+    {
+        return -50 * y + 250;
+    }
+
     /**
      * Draw a line representing the rod to a screen.
      * @param g The screen to draw to.
      */
     public void drawLine(Graphics2D g)
     {
-		g.setStroke(
-            new BasicStroke(3, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND)
-        );
-        Vector center = getCenter();
-        Vector pos = getPosition();
+        drawLine(g, centerX, centerY, getX(), getY());
+    }
 
-        center.x = -50 * center.x + 250;
-        pos.x = -50 * pos.x + 250;
-        center.y = -50 * center.y + 250;
-        pos.y = -50 * pos.y + 250;
-        g.draw(new Line2D.Double(center.x, center.y, pos.x, pos.y));
+    /**
+     * Draw a line representing a rod to a screen, from a snapshot of 
+     * where its ends were.
+     * @param g The screen to draw to.
+     * @param centerX The X position of the center. 
+     * @param centerY The Y position of the center. 
+     * @param x The X position of the bob. 
+     * @param y The Y position of the bob. 
+     */
+    public static void drawLine(Graphics2D g, double centerX, double centerY, 
+        double x, double y)
+    {
+        g.setStroke(rodStroke);
+        Line2D.Double line = rodLine.get();
+        line.setLine(
+            screenX(centerX), screenY(centerY), screenX(x), screenY(y)
+        );
+        g.draw(line);
     }
 
     public void drawBob(Graphics2D g)
     {
-        Vector pos = getPosition();
-        pos.x = -50 * pos.x + 250;
-        pos.y = -50 * pos.y + 250;
-        g.fillOval((int)pos.x - 10, (int)pos.y - 10, 20, 20);
+        drawBob(g, getX(), getY());
+    }
+
+    /**
+     * Draw a bob to a screen, from a snapshot of where it was.
+     * @param g The screen to draw to.
+     * @param x The X position of the bob. 
+     * @param y The Y position of the bob. 
+     */
+    public static void drawBob(Graphics2D g, double x, double y)
+    {
+        g.fillOval((int) screenX(x) - 10, (int) screenY(y) - 10, 20, 20);
     }
 
     @Override
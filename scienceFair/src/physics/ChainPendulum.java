@@ -0,0 +1,413 @@
+package physics;
+
+import java.util.Arrays;
+
+import math.*;
+import sim.*;
+
+/**
+ * N-Link Pendulum Simulation. <br>
+ * <br>
+ * A chain of pendulum bobs, each hanging from the one before it on a
+ * massless rod, with the first one hanging from a fixed pivot. A
+ * {@link DoublePendulum} is the same thing with 2 links. <br>
+ * <br>
+ * The equations of motion are solved link by link, the way an
+ * articulated-body solver would: a pass from the end of the chain back to
+ * the pivot works out how hard the rest of the chain pulls on each bob for
+ * any acceleration it might have, then a pass from the pivot outwards
+ * finds the actual accelerations. Each pass only touches 2x2 matrices, so
+ * the cost grows with N rather than with the N^3 of inverting a full mass
+ * matrix.
+ * @author AD417
+ *
+ */
+public class ChainPendulum implements Model
+{
+	/**
+	 * The bobs, from the one on the pivot to the end of the chain.
+	 */
+	final Bob[] bobs;
+
+	/**
+	 * The number of links.
+	 */
+	final int n;
+
+	AbstractSolverMethod solver;
+
+	/**
+	 * The constants of this simulation.
+	 */
+	final SimulationParameters params;
+
+    /**
+     * The number of ticks that have already been simulated.
+     */
+	long ticks = 0;
+
+	/**
+	 * Create a chain pendulum with a given starting position.
+	 * @param lengths the length of each rod, from the pivot outwards.
+	 * @param masses the mass of each bob.
+	 * @param thetas the starting angle of each bob.
+	 * @param thetaPrimes the starting angular velocity of each bob.
+	 * @throws Exception If any length or mass is not positive.
+	 */
+	public ChainPendulum(double[] lengths, double[] masses, double[] thetas,
+			double[] thetaPrimes) throws Exception
+	{
+		this(lengths, masses, thetas, thetaPrimes,
+				SimulationParameters.defaults);
+	}
+
+	/**
+	 * Create a chain pendulum with a given starting position and its own
+	 * constants.
+	 * @param _params the constants of this simulation.
+	 * @throws Exception If any length or mass is not positive.
+	 */
+	public ChainPendulum(double[] lengths, double[] masses, double[] thetas,
+			double[] thetaPrimes, SimulationParameters _params)
+			throws Exception
+	{
+		params = _params;
+		n = lengths.length;
+		if (n < 1 || masses.length != n || thetas.length != n
+				|| thetaPrimes.length != n)
+			throw new IllegalArgumentException("Invalid chain!");
+
+		bobs = new Bob[n];
+		for (int i = 0; i < n; i++)
+		{
+			bobs[i] = new Bob(lengths[i], masses[i], params);
+			bobs[i].setTheta(thetas[i]);
+			bobs[i].setThetaPrime(thetaPrimes[i]);
+		}
+		updateCenters();
+
+		solver = new RungeKutta(new ODE());
+	}
+
+	/**
+	 * Create a chain of identical links, starting at rest with every rod
+	 * at the same angle.
+	 * @param _n the number of links.
+	 * @param length the length of each rod.
+	 * @param mass the mass of each bob.
+	 * @param theta the starting angle of every bob.
+	 * @throws Exception If the length or mass is not positive.
+	 */
+	public ChainPendulum(int _n, double length, double mass, double theta)
+			throws Exception
+	{
+		this(filled(_n, length), filled(_n, mass), filled(_n, theta),
+				new double[_n]);
+	}
+
+	static double[] filled(int length, double value)
+	{
+		double[] array = new double[length];
+		Arrays.fill(array, value);
+		return array;
+	}
+
+	/**
+	 * Hang every bob from the one before it.
+	 */
+	void updateCenters()
+	{
+		for (int i = 1; i < n; i++)
+			bobs[i].setCenter(bobs[i - 1].getX(), bobs[i - 1].getY());
+	}
+
+	/**
+	 * Half of a differential equation solver. The other half can be
+	 * changed as needed while the simulation runs. <br>
+	 * <br>
+	 * The state is stored as: <br>
+	 * 2i. Theta of bob i <br>
+	 * 2i + 1. ThetaPrime of bob i <br>
+	 * 2N. Time <br>
+	 * @author AD417
+	 *
+	 */
+	public class ODE extends AbstractODE
+	{
+		/**
+		 * Scratch space for each link, so evaluating doesn't allocate.
+		 * <br>
+		 * (jxx, jxy, jyy) is the 2x2 inertia of bob i and everything
+		 * hanging from it; (nx, ny) is the direction bob i moves when its
+		 * rod turns; (ex, ey) is the part of the force on bob i that
+		 * doesn't depend on any acceleration; and nJn is n.J.n.
+		 */
+		final double[] jxx = new double[n], jxy = new double[n],
+				jyy = new double[n], nx = new double[n], ny = new double[n],
+				ex = new double[n], ey = new double[n], nJn = new double[n];
+
+		@Override
+		public int getSize()
+		{
+			return 2 * n + 1;
+		}
+
+		@Override
+		public double[] getVars()
+		{
+			double[] vars = new double[2 * n + 1];
+			getVars(vars);
+			return vars;
+		}
+
+		@Override
+		public void getVars(double[] vars)
+		{
+			for (int i = 0; i < n; i++)
+			{
+				vars[2 * i] = bobs[i].theta;
+				vars[2 * i + 1] = bobs[i].thetaPrime;
+			}
+			vars[2 * n] = ticks * params.tickSize * 0.001;
+		}
+
+		@Override
+		public double[] evaluateChange(double[] current, double timeStep)
+		{
+			double[] change = new double[2 * n + 1];
+			evaluateChange(current, timeStep, change);
+			return change;
+		}
+
+		/**
+		 * Bob i is pushed by gravity, pulled along its own rod by the bob
+		 * before it, and pulled by the bob after it. The pull from
+		 * everything after bob i is always a linear function of bob i's
+		 * acceleration: K a + c. Going backwards from the end of the chain,
+		 * where there is nothing to pull, each bob's K and c follow from
+		 * the next one's, since a rod can only pull along its length.
+		 * Then going forwards from the pivot, which doesn't move, each
+		 * bob's acceleration follows from the one before it.
+		 */
+		@Override
+		public void evaluateChange(double[] current, double timeStep,
+				double[] change)
+		{
+			final double g = params.gravity;
+
+			// The pull of everything after bob i: K a + c.
+			double kxx = 0, kxy = 0, kyy = 0, cx = 0, cy = 0;
+
+			for (int i = n - 1; i >= 0; i--)
+			{
+				final Bob bob = bobs[i];
+				final double theta = current[2 * i];
+				final double thetaPrime = current[2 * i + 1];
+				final double sin = Math.sin(theta);
+				final double cos = Math.cos(theta);
+				final double L = bob.rodLength;
+
+				// Inertia of this bob and everything hanging from it.
+				final double Jxx = bob.mass + kxx;
+				final double Jxy = kxy;
+				final double Jyy = bob.mass + kyy;
+
+				// Direction the bob moves as its rod turns, and the
+				// centripetal acceleration it has relative to the bob
+				// before it, if the rod turns at a constant rate.
+				final double Nx = cos, Ny = sin;
+				final double wx = -L * thetaPrime * thetaPrime * sin;
+				final double wy = L * thetaPrime * thetaPrime * cos;
+
+				// J w + c - m g, everything that doesn't depend on the
+				// acceleration of the bob before this one or on theta''.
+				final double Ex = Jxx * wx + Jxy * wy + cx;
+				final double Ey = Jxy * wx + Jyy * wy + cy + bob.mass * g;
+
+				final double JNx = Jxx * Nx + Jxy * Ny;
+				final double JNy = Jxy * Nx + Jyy * Ny;
+				final double D = Nx * JNx + Ny * JNy;
+
+				jxx[i] = Jxx;
+				jxy[i] = Jxy;
+				jyy[i] = Jyy;
+				nx[i] = Nx;
+				ny[i] = Ny;
+				ex[i] = Ex;
+				ey[i] = Ey;
+				nJn[i] = D;
+
+				// This rod can't push sideways, so take out what the rod
+				// would have to turn to follow, leaving what the bob before
+				// it feels: K = J - J n n' J / D, c = E - J n (n . E) / D.
+				final double nE = (Nx * Ex + Ny * Ey) / D;
+				kxx = Jxx - JNx * JNx / D;
+				kxy = Jxy - JNx * JNy / D;
+				kyy = Jyy - JNy * JNy / D;
+				cx = Ex - JNx * nE;
+				cy = Ey - JNy * nE;
+			}
+
+			// The pivot doesn't move.
+			double ax = 0, ay = 0;
+			for (int i = 0; i < n; i++)
+			{
+				final double L = bobs[i].rodLength;
+				final double thetaPrime = current[2 * i + 1];
+
+				// Choose theta'' so the bob has no force across its rod.
+				final double Jax = jxx[i] * ax + jxy[i] * ay;
+				final double Jay = jxy[i] * ax + jyy[i] * ay;
+				final double thetaDoublePrime =
+						-(nx[i] * (Jax + ex[i]) + ny[i] * (Jay + ey[i]))
+						/ (L * nJn[i]);
+
+				change[2 * i] = thetaPrime;
+				change[2 * i + 1] = thetaDoublePrime;
+
+				ax += L * (thetaDoublePrime * nx[i]
+						- thetaPrime * thetaPrime * ny[i]);
+				ay += L * (thetaDoublePrime * ny[i]
+						+ thetaPrime * thetaPrime * nx[i]);
+			}
+
+			// Time's change
+			change[2 * n] = 1;
+		}
+
+		@Override
+		public int[] getPositionIndices()
+		{
+			int[] indices = new int[n];
+			for (int i = 0; i < n; i++) indices[i] = 2 * i;
+			return indices;
+		}
+
+		@Override
+		public int[] getVelocityIndices()
+		{
+			int[] indices = new int[n];
+			for (int i = 0; i < n; i++) indices[i] = 2 * i + 1;
+			return indices;
+		}
+
+		@Override
+		public void setVars(double[] vars)
+		{
+			for (int i = 0; i < n; i++)
+			{
+				bobs[i].setTheta(vars[2 * i]);
+				bobs[i].thetaPrime = vars[2 * i + 1];
+			}
+			updateCenters();
+		}
+	}
+
+	/**
+	 * Get one of the bobs.
+	 * @param i the index of the bob, with 0 on the pivot.
+	 * @return the bob.
+	 */
+	public Bob getBob(int i)
+	{
+		return bobs[i];
+	}
+
+	/**
+	 * Get the number of links in the chain.
+	 * @return the number of bobs.
+	 */
+	public int getLinks()
+	{
+		return n;
+	}
+
+	public AbstractSolverMethod getSolver()
+	{
+		return solver;
+	}
+
+	public SimulationParameters getParameters()
+	{
+		return params;
+	}
+
+	@Override
+	public AbstractODE createODE()
+	{
+		return new ODE();
+	}
+
+	@Override
+	public long getTicks()
+	{
+		return ticks;
+	}
+
+	@Override
+	public void setTicks(long _ticks)
+	{
+		ticks = _ticks;
+	}
+
+	/**
+	 * The potential energy is measured from the lowest the chain can hang,
+	 * like {@link DoublePendulum}.
+	 */
+	@Override
+	public double getTotalEnergy()
+	{
+		double energy = 0;
+		double vx = 0, vy = 0, lowest = 0;
+		for (int i = 0; i < n; i++)
+		{
+			final Bob bob = bobs[i];
+			final double v = bob.rodLength * bob.thetaPrime;
+			vx += v * Math.cos(bob.theta);
+			vy += v * Math.sin(bob.theta);
+			lowest += bob.rodLength;
+
+			energy += 0.5 * bob.mass * (vx * vx + vy * vy);
+			energy += bob.mass * params.gravity * (bob.getY() + lowest);
+		}
+		return energy;
+	}
+
+	@Override
+	public double getEnergyScale()
+	{
+		double scale = 0, lowest = 0;
+		for (int i = 0; i < n; i++)
+		{
+			lowest += bobs[i].rodLength;
+			scale += bobs[i].mass * params.gravity * lowest;
+		}
+		return scale;
+	}
+
+	/**
+	 * Usage: <code>ChainPendulum [links] [seconds]</code><br>
+	 * Runs a chain of 1 m, 1 kg links starting horizontal, and prints how
+	 * well it kept its energy.
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		final int links = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+		final double seconds = args.length > 1
+				? Double.parseDouble(args[1]) : 10;
+
+		ChainPendulum p = new ChainPendulum(links, 1, 1, Math.PI / 2);
+		final double stepSize = p.params.stepSize;
+		SimulationEngine engine = new SimulationEngine(p, p.solver,
+				stepSize, Math.round(seconds / stepSize));
+
+		final double initial = p.getTotalEnergy();
+		final long start = System.nanoTime();
+		engine.run();
+		final double elapsed = (System.nanoTime() - start) * 1e-9;
+
+		System.out.printf("%d links, %.0f s simulated in %.2f s; energy "
+				+ "%.6f -> %.6f%n", links, seconds, elapsed, initial,
+				p.getTotalEnergy());
+	}
+}
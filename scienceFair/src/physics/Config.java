@@ -3,16 +3,18 @@ package physics;
 public final class Config 
 {
 	/**
-	 * The force of gravity in this simulation. 
+	 * The force of gravity in a simulation, unless it is given its own 
+	 * {@link SimulationParameters}. 
 	 * Default 9.81m/s^2
 	 */
-	public static double gravity = 9.81;
+	public static final double gravity = 9.81;
 	
 	/**
-	 * The length of time that a single tick takes, in milliseconds.
+	 * The length of time that a single tick takes, in milliseconds, unless
+	 * a simulation is given its own {@link SimulationParameters}. 
 	 * Default 1ms. 
 	 */
-	public static double tickSize = 1;
+	public static final double tickSize = 1;
 	
 	/**
 	 * Whether or not the value of theta in a simulation should 
@@ -26,11 +28,25 @@ public final class Config
 	 */
 	public static final double FPS = 40;
 	
+	/**
+	 * How long the trail behind bob 2 takes to fade away, in seconds.
+	 * Default 3. 0 for no trail.
+	 */
+	public static final double trailTime = 3;
+	
 	/**
 	 * How often we should add the data we have collected so far to the output file.
-	 * Default 1 (Every tick.)
+	 * Default 1000 (Once per simulated second.)
 	 */
-	public static final int ticksPerWrite = 1;
+	public static final int ticksPerWrite = 1000;
+	
+	/**
+	 * How often a checkpoint the simulation can be resumed from is saved, 
+	 * next to its recording. Off (0) unless the JVM is started with e.g.
+	 * -DscienceFair.ticksPerCheckpoint=1000 (once per simulated second).
+	 */
+	public static final long ticksPerCheckpoint = 
+			Long.getLong("scienceFair.ticksPerCheckpoint", 0);
 	
 	/**
 	 * Whether we should even bother rendering the sim, or just rush through the math. 
@@ -38,6 +54,14 @@ public final class Config
 	 */
 	public static final boolean renderSim = true;
 	
+	/**
+	 * Whether every simulation should show its health through JMX (see 
+	 * sim.SimulationMonitor). Off unless the JVM is started with 
+	 * -DscienceFair.monitor=true.
+	 */
+	public static final boolean monitor = 
+			Boolean.getBoolean("scienceFair.monitor");
+	
 	/**
 	 * The amount of ticks the sim will run before halting.
 	 * Default 10000 (10 seconds real time).
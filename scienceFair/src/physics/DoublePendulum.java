@@ -3,19 +3,19 @@ package physics;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 
 import java.text.DecimalFormat;
 
 import javax.swing.JComponent;
-import javax.swing.JFrame;
-import javax.swing.Timer;
 
+import io.*;
 import math.*;
+import monitor.*;
+import sim.*;
 
 /**
  * Double Pendulum Simulation. 
@@ -28,7 +28,7 @@ import math.*;
  * @author AD417
  *
  */
-public class DoublePendulum {
+public class DoublePendulum implements Model {
 
 	/**
 	 * The first bob, attached to a fixed pivot. 
@@ -41,21 +41,57 @@ public class DoublePendulum {
 	 */
 	Bob bob2;
 	
-	double[] energy = new double[4];
+	/**
+	 * Goes up every time the state changes. Derived values (positions,
+	 * velocities, energies) are only worked out when something asks for 
+	 * them, and are kept until this changes. 
+	 */
+	long version = 0;
+	
+	/**
+	 * The version the positions and velocities were worked out for. 
+	 */
+	long motionVersion = -1;
+	
+	/**
+	 * The version the energies were worked out for. 
+	 */
+	long energyVersion = -1;
+	
+	/**
+	 * The position and velocity of each bob. 
+	 */
+	double x1, y1, x2, y2, vx1, vy1, vx2, vy2;
+	
+	/**
+	 * PE1, KE1, PE2, KE2. 
+	 */
+	final double[] energy = new double[4];
 
     /**
-     * The screen the simulation is rendered on. 
+     * The window the simulation is rendered in. Null unless 
+     * {@link #show()} has been called. 
      */
-    JFrame frame;
+    SwingView view;
     
     AbstractSolverMethod solver;
 
     /**
-     * The number of frames that have already been drawn.
+     * The number of ticks that have already been simulated.
      */
-    int ticks = 0;
+    long ticks = 0;
 
-    boolean isRendering = false;
+    /**
+     * Where the simulation hands the window what to draw. Holds the 
+     * pivot and the positions of both bobs: (cx, cy, x1, y1, x2, y2). 
+     */
+    final TripleBuffer snapshots = new TripleBuffer(snapshotSize);
+    
+    /**
+     * The path bob 2 has traced out. Null unless {@link #show()} has been
+     * called and {@link Config#trailTime} isn't 0. 
+     */
+    Trail trail;
     
     /**
      * The initial energy of the simulation. 
@@ -69,33 +105,185 @@ public class DoublePendulum {
      */
     double cumulativeAccuracy = 1;
     
-    String output;
-    final String header = "TICK, T1, DT1, T2, DT2, P1, K1, P2, K2, TOTAL";
+    /**
+     * Where the state of each tick is recorded. Null unless 
+     * {@link #startRecording(String)} has been called. 
+     */
+    volatile TrajectorySink recorder;
+    
+    /**
+     * The file the last recording went to, or null if it wasn't a file. 
+     * Kept after the recording stops, so a checkpoint taken as the 
+     * simulation finishes still knows where it is. 
+     */
+    String recordingPath;
+    
+    /**
+     * The number of rows added to the last recording. 
+     */
+    long recordedRows = 0;
+    
+    /**
+     * The constants of this simulation. 
+     */
+    final SimulationParameters params;
+    
+    public static final String header = 
+    		"TICK, T1, DT1, T2, DT2, P1, K1, P2, K2, TOTAL";
+    
+    /**
+     * The number of values in a snapshot of what to draw. 
+     */
+    public static final int snapshotSize = 6;
     
     public DoublePendulum(double l1, double m1, double l2, double m2) 
     		throws Exception
     {
-        bob1 = new Bob(l1, m1);
-        bob2 = new Bob(l2, m2);
-        bob1.setTheta(0);
-        bob2.setTheta(Math.PI / 2);
-        bob2.setThetaPrime(-0.001);
-		bob2.setCenter(bob1.getPosition());
+    	this(l1, m1, l2, m2, 0, 0, Math.PI / 2, -0.001);
+    }
+    
+    /**
+     * Create a double pendulum with a given starting position. 
+     * @param theta1 the starting angle of bob 1.
+     * @param thetaPrime1 the starting angular velocity of bob 1.
+     * @param theta2 the starting angle of bob 2.
+     * @param thetaPrime2 the starting angular velocity of bob 2.
+     * @throws Exception If either length or mass is not positive.
+     */
+    public DoublePendulum(double l1, double m1, double l2, double m2, 
+    		double theta1, double thetaPrime1, 
+    		double theta2, double thetaPrime2) throws Exception
+    {
+    	this(l1, m1, l2, m2, theta1, thetaPrime1, theta2, thetaPrime2, 
+    			SimulationParameters.defaults);
+    }
+    
+    /**
+     * Create a double pendulum with a given starting position and its own
+     * constants. 
+     * @param _params the constants of this simulation. 
+     * @throws Exception If either length or mass is not positive.
+     */
+    public DoublePendulum(double l1, double m1, double l2, double m2, 
+    		double theta1, double thetaPrime1, 
+    		double theta2, double thetaPrime2, SimulationParameters _params) 
+    		throws Exception
+    {
+    	params = _params;
+        bob1 = new Bob(l1, m1, params);
+        bob2 = new Bob(l2, m2, params);
+        bob1.setTheta(theta1);
+        bob1.setThetaPrime(thetaPrime1);
+        bob2.setTheta(theta2);
+        bob2.setThetaPrime(thetaPrime2);
+		updateMotion();
 
-        frame = new JFrame();
-        frame.add(new Render());
-		frame.setSize(517, 537);
-		frame.setVisible(true);
-        frame.setTitle("Double Pendulum Test");
-		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		solver = new RungeKutta(new ODE());
-		output = header + "\n";
 		
 		initialTotalEnergy = getTotalEnergy();
     }
     
     /**
-     * Rendering routine for the simulation.
+     * Open a window that draws this simulation. 
+     * @return the window, to be added to an engine as an observer.
+     */
+    public SwingView show()
+    {
+    	if (Config.trailTime > 0)
+    	{
+    		// Far more room than one frame ever needs, so the ring is never 
+    		// lapped unless the window stalls.
+    		trail = new Trail(
+    				(int) Math.ceil(Config.trailTime * 1000 / params.tickSize), 
+    				500, 500, (int) Math.ceil(Config.trailTime * Config.FPS), 
+    				new Color(0x4060FF));
+    	}
+    	view = new SwingView("Double Pendulum Test", new Render(), 
+    			this::publishSnapshot);
+    	return view;
+    }
+    
+    /**
+     * Copy where the bobs are into a snapshot for the window, and add 
+     * bob 2 to its trail. Called on the simulation thread. 
+     */
+    void publishSnapshot()
+    {
+    	double[] s = snapshots.getBack();
+    	getSnapshot(s);
+    	snapshots.publish();
+    	if (trail != null) trail.add(s[4], s[5]);
+    }
+    
+    /**
+     * Copy everything needed to draw the simulation into s: the pivot and 
+     * the positions of both bobs, as (cx, cy, x1, y1, x2, y2). 
+     * @param s an array of at least {@link #snapshotSize} values to fill.
+     */
+    public void getSnapshot(double[] s)
+    {
+    	updateMotion();
+    	s[0] = bob1.centerX;
+    	s[1] = bob1.centerY;
+    	s[2] = x1;
+    	s[3] = y1;
+    	s[4] = x2;
+    	s[5] = y2;
+    }
+    
+    /**
+     * Copy what to draw into s, like {@link #getSnapshot(double[])}, but 
+     * for a state of the ODE rather than the current state, such as one 
+     * from a {@link sim.DenseSampler}. 
+     * @param state a state laid out like {@link ODE#getVars()}. 
+     * @param s an array of at least {@link #snapshotSize} values to fill.
+     */
+    public void getSnapshot(double[] state, double[] s)
+    {
+    	final double cx = bob1.centerX, cy = bob1.centerY;
+    	final double x1 = cx + bob1.rodLength * Math.sin(state[0]);
+    	final double y1 = cy - bob1.rodLength * Math.cos(state[0]);
+    	s[0] = cx;
+    	s[1] = cy;
+    	s[2] = x1;
+    	s[3] = y1;
+    	s[4] = x1 + bob2.rodLength * Math.sin(state[2]);
+    	s[5] = y1 - bob2.rodLength * Math.cos(state[2]);
+    }
+    
+    /**
+     * Draw a snapshot from {@link #getSnapshot(double[])} onto a 500x500 
+     * screen. Used by both the window and offscreen exports. 
+     * @param g the screen to draw to. 
+     * @param s the snapshot. 
+     */
+    public static void drawSnapshot(Graphics2D g, double[] s)
+    {
+        g.setColor(Color.black);
+        g.fillRect(0, 0, 500, 500);
+        drawPendulum(g, s);
+    }
+    
+    /**
+     * Draw the rods and bobs from a snapshot, without clearing the screen.
+     * @param g the screen to draw to. 
+     * @param s the snapshot. 
+     */
+    static void drawPendulum(Graphics2D g, double[] s)
+    {
+        g.setColor(Color.white);
+        Bob.drawLine(g, s[0], s[1], s[2], s[3]);
+        Bob.drawLine(g, s[2], s[3], s[4], s[5]);
+        g.setColor(Color.red);
+        Bob.drawBob(g, s[2], s[3]);
+        g.setColor(Color.blue);
+        Bob.drawBob(g, s[4], s[5]);
+    }
+    
+    /**
+     * Rendering routine for the simulation. Only draws the latest 
+     * snapshot, never the bobs themselves, which belong to the simulation
+     * thread.
      * This might be the worst part about this whole thing. I don't yet
      * fully understand the implications / utilities of nested classes.
      * @author AD417
@@ -107,20 +295,26 @@ public class DoublePendulum {
     	private static final long serialVersionUID = 7242687811228757877L;
         public void paintComponent(Graphics g)
         {
-            if (isRendering) return;
-            isRendering = true;
+            RenderEvent event = new RenderEvent();
+            event.begin();
             Graphics2D g2 = (Graphics2D) g;
-
-            g.setColor(new Color(0xFF000000, true));
-            g.fillRect(0, 0, 500, 500);
-            g.setColor(Color.white);
-            bob1.drawLine(g2);
-            bob2.drawLine(g2);
-            g.setColor(Color.red);
-            bob1.drawBob(g2);
-            g.setColor(Color.blue);
-            bob2.drawBob(g2);
-            isRendering = false;
+            double[] s = snapshots.getLatest();
+            if (trail == null) 
+            {
+            	drawSnapshot(g2, s);
+            }
+            else
+            {
+	            g.setColor(Color.black);
+	            g.fillRect(0, 0, 500, 500);
+	            trail.paint(g2);
+	            drawPendulum(g2, s);
+            }
+            if (event.shouldCommit()) 
+            {
+            	event.target = "Window";
+            	event.commit();
+            }
         }
     }
     
@@ -154,11 +348,25 @@ public class DoublePendulum {
     	 * 7. Potential Energy  <br>
     	 * 8. Total Energy  <br>
     	 * 9. Time  <br>
+    	 * The energies are left at 0, since no solver uses them; ask the 
+    	 * simulation for them instead (see {@link #getTotalEnergy()}).
     	 */
     	@Override
     	public double[] getVars()
     	{
     		double[] vars = new double[10];
+    		getVars(vars);
+    		return vars;
+    	}
+    	
+    	/**
+    	 * Copy all the important variables in this sim into vars. 
+    	 * See {@link #getVars()} for the layout.
+    	 * @param vars an array of at least 10 values to fill.
+    	 */
+    	@Override
+    	public void getVars(double[] vars)
+    	{
     		// Angle of bob 1
     		vars[0] = bob1.theta;
     		// Angular velocity  of bob 2
@@ -171,17 +379,12 @@ public class DoublePendulum {
     		vars[4] = 0;
     		vars[5] = 0;
     		
-    		// Kinetic Energy
-    		vars[6] = bob1.getKineticEnergy() + bob2.getKineticEnergy();
-    		// Potential Energy
-    		vars[7] = bob1.getPotentialEnergy() + 
-    				bob2.getPotentialEnergy(bob2.getY());
-    		// Total Energy
-    		vars[8] = vars[4] + vars[5];
+    		// Energies are worked out on demand, not here. 
+    		vars[6] = 0;
+    		vars[7] = 0;
+    		vars[8] = 0;
     		//Time 
-    		vars[9] = ticks * Config.tickSize * 0.001;
-            
-            return vars;
+    		vars[9] = ticks * params.tickSize * 0.001;
     	}
     	
     	/**
@@ -200,7 +403,14 @@ public class DoublePendulum {
     	public double[] evaluateChange(double[] current, double timeStep)
     	{
     		double[] change = new double[10];
-    		
+    		evaluateChange(current, timeStep, change);
+    		return change;
+    	}
+    	
+    	@Override
+    	public void evaluateChange(double[] current, double timeStep, 
+    			double[] change)
+    	{
     		final double th1 = current[0];
     		final double dth1 = current[1];
     		final double th2 = current[2];
@@ -209,7 +419,7 @@ public class DoublePendulum {
     		final double m2 = bob2.mass;
     		final double L1 = bob1.rodLength;
     		final double L2 = bob2.rodLength;
-    		final double g = Config.gravity;
+    		final double g = params.gravity;
     		
     		// Theta1's Change
     		change[0] = dth1;
@@ -235,11 +445,33 @@ public class DoublePendulum {
     		//ThetaPrime2's change.
     		change[3] = thetaPrimeChange;
     		
+    		// Accelerations and energies are not integrated.
+    		change[4] = 0;
+    		change[5] = 0;
+    		change[6] = 0;
+    		change[7] = 0;
+    		change[8] = 0;
+    		
     		// Time's change -- 1-1
     		change[9] = 1;
-    		
-    		
-    		return change;
+    	}
+    	
+    	@Override
+    	public int getSize()
+    	{
+    		return 10;
+    	}
+    	
+    	@Override
+    	public int[] getPositionIndices()
+    	{
+    		return new int[] {0, 2};
+    	}
+    	
+    	@Override
+    	public int[] getVelocityIndices()
+    	{
+    		return new int[] {1, 3};
     	}
     	
     	@Override
@@ -255,37 +487,8 @@ public class DoublePendulum {
     		bob2.setTheta(vars[2]);
     		bob2.thetaPrime = vars[3];
     		
-    		bob2.setCenter(bob1.getPosition());
-    		
-    		final double  theta1 = vars[0];
-			final double  sinTheta1 = Math.sin(theta1);
-			final double  cosTheta1 = Math.cos(theta1);
-			final double  theta2 = vars[2];
-			final double  sinTheta2 = Math.sin(theta2);
-			final double  cosTheta2 = Math.cos(theta2);
-			final double  L1 = bob1.rodLength;
-			final double  L2 = bob2.rodLength;
-			final double  x1 = L1 * sinTheta1;
-			final double  y1 = -L1 * cosTheta1;
-			final double  x2 = x1 + L2 * sinTheta2;
-			final double  y2 = y1 - L2 * cosTheta2;
-			// final double bob1_.setPosition(new Vector(x1,  y1));
-			// final double bob2_.setPosition(new Vector(x2,  y2));
-			Vector v1 = new Vector(vars[1]*L1*cosTheta1, vars[1]*L1*sinTheta1);
-			Vector v2 = v1.add(new Vector(vars[3]*L2*cosTheta2, vars[3]*L2*sinTheta2));
-			final double  v1x = vars[1]*L1*cosTheta1;
-			final double  v1y = vars[1]*L1*sinTheta1;
-			final double  v2x = v1x + vars[3]*L2*cosTheta2;
-			final double  v2y = v1y + vars[3]*L2*sinTheta2;
-			
-			// PE1
-			energy[0] = (y1 + bob1.rodLength) * bob1.mass * Config.gravity;
-			// KE1
-			energy[1] = 0.5 * bob1.mass * Math.pow(v1.getMagnitude(), 2);
-			// PE2
-			energy[2] = (y2 + bob1.rodLength + bob2.rodLength) * bob2.mass * Config.gravity;
-			// KE2
-			energy[3] = 0.5 * bob2.mass * Math.pow(v2.getMagnitude(), 2);
+    		// Everything else is worked out when it's asked for. 
+    		version++;
     	}
     }
 
@@ -305,6 +508,185 @@ public class DoublePendulum {
     
     
     
+    /**
+     * Get the bob attached to the fixed pivot. If you change it, call 
+     * {@link #invalidate()} afterwards. 
+     * @return the first bob.
+     */
+    public Bob getBob1()
+    {
+    	return bob1;
+    }
+    
+    /**
+     * Mark the positions, velocities and energies worked out so far as out 
+     * of date, after changing a bob directly. 
+     */
+    public void invalidate()
+    {
+    	version++;
+    }
+    
+    public SimulationParameters getParameters()
+    {
+    	return params;
+    }
+    
+    /**
+     * Get the bob attached to the first bob, hanging from where the 
+     * first bob is now. If you change it, call {@link #invalidate()} 
+     * afterwards. 
+     * @return the second bob.
+     */
+    public Bob getBob2()
+    {
+    	updateMotion();
+    	return bob2;
+    }
+    
+    /**
+     * Work out where the bobs are and how fast they are moving, unless 
+     * that has already been done since the state last changed. Also hangs 
+     * bob 2 from where bob 1 is. 
+     */
+    void updateMotion()
+    {
+    	if (motionVersion == version) return;
+    	
+    	final double sinTheta1 = Math.sin(bob1.theta);
+    	final double cosTheta1 = Math.cos(bob1.theta);
+    	final double sinTheta2 = Math.sin(bob2.theta);
+    	final double cosTheta2 = Math.cos(bob2.theta);
+    	final double L1 = bob1.rodLength;
+    	final double L2 = bob2.rodLength;
+    	
+    	x1 = bob1.centerX + L1 * sinTheta1;
+    	y1 = bob1.centerY - L1 * cosTheta1;
+    	x2 = x1 + L2 * sinTheta2;
+    	y2 = y1 - L2 * cosTheta2;
+    	vx1 = bob1.thetaPrime * L1 * cosTheta1;
+    	vy1 = bob1.thetaPrime * L1 * sinTheta1;
+    	vx2 = vx1 + bob2.thetaPrime * L2 * cosTheta2;
+    	vy2 = vy1 + bob2.thetaPrime * L2 * sinTheta2;
+    	
+    	bob2.setCenter(x1, y1);
+    	motionVersion = version;
+    }
+    
+    /**
+     * Work out the energy of each bob, unless that has already been done 
+     * since the state last changed. Potential energy is measured from the
+     * lowest each bob can hang. 
+     */
+    void updateEnergy()
+    {
+    	if (energyVersion == version) return;
+    	updateMotion();
+    	
+    	final double y0 = bob1.centerY;
+		// PE1
+		energy[0] = (y1 - y0 + bob1.rodLength) * bob1.mass * params.gravity;
+		// KE1
+		energy[1] = 0.5 * bob1.mass * (vx1 * vx1 + vy1 * vy1);
+		// PE2
+		energy[2] = (y2 - y0 + bob1.rodLength + bob2.rodLength) 
+				* bob2.mass * params.gravity;
+		// KE2
+		energy[3] = 0.5 * bob2.mass * (vx2 * vx2 + vy2 * vy2);
+		energyVersion = version;
+    }
+    
+    public double getX1()
+    {
+    	updateMotion();
+    	return x1;
+    }
+    
+    public double getY1()
+    {
+    	updateMotion();
+    	return y1;
+    }
+    
+    public double getX2()
+    {
+    	updateMotion();
+    	return x2;
+    }
+    
+    public double getY2()
+    {
+    	updateMotion();
+    	return y2;
+    }
+    
+    public double getVelocityX1()
+    {
+    	updateMotion();
+    	return vx1;
+    }
+    
+    public double getVelocityY1()
+    {
+    	updateMotion();
+    	return vy1;
+    }
+    
+    public double getVelocityX2()
+    {
+    	updateMotion();
+    	return vx2;
+    }
+    
+    public double getVelocityY2()
+    {
+    	updateMotion();
+    	return vy2;
+    }
+    
+    public double getPotentialEnergy1()
+    {
+    	updateEnergy();
+    	return energy[0];
+    }
+    
+    public double getKineticEnergy1()
+    {
+    	updateEnergy();
+    	return energy[1];
+    }
+    
+    public double getPotentialEnergy2()
+    {
+    	updateEnergy();
+    	return energy[2];
+    }
+    
+    public double getKineticEnergy2()
+    {
+    	updateEnergy();
+    	return energy[3];
+    }
+    
+    @Override
+    public AbstractODE createODE()
+    {
+    	return new ODE();
+    }
+    
+    @Override
+    public long getTicks()
+    {
+    	return ticks;
+    }
+    
+    @Override
+    public void setTicks(long _ticks)
+    {
+    	ticks = _ticks;
+    }
+    
+    @Override
     public double getTotalEnergy()
     {
     	// Credit to Cyip92:
@@ -322,9 +704,17 @@ public class DoublePendulum {
 		//double V1 = - bob1.mass * Config.gravity * bob1.rodLength * Math.cos(bob1.theta);
 		//double V2 = - bob1.mass * Config.gravity * (bob1.rodLength * Math.cos(bob1.theta) + bob2.rodLength * Math.cos(bob2.rodLength));
 		
+		updateEnergy();
 		return energy[0] + energy[1] + energy[2] + energy[3];
     }
     
+    @Override
+    public double getEnergyScale()
+    {
+    	return params.gravity * (bob1.mass * bob1.rodLength 
+    			+ bob2.mass * (bob1.rodLength + bob2.rodLength));
+    }
+    
     /**
      * Events that should occur on every tick to maintain the simulation.
      * @param tickTime the amount of real time (in seconds) that passes.
@@ -339,47 +729,171 @@ public class DoublePendulum {
      */
     public void render()
     {
-        frame.repaint();
+        if (view != null) view.repaint();
     }
-
+    
     /**
-     * The main loop of the simulation. 
-     */
-    public void loop()
-    {
-    	// TODO: Figure out how to make the timer do non-int ticks. 
-    	Timer timer = new Timer((int) Config.tickSize, new ActionListener() {
-    	    @Override
-    	    public void actionPerformed(ActionEvent e) {
-    	    	double oldE = getTotalEnergy();
-    	        tick(Config.tickSize / 1000);
-    	        appendSimState();
-    	        //cumulativeAccuracy *= 1 - Math.abs(getTotalEnergy() - oldE) / oldE;
-    	        // System.out.println(cumulativeAccuracy);
-    	        if (++ticks % 25 == 0 && Config.renderSim) {
-    	        	render();
-        	        // printEnergyInfo();
-        	        // if (ticks > 100) System.exit(0);
-    	        }
-    	        if (ticks > Config.maxTicks)
-    	        {
-    	        	saveToFile("Testcat.csv");
-    	        	System.exit(0);
-    	        }
-    	    }
+     * Create an engine that runs this simulation with its solver for 
+     * {@link Config#maxTicks} ticks, recording every tick to a file. If 
+     * {@link Config#ticksPerCheckpoint} is set, checkpoints are saved next 
+     * to the recording (see {@link #checkpointPath(String)}). 
+     * @return an engine that has not started yet.
+     * @throws IOException If the recording can't be created. 
+     */
+    public SimulationEngine createEngine() throws IOException
+    {
+    	SimulationEngine engine = new SimulationEngine(
+    			this, solver, params.stepSize, Config.maxTicks);
+    	// A resumed simulation carries on its old recording. 
+    	if (recorder == null) startRecording("Testcat.csv");
+    	engine.addObserver(new SimulationObserver() {
+    		@Override
+    		public void onTick(long tick) {
+    			appendSimState();
+    		}
+    		
+    		@Override
+    		public void onFinish(long tick) {
+    			stopRecording();
+    		}
     	});
-    	timer.start();
+    	if (Config.ticksPerCheckpoint > 0 && recordingPath != null) 
+    		engine.addObserver(new Checkpointer(checkpointPath(recordingPath), 
+    				Config.ticksPerCheckpoint, this::checkpoint, 
+    				this::syncRecording));
+    	if (view != null) engine.addObserver(view);
+    	if (Config.monitor) SimulationMonitor.attach(engine, "DoublePendulum");
+    	return engine;
+    }
+    
+    /**
+     * Get where the checkpoints of a recording go: next to it, with the 
+     * same name, ending in .ckpt instead. 
+     * @param recording the path of the recording. 
+     * @return the path of its checkpoint. 
+     */
+    public static Path checkpointPath(String recording)
+    {
+    	final String name = Path.of(recording).getFileName().toString();
+    	final int dot = name.lastIndexOf('.');
+    	return Path.of(recording).resolveSibling(
+    			(dot > 0 ? name.substring(0, dot) : name) + ".ckpt");
+    }
+    
+    /**
+     * Capture everything needed to carry on this simulation later. The 
+     * recording is flushed first, so every row it counts is in the file, 
+     * but not saved to disk; see {@link #syncRecording()}. 
+     * Call this on the thread running the simulation. 
+     * @return the checkpoint. 
+     */
+    public Checkpoint checkpoint()
+    {
+    	if (recorder != null)
+    	{
+    		try
+    		{
+    			recorder.flush();
+    		}
+    		catch (IOException e)
+    		{
+    			throw new UncheckedIOException(e);
+    		}
+    	}
+    	double[] state = {bob1.theta, bob1.thetaPrime, bob1.rodLength, 
+    			bob1.mass, bob2.theta, bob2.thetaPrime, bob2.rodLength, 
+    			bob2.mass, initialTotalEnergy, params.gravity, params.tickSize};
+    	return new Checkpoint("DoublePendulum", ticks, params.stepSize, 
+    			Solvers.nameOf(solver), state, solver.saveState(), 
+    			recordingPath, recordedRows);
+    }
+    
+    /**
+     * Save the recording, as far as it was last flushed, to disk. Safe to 
+     * call from another thread, such as a {@link Checkpointer}'s, while 
+     * the simulation carries on. 
+     * @throws IOException If the recording can't be saved. 
+     */
+    public void syncRecording() throws IOException
+    {
+    	final TrajectorySink sink = recorder;
+    	if (sink != null) sink.sync();
+    }
+    
+    /**
+     * Pick up a simulation from a checkpoint, exactly where it left off. 
+     * If it was being recorded to a file, the recording carries on from 
+     * the row the checkpoint was taken at. 
+     * @param checkpoint what {@link #checkpoint()} saved. 
+     * @return the simulation. 
+     * @throws Exception If the checkpoint isn't for a double pendulum, or 
+     * the recording can't be picked up. 
+     */
+    public static DoublePendulum resume(Checkpoint checkpoint) 
+    		throws Exception
+    {
+    	final double[] s = checkpoint.state;
+    	if (!checkpoint.model.equals("DoublePendulum") || s.length != 11)
+    		throw new IllegalArgumentException("Not a double pendulum!");
+    	
+    	DoublePendulum p = new DoublePendulum(s[2], s[3], s[6], s[7], 
+    			s[0], s[1], s[4], s[5], new SimulationParameters(s[9], s[10]));
+    	p.ticks = checkpoint.tick;
+    	p.initialTotalEnergy = s[8];
+    	p.solver = Solvers.restore(checkpoint.solver, p.new ODE(), 
+    			checkpoint.solverState);
+    	
+    	if (!checkpoint.recording.isEmpty())
+    	{
+    		Path path = Path.of(checkpoint.recording);
+    		p.startRecording(checkpoint.recording.endsWith(".csv")
+    				? CsvTrajectoryWriter.resume(path, checkpoint.recordedRows,
+    						Config.ticksPerWrite)
+    				: checkpoint.recording.endsWith(".lod")
+    				? PyramidTrajectoryWriter.resume(path, 
+    						checkpoint.recordedRows)
+    				: BinaryTrajectoryWriter.resume(path, 
+    						checkpoint.recordedRows));
+    		p.recordingPath = checkpoint.recording;
+    		p.recordedRows = checkpoint.recordedRows;
+    	}
+    	return p;
+    }
+
+    /**
+     * The main loop of the simulation. Ticks along in real time on a 
+     * thread of its own, and quits once it runs out of ticks. 
+     */
+    public void loop() throws IOException
+    {
+    	createEngine().start(() -> System.exit(0));
     }
 
+    /**
+     * Usage: <code>DoublePendulum [checkpoint]</code><br>
+     * Runs the default double pendulum, or carries on from a checkpoint. 
+     */
     public static void main(String[] args) throws Exception
     {
-        DoublePendulum p = new DoublePendulum(1, 0.1, 2.5, 30.0);
-        p.loop();
+        DoublePendulum p = args.length > 0 
+        		? resume(Checkpoint.read(Path.of(args[0])))
+        		: new DoublePendulum(1, 0.1, 2.5, 30.0);
+        if (Config.renderSim) 
+        {
+        	p.show();
+        	p.loop();
+        }
+        else 
+        {
+        	// Nothing to watch, so don't wait for the timer. 
+        	p.createEngine().run();
+        }
     }
     
     // @Override
     public String toString()
     {
+    	updateMotion();
     	String out = "DoublePendulum{Bob1: " + 
     			bob1.toString() + 
     			", Bob2: " +
@@ -391,45 +905,84 @@ public class DoublePendulum {
     public void printEnergyInfo()
     {
         DecimalFormat f = new DecimalFormat("000.00");
-    	String out = "PE1: " + f.format(bob1.getPotentialEnergy()) + ", ";
-    	out += "KE1: " + f.format(bob1.getKineticEnergy()) + ", ";
+    	String out = "PE1: " + f.format(getPotentialEnergy1()) + ", ";
+    	out += "KE1: " + f.format(getKineticEnergy1()) + ", ";
     	// out += "TE1: " + f.format(bob1.getTotalEnergy()) + ", ";
-    	out += "PE2: " + f.format(bob2.getPotentialEnergy()) + ", ";
-    	out += "KE2: " + f.format(bob2.getKineticEnergy()) + ", ";
+    	out += "PE2: " + f.format(getPotentialEnergy2()) + ", ";
+    	out += "KE2: " + f.format(getKineticEnergy2()) + ", ";
     	// out += "TE2: " + f.format(bob2.getTotalEnergy()) + ", ";
     	System.out.println(out);
     }
     
+    /**
+     * Start recording the state of every tick to a file. Files ending in 
+     * .csv are written as CSV, with rows written to the file every 
+     * {@link Config#ticksPerWrite} ticks. Paths ending in .lod are a 
+     * directory for a {@link PyramidFormat} pyramid, for plotting long 
+     * runs. Anything else is written in the binary {@link TrajectoryFormat}. 
+     * @param filePath where to save the recording. 
+     * @throws IOException If the file can't be created. 
+     */
+    public void startRecording(String filePath) throws IOException
+    {
+    	Path path = Path.of(filePath);
+    	startRecording(filePath.endsWith(".csv") 
+    			? new CsvTrajectoryWriter(path, header, Config.ticksPerWrite)
+    			: filePath.endsWith(".lod") 
+    			? new PyramidTrajectoryWriter(path)
+    			: new BinaryTrajectoryWriter(path));
+    	recordingPath = filePath;
+    }
+    
+    /**
+     * Start recording the state of every tick. 
+     * @param sink where to record to. 
+     */
+    public void startRecording(TrajectorySink sink)
+    {
+    	stopRecording();
+    	recorder = sink;
+    	recordingPath = null;
+    	recordedRows = 0;
+    }
+    
+    /**
+     * Add the current state to the recording, if there is one. 
+     */
     public void appendSimState()
     {
-    	// 	  "TICK, T1, DT1,T2,DT2, P1, K1, P2, K2, TOTAL";
-    	output += String.format(
-    			"%d, %f, %f, %f, %f, %f, %f, %f, %f%n", 
-    			ticks, 
-    			bob1.theta,
-    			bob1.thetaPrime,
-    			bob2.theta,
-    			bob2.thetaPrime,
-    			bob1.getPotentialEnergy(),
-    			bob1.getKineticEnergy(),
-    			bob2.getPotentialEnergy(bob1.getY()),
-    			bob2.getKineticEnergy()
-    	);
+    	if (recorder == null) return;
+    	
+    	updateEnergy();
+    	final double p1 = energy[0];
+    	final double k1 = energy[1];
+    	final double p2 = energy[2];
+    	final double k2 = energy[3];
+    	try 
+    	{
+    		// "TICK, T1, DT1, T2, DT2, P1, K1, P2, K2, TOTAL";
+    		recorder.write(ticks, bob1.theta, bob1.thetaPrime, 
+    				bob2.theta, bob2.thetaPrime, p1, k1, p2, k2, 
+    				p1 + k1 + p2 + k2);
+    		recordedRows++;
+    	}
+    	catch (IOException e)
+    	{
+    		throw new UncheckedIOException(e);
+    	}
     }
     
-    public void saveToFile(String filePath)
+    /**
+     * Write the rest of the recording to its file and close it. 
+     */
+    public void stopRecording()
     {
+    	if (recorder == null) return;
         try {
-            // Create a new FileWriter object, passing in the file path
-            FileWriter writer = new FileWriter(filePath);
-
-            // Write data to the file
-            writer.write(output);
-
-            // Close the writer to save the data to the file
-            writer.close();
+        	recorder.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
+        recorder = null;
     }
 }
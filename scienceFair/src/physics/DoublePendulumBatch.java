@@ -0,0 +1,264 @@
+package physics;
+
+import java.util.Arrays;
+
+/**
+ * Many independent double pendulums, stepped together. <br>
+ * <br>
+ * Instead of one {@link DoublePendulum} (and one {@link Bob} per rod) for 
+ * each pendulum, the state of every pendulum is kept in parallel arrays, 
+ * with pendulum i at index i of each. A whole {@link math.RungeKutta} step 
+ * of one pendulum is done in local variables, so no scratch arrays are 
+ * needed either. <br>
+ * <br>
+ * When the jdk.incubator.vector module is available (run with 
+ * <code>--add-modules jdk.incubator.vector</code>), steps are done several 
+ * pendulums at a time with SIMD instructions by 
+ * {@link DoublePendulumBatchVector}. Otherwise, the same math is done one
+ * pendulum at a time. 
+ * @author AD417<br>
+ * Equations from {@link DoublePendulum.ODE}.
+ *
+ */
+public class DoublePendulumBatch 
+{
+	/**
+	 * Whether the vector module was loaded when the JVM started. 
+	 */
+	static final boolean vectorAvailable = ModuleLayer.boot()
+			.findModule("jdk.incubator.vector").isPresent();
+	
+	/**
+	 * The number of pendulums in this batch. Only goes down, through 
+	 * {@link #retain(boolean[])}. 
+	 */
+	int size;
+	
+	/**
+	 * State of each pendulum: angle and angular velocity of each bob. 
+	 */
+	final double[] th1, dth1, th2, dth2;
+	
+	/**
+	 * Masses and rod lengths of each pendulum. 
+	 */
+	final double[] m1, m2, l1, l2;
+	
+	/**
+	 * Whether steps should use SIMD instructions when they are available. 
+	 */
+	boolean vectorized = true;
+	
+	/**
+	 * The force of gravity on every pendulum in the batch, in m/s^2. 
+	 */
+	final double gravity;
+	
+	/**
+	 * Create a batch of pendulums with rods of length 1, masses of 1, and 
+	 * both bobs hanging straight down. 
+	 * @param _size the number of pendulums. 
+	 */
+	public DoublePendulumBatch(int _size)
+	{
+		this(_size, SimulationParameters.defaults);
+	}
+	
+	/**
+	 * Create a batch of pendulums with rods of length 1, masses of 1, and 
+	 * both bobs hanging straight down, under their own constants. 
+	 * @param _size the number of pendulums. 
+	 * @param params the constants shared by every pendulum. 
+	 */
+	public DoublePendulumBatch(int _size, SimulationParameters params)
+	{
+		if (_size <= 0) throw new IllegalArgumentException("Invalid size!");
+		size = _size;
+		gravity = params.gravity;
+		th1 = new double[size];
+		dth1 = new double[size];
+		th2 = new double[size];
+		dth2 = new double[size];
+		m1 = new double[size];
+		m2 = new double[size];
+		l1 = new double[size];
+		l2 = new double[size];
+		Arrays.fill(m1, 1);
+		Arrays.fill(m2, 1);
+		Arrays.fill(l1, 1);
+		Arrays.fill(l2, 1);
+	}
+	
+	/**
+	 * Set up a single pendulum in the batch. 
+	 * @param i the index of the pendulum. 
+	 * @throws Exception If either length or mass is not positive.
+	 */
+	public void set(int i, double _l1, double _m1, double _l2, double _m2, 
+			double theta1, double thetaPrime1, 
+			double theta2, double thetaPrime2) throws Exception
+	{
+        if (_l1 <= 0 || _l2 <= 0) throw new Exception("Invalid Rod Length!");
+        if (_m1 <= 0 || _m2 <= 0) throw new Exception("Invalid mass!");
+		l1[i] = _l1;
+		m1[i] = _m1;
+		l2[i] = _l2;
+		m2[i] = _m2;
+		th1[i] = theta1;
+		dth1[i] = thetaPrime1;
+		th2[i] = theta2;
+		dth2[i] = thetaPrime2;
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	public double getTheta1(int i)
+	{
+		return th1[i];
+	}
+	
+	public double getThetaPrime1(int i)
+	{
+		return dth1[i];
+	}
+	
+	public double getTheta2(int i)
+	{
+		return th2[i];
+	}
+	
+	public double getThetaPrime2(int i)
+	{
+		return dth2[i];
+	}
+	
+	/**
+	 * Drop every pendulum that is no longer needed. The pendulums that are
+	 * kept move to the front of the batch, in the same order, and the rest
+	 * are no longer stepped. 
+	 * @param keep whether to keep each pendulum. 
+	 * @return the new number of pendulums. 
+	 */
+	public int retain(boolean[] keep)
+	{
+		int kept = 0;
+		for (int i = 0; i < size; i++)
+		{
+			if (!keep[i]) continue;
+			th1[kept] = th1[i];
+			dth1[kept] = dth1[i];
+			th2[kept] = th2[i];
+			dth2[kept] = dth2[i];
+			m1[kept] = m1[i];
+			m2[kept] = m2[i];
+			l1[kept] = l1[i];
+			l2[kept] = l2[i];
+			kept++;
+		}
+		size = kept;
+		return size;
+	}
+	
+	/**
+	 * Choose whether steps use SIMD instructions when they are available.
+	 * @param _vectorized false to always step one pendulum at a time. 
+	 */
+	public void setVectorized(boolean _vectorized)
+	{
+		vectorized = _vectorized;
+	}
+	
+	/**
+	 * Check whether steps will actually use SIMD instructions. 
+	 * @return true if the vector module is loaded and not turned off. 
+	 */
+	public boolean isVectorized()
+	{
+		return vectorized && vectorAvailable;
+	}
+	
+	/**
+	 * Advance every pendulum by one 4th order Runge-Kutta step. 
+	 * @param h the size of the step, in seconds. 
+	 */
+	public void step(double h)
+	{
+		if (isVectorized()) DoublePendulumBatchVector.step(this, h);
+		else stepScalar(h, 0);
+	}
+	
+	/**
+	 * Step pendulums one at a time, starting at the given index. Also used
+	 * for the pendulums left over at the end of a vectorized step. 
+	 * @param h the size of the step, in seconds. 
+	 * @param from the first pendulum to step. 
+	 */
+	void stepScalar(double h, int from)
+	{
+		final double g = gravity;
+		final double halfH = h / 2;
+		final int n = size;
+		for (int i = from; i < n; i++)
+		{
+			final double M1 = m1[i], M2 = m2[i], L1 = l1[i], L2 = l2[i];
+			final double t1 = th1[i], w1 = dth1[i], t2 = th2[i], w2 = dth2[i];
+			
+			final double k1a = accel1(t1, w1, t2, w2, M1, M2, L1, L2, g);
+			final double k1b = accel2(t1, w1, t2, w2, M1, M2, L1, L2, g);
+			
+			final double s2t1 = t1 + halfH * w1, s2w1 = w1 + halfH * k1a;
+			final double s2t2 = t2 + halfH * w2, s2w2 = w2 + halfH * k1b;
+			final double k2a = accel1(s2t1, s2w1, s2t2, s2w2, M1, M2, L1, L2, g);
+			final double k2b = accel2(s2t1, s2w1, s2t2, s2w2, M1, M2, L1, L2, g);
+			
+			final double s3t1 = t1 + halfH * s2w1, s3w1 = w1 + halfH * k2a;
+			final double s3t2 = t2 + halfH * s2w2, s3w2 = w2 + halfH * k2b;
+			final double k3a = accel1(s3t1, s3w1, s3t2, s3w2, M1, M2, L1, L2, g);
+			final double k3b = accel2(s3t1, s3w1, s3t2, s3w2, M1, M2, L1, L2, g);
+			
+			final double s4t1 = t1 + h * s3w1, s4w1 = w1 + h * k3a;
+			final double s4t2 = t2 + h * s3w2, s4w2 = w2 + h * k3b;
+			final double k4a = accel1(s4t1, s4w1, s4t2, s4w2, M1, M2, L1, L2, g);
+			final double k4b = accel2(s4t1, s4w1, s4t2, s4w2, M1, M2, L1, L2, g);
+			
+			// Same order of operations as RungeKutta, so the results match.
+			th1[i] = t1 + (w1 + 2 * s2w1 + 2 * s3w1 + s4w1) * h / 6;
+			dth1[i] = w1 + (k1a + 2 * k2a + 2 * k3a + k4a) * h / 6;
+			th2[i] = t2 + (w2 + 2 * s2w2 + 2 * s3w2 + s4w2) * h / 6;
+			dth2[i] = w2 + (k1b + 2 * k2b + 2 * k3b + k4b) * h / 6;
+		}
+	}
+	
+	/**
+	 * The angular acceleration of bob 1. Same as in 
+	 * {@link DoublePendulum.ODE#evaluateChange(double[], double)}.
+	 */
+	static double accel1(double th1, double dth1, double th2, double dth2, 
+			double m1, double m2, double L1, double L2, double g)
+	{
+		double thetaPrimeChange = -g*(2*m1+m2)*Math.sin(th1);
+		thetaPrimeChange -= g*m2*Math.sin(th1-2*th2);
+		thetaPrimeChange -= 2*m2*dth2*dth2*L2*Math.sin(th1-th2);
+		thetaPrimeChange -= m2*dth1*dth1*L1*Math.sin(2*(th1-th2));
+		thetaPrimeChange /= L1*(2*m1+m2-m2*Math.cos(2*(th1-th2)));
+		return thetaPrimeChange;
+	}
+	
+	/**
+	 * The angular acceleration of bob 2. Same as in 
+	 * {@link DoublePendulum.ODE#evaluateChange(double[], double)}.
+	 */
+	static double accel2(double th1, double dth1, double th2, double dth2, 
+			double m1, double m2, double L1, double L2, double g)
+	{
+		double thetaPrimeChange = (m1+m2)*dth1*dth1*L1;
+		thetaPrimeChange += g*(m1+m2)*Math.cos(th1);
+		thetaPrimeChange += m2*dth2*dth2*L2*Math.cos(th1-th2);
+		thetaPrimeChange *= 2*Math.sin(th1-th2);
+		thetaPrimeChange /= L2*(2*m1+m2-m2*Math.cos(2*(th1-th2)));
+		return thetaPrimeChange;
+	}
+}
@@ -0,0 +1,124 @@
+package physics;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The SIMD half of {@link DoublePendulumBatch}. <br>
+ * <br>
+ * Does exactly the same math as {@link DoublePendulumBatch#stepScalar}, but 
+ * on as many pendulums at once as fit in a vector register. Kept in its own
+ * class so that nothing tries to load the vector module unless it exists.
+ * @author AD417
+ *
+ */
+final class DoublePendulumBatchVector 
+{
+	static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+	
+	private DoublePendulumBatchVector() {}
+	
+	static void step(DoublePendulumBatch b, double h)
+	{
+		final double g = b.gravity;
+		final double halfH = h / 2;
+		final int lanes = SPECIES.length();
+		final int bound = SPECIES.loopBound(b.size);
+		
+		int i = 0;
+		for (; i < bound; i += lanes)
+		{
+			final DoubleVector M1 = DoubleVector.fromArray(SPECIES, b.m1, i);
+			final DoubleVector M2 = DoubleVector.fromArray(SPECIES, b.m2, i);
+			final DoubleVector L1 = DoubleVector.fromArray(SPECIES, b.l1, i);
+			final DoubleVector L2 = DoubleVector.fromArray(SPECIES, b.l2, i);
+			final DoubleVector t1 = DoubleVector.fromArray(SPECIES, b.th1, i);
+			final DoubleVector w1 = DoubleVector.fromArray(SPECIES, b.dth1, i);
+			final DoubleVector t2 = DoubleVector.fromArray(SPECIES, b.th2, i);
+			final DoubleVector w2 = DoubleVector.fromArray(SPECIES, b.dth2, i);
+			
+			final DoubleVector k1a = accel1(t1, w1, t2, w2, M1, M2, L1, L2, g);
+			final DoubleVector k1b = accel2(t1, w1, t2, w2, M1, M2, L1, L2, g);
+			
+			final DoubleVector s2t1 = t1.add(w1.mul(halfH));
+			final DoubleVector s2w1 = w1.add(k1a.mul(halfH));
+			final DoubleVector s2t2 = t2.add(w2.mul(halfH));
+			final DoubleVector s2w2 = w2.add(k1b.mul(halfH));
+			final DoubleVector k2a = accel1(s2t1, s2w1, s2t2, s2w2, M1, M2, L1, L2, g);
+			final DoubleVector k2b = accel2(s2t1, s2w1, s2t2, s2w2, M1, M2, L1, L2, g);
+			
+			final DoubleVector s3t1 = t1.add(s2w1.mul(halfH));
+			final DoubleVector s3w1 = w1.add(k2a.mul(halfH));
+			final DoubleVector s3t2 = t2.add(s2w2.mul(halfH));
+			final DoubleVector s3w2 = w2.add(k2b.mul(halfH));
+			final DoubleVector k3a = accel1(s3t1, s3w1, s3t2, s3w2, M1, M2, L1, L2, g);
+			final DoubleVector k3b = accel2(s3t1, s3w1, s3t2, s3w2, M1, M2, L1, L2, g);
+			
+			final DoubleVector s4t1 = t1.add(s3w1.mul(h));
+			final DoubleVector s4w1 = w1.add(k3a.mul(h));
+			final DoubleVector s4t2 = t2.add(s3w2.mul(h));
+			final DoubleVector s4w2 = w2.add(k3b.mul(h));
+			final DoubleVector k4a = accel1(s4t1, s4w1, s4t2, s4w2, M1, M2, L1, L2, g);
+			final DoubleVector k4b = accel2(s4t1, s4w1, s4t2, s4w2, M1, M2, L1, L2, g);
+			
+			t1.add(combine(w1, s2w1, s3w1, s4w1).mul(h).div(6))
+					.intoArray(b.th1, i);
+			w1.add(combine(k1a, k2a, k3a, k4a).mul(h).div(6))
+					.intoArray(b.dth1, i);
+			t2.add(combine(w2, s2w2, s3w2, s4w2).mul(h).div(6))
+					.intoArray(b.th2, i);
+			w2.add(combine(k1b, k2b, k3b, k4b).mul(h).div(6))
+					.intoArray(b.dth2, i);
+		}
+		
+		// Whatever doesn't fill a whole vector. 
+		b.stepScalar(h, i);
+	}
+	
+	/**
+	 * k1 + 2 * k2 + 2 * k3 + k4
+	 */
+	static DoubleVector combine(DoubleVector k1, DoubleVector k2, 
+			DoubleVector k3, DoubleVector k4)
+	{
+		return k1.add(k2.add(k3).mul(2)).add(k4);
+	}
+	
+	static DoubleVector accel1(DoubleVector th1, DoubleVector dth1, 
+			DoubleVector th2, DoubleVector dth2, DoubleVector m1, 
+			DoubleVector m2, DoubleVector L1, DoubleVector L2, double g)
+	{
+		final DoubleVector d = th1.sub(th2);
+		final DoubleVector twoM1PlusM2 = m1.mul(2).add(m2);
+		
+		DoubleVector thetaPrimeChange = twoM1PlusM2.mul(-g)
+				.mul(th1.lanewise(VectorOperators.SIN));
+		thetaPrimeChange = thetaPrimeChange.sub(m2.mul(g)
+				.mul(th1.sub(th2.mul(2)).lanewise(VectorOperators.SIN)));
+		thetaPrimeChange = thetaPrimeChange.sub(m2.mul(2).mul(dth2)
+				.mul(dth2).mul(L2).mul(d.lanewise(VectorOperators.SIN)));
+		thetaPrimeChange = thetaPrimeChange.sub(m2.mul(dth1).mul(dth1)
+				.mul(L1).mul(d.mul(2).lanewise(VectorOperators.SIN)));
+		return thetaPrimeChange.div(L1.mul(twoM1PlusM2.sub(
+				m2.mul(d.mul(2).lanewise(VectorOperators.COS)))));
+	}
+	
+	static DoubleVector accel2(DoubleVector th1, DoubleVector dth1, 
+			DoubleVector th2, DoubleVector dth2, DoubleVector m1, 
+			DoubleVector m2, DoubleVector L1, DoubleVector L2, double g)
+	{
+		final DoubleVector d = th1.sub(th2);
+		final DoubleVector m1PlusM2 = m1.add(m2);
+		
+		DoubleVector thetaPrimeChange = m1PlusM2.mul(dth1).mul(dth1).mul(L1);
+		thetaPrimeChange = thetaPrimeChange.add(m1PlusM2.mul(g)
+				.mul(th1.lanewise(VectorOperators.COS)));
+		thetaPrimeChange = thetaPrimeChange.add(m2.mul(dth2).mul(dth2)
+				.mul(L2).mul(d.lanewise(VectorOperators.COS)));
+		thetaPrimeChange = thetaPrimeChange
+				.mul(d.lanewise(VectorOperators.SIN).mul(2));
+		return thetaPrimeChange.div(L2.mul(m1.mul(2).add(m2).sub(
+				m2.mul(d.mul(2).lanewise(VectorOperators.COS)))));
+	}
+}
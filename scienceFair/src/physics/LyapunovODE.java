@@ -0,0 +1,175 @@
+package physics;
+
+/**
+ * Half of a differential equation solver, wrapped around another one. <br>
+ * <br>
+ * Adds a tangent vector to the state of a simulation, which follows how a 
+ * tiny difference in the starting state grows over time (the variational 
+ * equations). The state of this ODE is the state of the wrapped one, 
+ * followed by the tangent vector, so any solver can integrate both at once. 
+ * <br><br>
+ * The change in the tangent is the Jacobian of the wrapped simulation 
+ * times the tangent. Rather than working out the Jacobian of every 
+ * simulation by hand, it is found as a directional derivative: one extra
+ * evaluation of the wrapped simulation, a tiny distance along the tangent.
+ * That makes each step cost about twice as much as a normal step. 
+ * @author AD417
+ *
+ */
+public class LyapunovODE extends AbstractODE 
+{
+	/**
+	 * The simulation being followed. 
+	 */
+	final AbstractODE ode;
+	
+	/**
+	 * The size of the state of the wrapped simulation. 
+	 */
+	final int n;
+	
+	/**
+	 * The tangent vector. Only the first n values are used. 
+	 */
+	final double[] tangent;
+	
+	/**
+	 * Scratch arrays for evaluating the wrapped simulation. 
+	 */
+	final double[] state, nudged, change, nudgedChange;
+	
+	/**
+	 * Where the real degrees of freedom of the simulation are in its 
+	 * state, leaving out time and unused values. 
+	 */
+	final int[] dynamic;
+	
+	public LyapunovODE(AbstractODE _ode)
+	{
+		ode = _ode;
+		n = ode.getSize();
+		tangent = new double[n];
+		state = new double[n];
+		nudged = new double[n];
+		change = new double[n];
+		nudgedChange = new double[n];
+		
+		// Start the tangent in the real degrees of freedom of the simulation
+		// if we know what they are, so it doesn't get stuck in (say) time.
+		int[] positions = ode.getPositionIndices();
+		int[] velocities = ode.getVelocityIndices();
+		if (positions != null && velocities != null)
+		{
+			dynamic = new int[positions.length + velocities.length];
+			System.arraycopy(positions, 0, dynamic, 0, positions.length);
+			System.arraycopy(velocities, 0, dynamic, positions.length, 
+					velocities.length);
+		}
+		else 
+		{
+			dynamic = new int[n];
+			for (int i = 0; i < n; i++) dynamic[i] = i;
+		}
+		for (int i : dynamic) tangent[i] = 1;
+		normalize();
+	}
+	
+	@Override
+	public int getSize()
+	{
+		return 2 * n;
+	}
+	
+	@Override
+	public double[] getVars()
+	{
+		double[] vars = new double[2 * n];
+		getVars(vars);
+		return vars;
+	}
+	
+	@Override
+	public void getVars(double[] vars)
+	{
+		ode.getVars(state);
+		System.arraycopy(state, 0, vars, 0, n);
+		System.arraycopy(tangent, 0, vars, n, n);
+	}
+	
+	@Override
+	public double[] evaluateChange(double[] current, double timeStep)
+	{
+		double[] result = new double[2 * n];
+		evaluateChange(current, timeStep, result);
+		return result;
+	}
+	
+	@Override
+	public void evaluateChange(double[] current, double timeStep, 
+			double[] result)
+	{
+		System.arraycopy(current, 0, state, 0, n);
+		ode.evaluateChange(state, timeStep, change);
+		
+		double tangentLength = 0, stateLength = 0;
+		for (int i = 0; i < n; i++) 
+			tangentLength += current[n + i] * current[n + i];
+		tangentLength = Math.sqrt(tangentLength);
+		// Time keeps growing, so it would make the nudge grow with it. 
+		for (int i : dynamic) stateLength += current[i] * current[i];
+		
+		if (tangentLength == 0)
+		{
+			System.arraycopy(change, 0, result, 0, n);
+			for (int i = n; i < 2 * n; i++) result[i] = 0;
+			return;
+		}
+		
+		// Nudge the state along the tangent by about sqrt(machine epsilon)
+		// of its size; the usual balance of rounding and truncation error.
+		final double epsilon = 1.5e-8 * (1 + Math.sqrt(stateLength)) 
+				/ tangentLength;
+		for (int i = 0; i < n; i++) 
+			nudged[i] = current[i] + epsilon * current[n + i];
+		ode.evaluateChange(nudged, timeStep, nudgedChange);
+		
+		for (int i = 0; i < n; i++)
+		{
+			result[i] = change[i];
+			result[n + i] = (nudgedChange[i] - change[i]) / epsilon;
+		}
+	}
+	
+	@Override
+	public void setVars(double[] vars)
+	{
+		System.arraycopy(vars, 0, state, 0, n);
+		ode.setVars(state);
+		System.arraycopy(vars, n, tangent, 0, n);
+	}
+	
+	/**
+	 * Get the length of the tangent vector. 
+	 * @return how much a tiny difference has grown since it was last 
+	 * normalized. 
+	 */
+	public double getTangentLength()
+	{
+		double length = 0;
+		for (int i = 0; i < n; i++) length += tangent[i] * tangent[i];
+		return Math.sqrt(length);
+	}
+	
+	/**
+	 * Scale the tangent vector back to a length of 1, so it doesn't 
+	 * overflow. 
+	 * @return the length of the tangent before it was scaled. 
+	 */
+	public double normalize()
+	{
+		final double length = getTangentLength();
+		if (length > 0) 
+			for (int i = 0; i < n; i++) tangent[i] /= length;
+		return length;
+	}
+}
@@ -3,14 +3,12 @@ package physics;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 
 import javax.swing.JComponent;
-import javax.swing.JFrame;
-import javax.swing.Timer;
 
 import math.*;
+import monitor.*;
+import sim.*;
 
 /**
  * Single Pendulum Simulation. <br>
@@ -20,7 +18,7 @@ import math.*;
  * @author AD417
  *
  */
-public class Pendulum 
+public class Pendulum implements Model
 {
     /**
      * Stores all information necessary for this simulation.
@@ -28,18 +26,28 @@ public class Pendulum
     Bob bob;
 
     /**
-     * The screen the simulation is rendered on. 
+     * The window the simulation is rendered in. Null unless 
+     * {@link #show()} has been called. 
      */
-    JFrame frame;
+    SwingView view;
     
     AbstractSolverMethod solver;
 
     /**
-     * The number of frames that have already been drawn.
+     * The number of ticks that have already been simulated.
      */
-    int ticks = 0;
+    long ticks = 0;
 
-    boolean isRendering = false;
+    /**
+     * Where the simulation hands the window what to draw. Holds the 
+     * center and the position of the bob: (cx, cy, x, y). 
+     */
+    final TripleBuffer snapshots = new TripleBuffer(snapshotSize);
+    
+    /**
+     * The number of values in a snapshot of what to draw. 
+     */
+    public static final int snapshotSize = 4;
     
     /**
      * The initial energy of the simulation. 
@@ -52,18 +60,27 @@ public class Pendulum
      * that occurs. 
      */
     double cumulativeAccuracy = 1;
+    
+    /**
+     * The constants of this simulation. 
+     */
+    final SimulationParameters params;
 
     public Pendulum(double rodLength, double mass) throws Exception
     {
-        bob = new Bob(rodLength, mass);
-        bob.setThetaPrime(1);
+    	this(rodLength, mass, SimulationParameters.defaults);
+    }
 
-        frame = new JFrame();
-        frame.add(new Render());
-		frame.setSize(517, 537);
-		frame.setVisible(true);
-        frame.setTitle("Pendulum Test");
-		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+    /**
+     * @param params the constants of this simulation. 
+     * @throws Exception If the length or mass is not positive.
+     */
+    public Pendulum(double rodLength, double mass, 
+    		SimulationParameters _params) throws Exception
+    {
+    	params = _params;
+        bob = new Bob(rodLength, mass, params);
+        bob.setThetaPrime(1);
 		
 		solver = new ModifiedEulersMethod(new ODE());
 		
@@ -71,7 +88,59 @@ public class Pendulum
     }
     
     /**
-     * Rendering routine for the simulation.
+     * Open a window that draws this simulation. 
+     * @return the window, to be added to an engine as an observer.
+     */
+    public SwingView show()
+    {
+    	view = new SwingView("Pendulum Test", new Render(), 
+    			this::publishSnapshot);
+    	return view;
+    }
+    
+    /**
+     * Copy where the bob is into a snapshot for the window. 
+     * Called on the simulation thread. 
+     */
+    void publishSnapshot()
+    {
+    	getSnapshot(snapshots.getBack());
+    	snapshots.publish();
+    }
+    
+    /**
+     * Copy everything needed to draw the simulation into s: the center 
+     * and the position of the bob, as (cx, cy, x, y). 
+     * @param s an array of at least {@link #snapshotSize} values to fill.
+     */
+    public void getSnapshot(double[] s)
+    {
+    	s[0] = bob.centerX;
+    	s[1] = bob.centerY;
+    	s[2] = bob.getX();
+    	s[3] = bob.getY();
+    }
+    
+    /**
+     * Draw a snapshot from {@link #getSnapshot(double[])} onto a 500x500 
+     * screen. Used by both the window and offscreen exports. 
+     * @param g the screen to draw to. 
+     * @param s the snapshot. 
+     */
+    public static void drawSnapshot(Graphics2D g, double[] s)
+    {
+        g.setColor(Color.white);
+        g.fillRect(0, 0, 500, 500);
+        g.setColor(Color.black);
+        Bob.drawLine(g, s[0], s[1], s[2], s[3]);
+        g.setColor(Color.blue);
+        Bob.drawBob(g, s[2], s[3]);
+    }
+    
+    /**
+     * Rendering routine for the simulation. Only draws the latest 
+     * snapshot, never the bob itself, which belongs to the simulation 
+     * thread.
      * This might be the worst part about this whole thing. I don't yet
      * fully understand the implications / utilities of nested classes.
      * @author AD417
@@ -82,17 +151,14 @@ public class Pendulum
         private static final long serialVersionUID = -3551534785177435875L;
         public void paintComponent(Graphics g)
         {
-            if (isRendering) return;
-            isRendering = true;
-            Graphics2D g2 = (Graphics2D) g;
-
-            g.setColor(Color.white);
-            g.fillRect(0, 0, 500, 500);
-            g.setColor(Color.black);
-            bob.drawLine(g2);
-            g.setColor(Color.blue);
-            bob.drawBob(g2);
-            isRendering = false;
+            RenderEvent event = new RenderEvent();
+            event.begin();
+            drawSnapshot((Graphics2D) g, snapshots.getLatest());
+            if (event.shouldCommit()) 
+            {
+            	event.target = "Window";
+            	event.commit();
+            }
         }
     }
     
@@ -111,6 +177,12 @@ public class Pendulum
     {
     	public ODE(){}
     	
+    	@Override
+    	public int getSize()
+    	{
+    		return 7;
+    	}
+    	
     	/**
     	 * Compile a list containing all the important variables in this sim.
     	 * @return A container for the important variables in this simulation, 
@@ -124,27 +196,37 @@ public class Pendulum
     	 * 4. Kinetic Energy <br>
     	 * 5. Potential Energy <br>
     	 * 6. Total Energy  <br>
+    	 * The energies are left at 0, since no solver uses them. 
     	 */
     	@Override
     	public double[] getVars()
     	{
     		double[] vars = new double[7];
+    		getVars(vars);
+    		return vars;
+    	}
+    	
+    	/**
+    	 * Copy all the important variables in this sim into vars. 
+    	 * See {@link #getVars()} for the layout.
+    	 * @param vars an array of at least 7 values to fill.
+    	 */
+    	@Override
+    	public void getVars(double[] vars)
+    	{
     		// Angle
     		vars[0] = bob.theta;
     		// Angular velocity
     		vars[1] = bob.thetaPrime;
     		// Time
-    		vars[2] = ticks * Config.tickSize * 0.001;
+    		vars[2] = ticks * params.tickSize * 0.001;
     		// Angular Acceleration
     		vars[3] = 0;
-    		// Kinetic Energy
-    		vars[4] = bob.getKineticEnergy();
-    		// Potential Energy
-    		vars[5] = bob.getPotentialEnergy();
-    		// Total Energy
-    		vars[6] = vars[4] + vars[5];
-    		
-    		return vars;
+    		// Energies are worked out on demand (see getTotalEnergy()), 
+    		// since no solver uses them. 
+    		vars[4] = 0;
+    		vars[5] = 0;
+    		vars[6] = 0;
     	}
     	
     	/**
@@ -161,11 +243,43 @@ public class Pendulum
     	public double[] evaluateChange(double[] current, double timeStep)
     	{
     		double[] change = new double[current.length];
+    		evaluateChange(current, timeStep, change);
+    		return change;
+    	}
+    	
+    	@Override
+    	public void evaluateChange(double[] current, double timeStep, 
+    			double[] change)
+    	{
     		change[0] = current[1];
-    		change[1] = -(Config.gravity / bob.rodLength) * Math.sin(current[0]);
+    		change[1] = -(params.gravity / bob.rodLength) * Math.sin(current[0]);
     		change[2] = 1;
     		change[3] = 0;
-    		return change;
+    		// Energies are recalculated from the state, not integrated.
+    		change[4] = 0;
+    		change[5] = 0;
+    		change[6] = 0;
+    	}
+    	
+    	@Override
+    	public int[] getPositionIndices()
+    	{
+    		return new int[] {0};
+    	}
+    	
+    	@Override
+    	public int[] getVelocityIndices()
+    	{
+    		return new int[] {1};
+    	}
+    	
+    	/**
+    	 * The angular acceleration of a pendulum depends on its angle only. 
+    	 */
+    	@Override
+    	public boolean isSeparable()
+    	{
+    		return true;
     	}
     	
     	@Override
@@ -254,11 +368,36 @@ public class Pendulum
         return bob.mass;
     }
     
+    @Override
+    public AbstractODE createODE()
+    {
+    	return new ODE();
+    }
+    
+    @Override
+    public long getTicks()
+    {
+    	return ticks;
+    }
+    
+    @Override
+    public void setTicks(long _ticks)
+    {
+    	ticks = _ticks;
+    }
+    
+    @Override
     public double getTotalEnergy()
     {
     	return bob.getKineticEnergy() + bob.getPotentialEnergy();
     }
     
+    @Override
+    public double getEnergyScale()
+    {
+    	return bob.mass * params.gravity * bob.rodLength;
+    }
+    
     
     /**
      * Events that should occur on every tick to maintain the simulation.
@@ -274,33 +413,67 @@ public class Pendulum
      */
     public void render()
     {
-        frame.repaint();
+        if (view != null) view.repaint();
+    }
+    
+    public SimulationParameters getParameters()
+    {
+    	return params;
+    }
+    
+    /**
+     * Create an engine that runs this simulation with its solver, 
+     * tracking its accuracy on every tick. 
+     * @param maxTicks the tick at which the simulation stops.
+     * @return an engine that has not started yet.
+     */
+    public SimulationEngine createEngine(long maxTicks)
+    {
+    	SimulationEngine engine = new SimulationEngine(
+    			this, solver, params.stepSize, maxTicks);
+    	engine.addObserver(new SimulationObserver() {
+    		double oldE = getTotalEnergy();
+    		
+    		@Override
+    		public void onTick(long tick) {
+    	        double newE = getTotalEnergy();
+    	        cumulativeAccuracy *= 1 - Math.abs(newE - oldE) / oldE;
+    	        oldE = newE;
+    		}
+    		
+    		@Override
+    		public void onFinish(long tick) {
+    			// Printing every tick was slower than the simulation.
+    			System.out.println(cumulativeAccuracy);
+    		}
+    	});
+    	if (view != null) engine.addObserver(view);
+    	if (Config.monitor) SimulationMonitor.attach(engine, "Pendulum");
+    	return engine;
     }
 
     /**
-     * The main loop of the simulation. 
+     * The main loop of the simulation. Ticks along in real time, forever,
+     * on a thread of its own.
      */
     public void loop()
     {
-    	// TODO: Figure out how to make the timer do non-int ticks. 
-    	Timer timer = new Timer((int) Config.tickSize, new ActionListener() {
-    	    @Override
-    	    public void actionPerformed(ActionEvent e) {
-    	    	double oldE = getTotalEnergy();
-    	        tick(Config.tickSize / 1000);
-    	        cumulativeAccuracy *= 1 - Math.abs(getTotalEnergy() - oldE) / oldE;
-    	        System.out.println(cumulativeAccuracy);
-    	        // System.out.println(getTotalEnergy());
-    	        if (++ticks % 25 == 0) render();
-    	    }
-    	});
-    	timer.start();
+    	createEngine(Long.MAX_VALUE).start(null);
     }
 
     public static void main(String[] args) throws Exception
     {
         Pendulum p = new Pendulum(3, 5);
-        p.loop();
+        if (Config.renderSim) 
+        {
+        	p.show();
+        	p.loop();
+        }
+        else 
+        {
+        	// Nothing to watch, so don't wait for the timer. 
+        	p.createEngine(Config.maxTicks).run();
+        }
     }
     
     @Override
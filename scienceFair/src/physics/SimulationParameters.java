@@ -0,0 +1,77 @@
+package physics;
+
+/**
+ * The physical constants of a single simulation. <br>
+ * <br>
+ * Every simulation keeps its own, so simulations with different gravity
+ * or tick sizes can run side by side, on any number of threads. Immutable,
+ * so it can be handed between threads freely, and the equations of motion
+ * can read it without worrying that it changed part way through a step.
+ * @author AD417
+ *
+ */
+public final class SimulationParameters
+{
+	/**
+	 * The parameters of {@link Config}: 9.81 m/s^2 and 1 ms ticks.
+	 */
+	public static final SimulationParameters defaults =
+			new SimulationParameters(Config.gravity, Config.tickSize);
+
+	/**
+	 * The force of gravity, in m/s^2.
+	 */
+	public final double gravity;
+
+	/**
+	 * The length of time that a single tick takes, in milliseconds.
+	 */
+	public final double tickSize;
+
+	/**
+	 * The length of time that a single tick takes, in seconds.
+	 */
+	public final double stepSize;
+
+	/**
+	 * @param _gravity the force of gravity, in m/s^2.
+	 * @param _tickSize the length of a tick, in milliseconds.
+	 */
+	public SimulationParameters(double _gravity, double _tickSize)
+	{
+		if (!(_gravity >= 0) || Double.isInfinite(_gravity))
+			throw new IllegalArgumentException("Invalid gravity!");
+		if (!(_tickSize > 0) || Double.isInfinite(_tickSize))
+			throw new IllegalArgumentException("Invalid tick size!");
+		gravity = _gravity;
+		tickSize = _tickSize;
+		stepSize = tickSize / 1000;
+	}
+
+	/**
+	 * Get the same parameters with different gravity.
+	 * @param _gravity the force of gravity, in m/s^2.
+	 * @return the new parameters.
+	 */
+	public SimulationParameters withGravity(double _gravity)
+	{
+		return new SimulationParameters(_gravity, tickSize);
+	}
+
+	/**
+	 * Get the same parameters with a different tick size.
+	 * @param _tickSize the length of a tick, in milliseconds.
+	 * @return the new parameters.
+	 */
+	public SimulationParameters withTickSize(double _tickSize)
+	{
+		return new SimulationParameters(gravity, _tickSize);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "SimulationParameters{gravity: " + gravity
+				+ ", tickSize: " + tickSize + "}";
+	}
+}
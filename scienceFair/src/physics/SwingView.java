@@ -0,0 +1,78 @@
+package physics;
+
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+
+import sim.SimulationObserver;
+
+/**
+ * A window that draws a simulation while a {@link sim.SimulationEngine}
+ * runs it. <br>
+ * <br>
+ * Only created when someone wants to watch; simulations run fine 
+ * without one, including on machines with no display. <br>
+ * <br>
+ * The simulation and the window don't share anything but a 
+ * {@link sim.TripleBuffer}: after every tick, the simulation thread 
+ * publishes a snapshot of what should be drawn, and at the end of every 
+ * frame the window is asked to redraw the latest snapshot. Neither one 
+ * waits for the other. 
+ * @author AD417
+ *
+ */
+public class SwingView implements SimulationObserver 
+{
+    /**
+     * The screen the simulation is rendered on. 
+     */
+	final JFrame frame;
+	
+	/**
+	 * Publishes a snapshot of the simulation. Runs on the simulation 
+	 * thread. 
+	 */
+	final Runnable publish;
+	
+	/**
+	 * @param title the title of the window. 
+	 * @param render the component that draws the latest snapshot. 
+	 * @param _publish publishes a snapshot of the simulation.
+	 */
+	public SwingView(String title, JComponent render, Runnable _publish)
+	{
+		publish = _publish;
+		// Make sure there is something to draw before the first tick. 
+		publish.run();
+		
+		frame = new JFrame();
+		frame.add(render);
+		frame.setSize(517, 537);
+		frame.setVisible(true);
+		frame.setTitle(title);
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+	}
+	
+	@Override
+	public void onTick(long tick)
+	{
+		publish.run();
+	}
+	
+	/**
+	 * Ask for the latest snapshot to be drawn. Swing draws it on its own 
+	 * thread, and merges requests that come faster than it can draw. 
+	 */
+	@Override
+	public void onFrame(long tick)
+	{
+		frame.repaint();
+	}
+	
+	/**
+	 * Redraw the simulation. 
+	 */
+	public void repaint()
+	{
+		frame.repaint();
+	}
+}
@@ -0,0 +1,163 @@
+package physics;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * The path a bob has traced out recently, fading away behind it. <br>
+ * <br>
+ * The simulation thread adds a position every tick to a fixed-size ring
+ * of primitive doubles. When a frame is drawn, only the segments added
+ * since the last frame are drawn onto an image that is kept between
+ * frames, and the whole image fades a little. Drawing a frame costs the
+ * same however long the trail is. <br>
+ * <br>
+ * Only one thread may call {@link #add(double, double)}, and only one
+ * thread (the one drawing the window) may call
+ * {@link #paint(Graphics2D)}.
+ * @author AD417
+ *
+ */
+public class Trail
+{
+	static final BasicStroke stroke =
+			new BasicStroke(2, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+
+	/**
+	 * The most positions kept at once.
+	 */
+	final int capacity;
+
+	/**
+	 * The positions, in meters. Position n is stored at n % capacity.
+	 */
+	final double[] xs, ys;
+
+	/**
+	 * The number of positions that have ever been added. Written only by
+	 * the simulation thread, after the position itself.
+	 */
+	volatile long added = 0;
+
+	/**
+	 * The number of positions already drawn onto the image.
+	 */
+	long drawn = 0;
+
+	final BufferedImage image;
+
+	/**
+	 * The pixels of the image, as ARGB.
+	 */
+	final int[] pixels;
+
+	final Graphics2D g;
+
+	final Line2D.Double segment = new Line2D.Double();
+
+	/**
+	 * How much alpha every pixel loses per frame.
+	 */
+	final int fade;
+
+	/**
+	 * @param _capacity the most positions to keep.
+	 * @param width the width of the screen, in pixels.
+	 * @param height the height of the screen, in pixels.
+	 * @param fadeFrames how many frames a segment takes to fade away.
+	 * @param color the color of the trail.
+	 */
+	public Trail(int _capacity, int width, int height, int fadeFrames,
+			Color color)
+	{
+		if (_capacity < 2)
+			throw new IllegalArgumentException("Invalid capacity!");
+		capacity = _capacity;
+		xs = new double[capacity];
+		ys = new double[capacity];
+
+		image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		fade = Math.max(1, (int) Math.ceil(255.0 / fadeFrames));
+
+		g = image.createGraphics();
+		g.setStroke(stroke);
+		g.setColor(color);
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_ON);
+	}
+
+	/**
+	 * Add the latest position of the bob. Called on the simulation thread.
+	 * @param x the X position, in meters.
+	 * @param y the Y position, in meters.
+	 */
+	public void add(double x, double y)
+	{
+		final long n = added;
+		final int i = (int) (n % capacity);
+		xs[i] = x;
+		ys[i] = y;
+		added = n + 1;
+	}
+
+	/**
+	 * Draw the new segments onto the trail, fade it, and draw it to the
+	 * screen. Called once per frame.
+	 * @param screen the screen to draw to.
+	 */
+	public void paint(Graphics2D screen)
+	{
+		fadeImage();
+
+		final long end = added;
+		// If we fell more than a whole ring behind, the oldest positions
+		// have been overwritten; start from the oldest one that's left.
+		long from = Math.max(drawn, end - capacity + 1);
+		// Join the new segments onto the last one we drew.
+		if (from > 0 && from == drawn) from--;
+
+		for (long n = from; n + 1 < end; n++)
+		{
+			final int a = (int) (n % capacity);
+			final int b = (int) ((n + 1) % capacity);
+			segment.setLine(Bob.screenX(xs[a]), Bob.screenY(ys[a]),
+					Bob.screenX(xs[b]), Bob.screenY(ys[b]));
+			g.draw(segment);
+		}
+
+		// If the simulation lapped us while we were drawing, a segment or 
+		// two may be wrong. It'll fade soon enough.
+		drawn = end;
+
+		screen.drawImage(image, 0, 0, null);
+	}
+
+	/**
+	 * Take a little alpha off every pixel of the image.
+	 */
+	void fadeImage()
+	{
+		for (int i = 0; i < pixels.length; i++)
+		{
+			final int p = pixels[i];
+			if (p == 0) continue;
+			final int alpha = (p >>> 24) - fade;
+			pixels[i] = alpha <= 0 ? 0 : (alpha << 24) | (p & 0xFFFFFF);
+		}
+	}
+
+	/**
+	 * Get the number of positions that have ever been added.
+	 * @return the number of positions.
+	 */
+	public long getAdded()
+	{
+		return added;
+	}
+}
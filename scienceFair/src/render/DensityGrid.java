@@ -0,0 +1,273 @@
+package render;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Counts how many points land in each cell of a fixed grid, so any number
+ * of points can be collected in the same amount of memory. <br>
+ * <br>
+ * Points outside the grid are counted, but not kept. The grid can be saved
+ * as a picture, or as a small binary file that can be read back and added
+ * to: <br>
+ * - magic ("PDDG") and version, as ints <br>
+ * - width and height, as ints <br>
+ * - the range of x and of y, as doubles <br>
+ * - the number of points outside the grid, as a long <br>
+ * - the count of every cell, row by row from the bottom, as longs <br>
+ * Everything is little-endian, like {@link io.TrajectoryFormat}.
+ * @author AD417
+ *
+ */
+public class DensityGrid
+{
+	public static final int magic = 0x47444450;
+
+	public static final int version = 1;
+
+	/**
+	 * The number of cells across and up.
+	 */
+	final int width, height;
+
+	/**
+	 * The range of values the grid covers.
+	 */
+	final double xMin, xMax, yMin, yMax;
+
+	/**
+	 * The number of cells per unit of x and y.
+	 */
+	final double xScale, yScale;
+
+	/**
+	 * The count of every cell, row by row from the bottom.
+	 */
+	final long[] counts;
+
+	long total = 0;
+
+	long outside = 0;
+
+	public DensityGrid(int _width, int _height, double _xMin, double _xMax,
+			double _yMin, double _yMax)
+	{
+		if (_width <= 0 || _height <= 0)
+			throw new IllegalArgumentException("Invalid size!");
+		if (!(_xMax > _xMin) || !(_yMax > _yMin))
+			throw new IllegalArgumentException("Invalid range!");
+		width = _width;
+		height = _height;
+		xMin = _xMin;
+		xMax = _xMax;
+		yMin = _yMin;
+		yMax = _yMax;
+		xScale = width / (xMax - xMin);
+		yScale = height / (yMax - yMin);
+		counts = new long[width * height];
+	}
+
+	/**
+	 * Count a point.
+	 */
+	public void add(double x, double y)
+	{
+		total++;
+		// Worked out as doubles first, so huge values don't wrap around.
+		final double cellX = Math.floor((x - xMin) * xScale);
+		final double cellY = Math.floor((y - yMin) * yScale);
+		if (cellX >= 0 && cellX < width && cellY >= 0 && cellY < height)
+			counts[(int) cellY * width + (int) cellX]++;
+		else
+			outside++;
+	}
+
+	/**
+	 * Add every count of another grid of the same shape to this one, such
+	 * as one from another run.
+	 */
+	public void add(DensityGrid other)
+	{
+		if (other.width != width || other.height != height
+				|| other.xMin != xMin || other.xMax != xMax
+				|| other.yMin != yMin || other.yMax != yMax)
+			throw new IllegalArgumentException("Grids don't match!");
+		for (int i = 0; i < counts.length; i++) counts[i] += other.counts[i];
+		total += other.total;
+		outside += other.outside;
+	}
+
+	/**
+	 * Get the count of a cell.
+	 * @param x the column, from the left.
+	 * @param y the row, from the bottom.
+	 */
+	public long getCount(int x, int y)
+	{
+		return counts[y * width + x];
+	}
+
+	/**
+	 * Get the number of points counted, including those outside the grid.
+	 */
+	public long getTotal()
+	{
+		return total;
+	}
+
+	/**
+	 * Get the number of points that were outside the grid.
+	 */
+	public long getOutside()
+	{
+		return outside;
+	}
+
+	public int getWidth()
+	{
+		return width;
+	}
+
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 * Draw the grid, with empty cells black and fuller cells brighter.
+	 * @return an image with a pixel per cell, with y going up.
+	 */
+	public BufferedImage toImage()
+	{
+		long most = 0;
+		for (long count : counts) most = Math.max(most, count);
+
+		BufferedImage image = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_RGB);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer())
+				.getData();
+		if (most == 0) return image;
+		// A few cells get almost all of the points, so use a log scale.
+		final double scale = 1 / Math.log1p(most);
+		for (int y = 0; y < height; y++)
+		{
+			final int row = (height - 1 - y) * width;
+			for (int x = 0; x < width; x++)
+			{
+				final long count = counts[y * width + x];
+				if (count == 0) continue;
+				final float f = (float) (Math.log1p(count) * scale);
+				pixels[row + x] = Color.HSBtoRGB(0.7f - 0.55f * f,
+						0.9f - 0.6f * f, 0.35f + 0.65f * f) & 0xFFFFFF;
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * Save the grid as a PNG. The file is replaced all at once, so anyone
+	 * looking at it never sees half an image.
+	 */
+	public void saveImage(Path path) throws IOException
+	{
+		BufferedImage image = toImage();
+		replace(path, temp -> ImageIO.write(image, "png", temp.toFile()));
+	}
+
+	/**
+	 * Save the counts in the binary format described above. The file is
+	 * replaced all at once.
+	 */
+	public void write(Path path) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(16 + 32 + 8
+				+ 8 * counts.length);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(magic).putInt(version).putInt(width).putInt(height);
+		buffer.putDouble(xMin).putDouble(xMax)
+				.putDouble(yMin).putDouble(yMax);
+		buffer.putLong(outside);
+		for (long count : counts) buffer.putLong(count);
+		buffer.flip();
+
+		replace(path, temp -> {
+			try (FileChannel channel = FileChannel.open(temp,
+					StandardOpenOption.WRITE))
+			{
+				while (buffer.hasRemaining()) channel.write(buffer);
+			}
+		});
+	}
+
+	/**
+	 * Read a grid saved by {@link #write(Path)}.
+	 * @throws IOException If the file can't be read, or isn't a complete
+	 * grid.
+	 */
+	public static DensityGrid read(Path path) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		try
+		{
+			if (buffer.getInt() != magic)
+				throw new IOException("Not a density grid: " + path);
+			if (buffer.getInt() != version)
+				throw new IOException("Unknown density grid version: " + path);
+			final int width = buffer.getInt();
+			final int height = buffer.getInt();
+			DensityGrid grid = new DensityGrid(width, height,
+					buffer.getDouble(), buffer.getDouble(),
+					buffer.getDouble(), buffer.getDouble());
+			grid.outside = buffer.getLong();
+			grid.total = grid.outside;
+			for (int i = 0; i < grid.counts.length; i++)
+			{
+				grid.counts[i] = buffer.getLong();
+				grid.total += grid.counts[i];
+			}
+			return grid;
+		}
+		catch (RuntimeException e)
+		{
+			throw new IOException("Corrupt density grid: " + path, e);
+		}
+	}
+
+	@FunctionalInterface
+	interface FileWriter
+	{
+		void write(Path temp) throws IOException;
+	}
+
+	/**
+	 * Write a file next to where it belongs, then move it into place.
+	 */
+	static void replace(Path path, FileWriter writer) throws IOException
+	{
+		Path absolute = path.toAbsolutePath();
+		Path temp = Files.createTempFile(absolute.getParent(),
+				absolute.getFileName().toString(), ".tmp");
+		try
+		{
+			writer.write(temp);
+			Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			Files.deleteIfExists(temp);
+		}
+	}
+}
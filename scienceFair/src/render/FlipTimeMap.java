@@ -0,0 +1,288 @@
+package render;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import physics.Config;
+import physics.DoublePendulumBatch;
+
+/**
+ * The "flip time" picture of a double pendulum. <br>
+ * <br>
+ * Every pixel is a double pendulum starting at rest, with theta1 given by 
+ * its x position and theta2 by its y position (both from -pi to pi). The 
+ * pixel is colored by how long it takes bob 2 to first flip over the top,
+ * or left black if it doesn't flip within the time limit. <br>
+ * <br>
+ * The picture is split into tiles, and each tile is run as a 
+ * {@link DoublePendulumBatch} (the same equations and Runge-Kutta steps as
+ * {@link physics.DoublePendulum}) on its own core. Pixels drop out of their
+ * batch as soon as they flip, and pixels without enough energy to ever 
+ * flip are never simulated at all. The image is saved every few seconds 
+ * while it is being built, so partial results can be looked at early. 
+ * @author AD417
+ *
+ */
+public class FlipTimeMap 
+{
+	/**
+	 * The width and height of each tile, in pixels. 
+	 */
+	static final int tileSize = 64;
+	
+	/**
+	 * How often the partial image is saved, in seconds. 
+	 */
+	static final long saveInterval = 5;
+	
+	/**
+	 * The width and height of the map, in pixels. 
+	 */
+	final int size;
+	
+	/**
+	 * The longest time a pixel is simulated for, in seconds. 
+	 */
+	final double maxTime;
+	
+	/**
+	 * The amount of simulated time per step, in seconds. 
+	 */
+	final double stepSize;
+	
+	/**
+	 * The lengths and masses of every pendulum. 
+	 */
+	final double l1, m1, l2, m2;
+	
+	final BufferedImage image;
+	
+	/**
+	 * The pixels of the image. Each tile only writes to its own pixels.
+	 */
+	final int[] pixels;
+	
+	public FlipTimeMap(int _size, double _maxTime, double _stepSize, 
+			double _l1, double _m1, double _l2, double _m2)
+	{
+		if (_size <= 0) throw new IllegalArgumentException("Invalid size!");
+		if (_maxTime <= 0 || _stepSize <= 0) 
+			throw new IllegalArgumentException("Invalid time!");
+		size = _size;
+		maxTime = _maxTime;
+		stepSize = _stepSize;
+		l1 = _l1;
+		m1 = _m1;
+		l2 = _l2;
+		m2 = _m2;
+		image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+		pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+	
+	/**
+	 * Get the starting angle of bob 1 for a column of the map. 
+	 */
+	double theta1(int x)
+	{
+		return Math.PI * (2.0 * (x + 0.5) / size - 1);
+	}
+	
+	/**
+	 * Get the starting angle of bob 2 for a row of the map. Up is positive.
+	 */
+	double theta2(int y)
+	{
+		return Math.PI * (1 - 2.0 * (y + 0.5) / size);
+	}
+	
+	/**
+	 * Check whether bob 2 could ever flip, starting at rest. For bob 2 to 
+	 * be at the top, the potential energy has to be at least what it is 
+	 * with bob 1 at the bottom and bob 2 straight up above it. 
+	 */
+	boolean canFlip(double theta1, double theta2)
+	{
+		final double energy = -(m1 + m2) * l1 * Math.cos(theta1) 
+				- m2 * l2 * Math.cos(theta2);
+		final double needed = -(m1 + m2) * l1 + m2 * l2;
+		return energy >= needed;
+	}
+	
+	/**
+	 * Get the color of a pixel that flipped after a number of steps. 
+	 */
+	int color(long steps)
+	{
+		// Most pixels flip early, so use a log scale. 
+		final double time = steps * stepSize;
+		final double f = Math.log1p(time) / Math.log1p(maxTime);
+		return Color.HSBtoRGB((float) (0.7 - 0.7 * f), 0.9f, 
+				(float) (1 - 0.6 * f)) & 0xFFFFFF;
+	}
+	
+	/**
+	 * Simulate every pixel of a single tile. 
+	 * @param tileX the left of the tile, in pixels. 
+	 * @param tileY the top of the tile, in pixels. 
+	 */
+	void renderTile(int tileX, int tileY) throws Exception
+	{
+		final int width = Math.min(tileSize, size - tileX);
+		final int height = Math.min(tileSize, size - tileY);
+		
+		// The pixel each pendulum in the batch belongs to. 
+		int[] pixel = new int[width * height];
+		int count = 0;
+		for (int y = tileY; y < tileY + height; y++)
+		{
+			for (int x = tileX; x < tileX + width; x++)
+			{
+				pixels[y * size + x] = 0;
+				if (canFlip(theta1(x), theta2(y))) pixel[count++] = y * size + x;
+			}
+		}
+		if (count == 0) return;
+		
+		DoublePendulumBatch batch = new DoublePendulumBatch(count);
+		for (int i = 0; i < count; i++)
+			batch.set(i, l1, m1, l2, m2, theta1(pixel[i] % size), 0, 
+					theta2(pixel[i] / size), 0);
+		
+		final boolean[] keep = new boolean[count];
+		final long maxSteps = (long) Math.ceil(maxTime / stepSize);
+		int flippedSinceRetain = 0;
+		for (long step = 1; step <= maxSteps && batch.size() > 0; step++)
+		{
+			batch.step(stepSize);
+			
+			final int n = batch.size();
+			for (int i = 0; i < n; i++)
+			{
+				if (pixel[i] < 0 || Math.abs(batch.getTheta2(i)) <= Math.PI) 
+					continue;
+				pixels[pixel[i]] = color(step);
+				pixel[i] = -1;
+				flippedSinceRetain++;
+			}
+			
+			// Stop stepping flipped pendulums once there are enough of them.
+			if (flippedSinceRetain > n / 8)
+			{
+				int kept = 0;
+				for (int i = 0; i < n; i++)
+				{
+					keep[i] = pixel[i] >= 0;
+					if (keep[i]) pixel[kept++] = pixel[i];
+				}
+				batch.retain(keep);
+				flippedSinceRetain = 0;
+			}
+		}
+	}
+	
+	/**
+	 * Build the whole map, saving it to a PNG file as it goes. 
+	 * @param output where to save the image. 
+	 * @param threads the number of tiles to work on at once. 
+	 */
+	public void render(Path output, int threads) throws Exception
+	{
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		ScheduledExecutorService saver = 
+				Executors.newSingleThreadScheduledExecutor();
+		try 
+		{
+			saver.scheduleWithFixedDelay(() -> {
+				try 
+				{
+					save(output);
+				}
+				catch (IOException e)
+				{
+					e.printStackTrace();
+				}
+			}, saveInterval, saveInterval, TimeUnit.SECONDS);
+			
+			List<Future<?>> tiles = new ArrayList<>();
+			for (int y = 0; y < size; y += tileSize)
+			{
+				for (int x = 0; x < size; x += tileSize)
+				{
+					final int tileX = x, tileY = y;
+					tiles.add(workers.submit(() -> {
+						renderTile(tileX, tileY);
+						return null;
+					}));
+				}
+			}
+			for (Future<?> tile : tiles) tile.get();
+		}
+		finally 
+		{
+			workers.shutdownNow();
+			saver.shutdownNow();
+			saver.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		save(output);
+	}
+	
+	/**
+	 * Save the image as it is right now. The file is replaced all at once,
+	 * so anyone looking at it never sees half an image. 
+	 */
+	synchronized void save(Path output) throws IOException
+	{
+		Path absolute = output.toAbsolutePath();
+		Path temp = Files.createTempFile(absolute.getParent(), "flipmap", ".png");
+		try 
+		{
+			ImageIO.write(image, "png", temp.toFile());
+			Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, 
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally 
+		{
+			Files.deleteIfExists(temp);
+		}
+	}
+	
+	public BufferedImage getImage()
+	{
+		return image;
+	}
+	
+	/**
+	 * Usage: <code>FlipTimeMap [size] [max time] [step size] [output]</code>
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		final int size = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+		final double maxTime = args.length > 1 
+				? Double.parseDouble(args[1]) : 10;
+		final double stepSize = args.length > 2 
+				? Double.parseDouble(args[2]) : Config.tickSize / 1000;
+		final String output = args.length > 3 ? args[3] : "flipmap.png";
+		
+		FlipTimeMap map = new FlipTimeMap(size, maxTime, stepSize, 1, 1, 1, 1);
+		final long start = System.nanoTime();
+		map.render(new File(output).toPath(), 
+				Runtime.getRuntime().availableProcessors());
+		System.out.printf("%dx%d map in %.1f s%n", size, size, 
+				(System.nanoTime() - start) * 1e-9);
+	}
+}
@@ -0,0 +1,457 @@
+package render;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import math.RungeKutta;
+import monitor.RenderEvent;
+import physics.DoublePendulum;
+import sim.SimulationEngine;
+import sim.SimulationObserver;
+import util.GifSequenceWriter;
+
+/**
+ * Saves a movie of a simulation as an animated GIF, without ever opening
+ * a window. <br>
+ * <br>
+ * Every few ticks, the simulation thread copies a small snapshot of what
+ * to draw (the same snapshot a {@link physics.SwingView} gets) into a
+ * spare array from a fixed pool, puts it on a queue, and goes straight
+ * back to simulating. A dedicated encoder thread hands the snapshots, in
+ * order, to a pool of workers that draw them into offscreen images, then
+ * writes the finished images to the GIF in the same order. Snapshot
+ * arrays go back to the pool once they are drawn. Only a bounded number
+ * of snapshots and images exist at once, so memory stays fixed however
+ * long the run is. If the encoder falls so far behind that the pool runs
+ * out, the simulation skips the frame, or waits for the encoder if asked
+ * to with {@link WhenFull#BLOCK}. If the encoder fails, every frame after
+ * that is skipped, so the simulation is never left waiting on it.
+ * @author AD417
+ *
+ */
+public class GifExporter implements SimulationObserver, Closeable
+{
+	/**
+	 * Copies what to draw out of the simulation.
+	 */
+	@FunctionalInterface
+	public interface Snapshot
+	{
+		void copy(double[] into);
+	}
+
+	/**
+	 * Draws a snapshot onto an image.
+	 */
+	@FunctionalInterface
+	public interface Painter
+	{
+		void paint(Graphics2D g, double[] snapshot);
+	}
+
+	/**
+	 * What to do with a frame when every snapshot array is in use.
+	 */
+	public enum WhenFull
+	{
+		/** 
+		 * Wait for the encoder to catch up, so no frame is lost unless the
+		 * encoder fails. 
+		 */
+		BLOCK,
+		/** Skip the frame, so the simulation never waits. The default. */
+		DROP
+	}
+
+	/**
+	 * The number of snapshots that can wait to be drawn, on top of the ones
+	 * being drawn.
+	 */
+	static final int queuedSnapshots = 256;
+
+	/**
+	 * How often a simulation waiting for a snapshot array checks that the
+	 * encoder is still running, in milliseconds.
+	 */
+	static final long waitMillis = 50;
+
+	/**
+	 * Put on the queue after the last snapshot.
+	 */
+	static final double[] end = new double[0];
+
+	final int width, height;
+
+	final int snapshotSize;
+
+	final Snapshot snapshot;
+
+	final Painter painter;
+
+	/**
+	 * How many ticks pass between each frame.
+	 */
+	final int ticksPerFrame;
+
+	/**
+	 * The most frames being drawn or waiting to be encoded at once.
+	 */
+	final int framesInFlight;
+
+	final WhenFull whenFull;
+
+	/**
+	 * Snapshot arrays that aren't waiting or being drawn.
+	 */
+	final BlockingQueue<double[]> freeSnapshots;
+
+	/**
+	 * Snapshots waiting to be drawn. Has room for every snapshot array and
+	 * the end, so adding to it never waits.
+	 */
+	final BlockingQueue<double[]> snapshots;
+
+	/**
+	 * Images that aren't being drawn or encoded.
+	 */
+	final BlockingQueue<BufferedImage> images;
+
+	final ExecutorService workers;
+
+	final Thread encoder;
+
+	/**
+	 * The number of frames written to the GIF so far.
+	 */
+	volatile long frames = 0;
+
+	/**
+	 * The number of frames skipped because every snapshot array was in use.
+	 */
+	volatile long dropped = 0;
+
+	/**
+	 * Whatever stopped the encoder, if anything did.
+	 */
+	volatile Exception failure;
+
+	/**
+	 * @param path where to save the GIF.
+	 * @param _width the width of each frame, in pixels.
+	 * @param _height the height of each frame, in pixels.
+	 * @param _snapshotSize the number of values in a snapshot.
+	 * @param _snapshot copies a snapshot out of the simulation.
+	 * @param _painter draws a snapshot.
+	 * @param frameDelay the simulated time between frames, in
+	 * milliseconds. GIFs only store hundredths of a second, so this should
+	 * be a multiple of 10.
+	 * @param stepSize the simulated time per tick, in seconds, such as
+	 * {@link SimulationEngine#getStepSize()}.
+	 * @param threads the number of threads to draw frames on.
+	 * @throws IOException If the file can't be created.
+	 */
+	public GifExporter(Path path, int _width, int _height,
+			int _snapshotSize, Snapshot _snapshot, Painter _painter,
+			int frameDelay, double stepSize, int threads) throws IOException
+	{
+		this(path, _width, _height, _snapshotSize, _snapshot, _painter,
+				frameDelay, stepSize, threads, WhenFull.DROP);
+	}
+
+	/**
+	 * @param _whenFull what to do with a frame when the encoder is too far
+	 * behind to take it.
+	 * @see #GifExporter(Path, int, int, int, Snapshot, Painter, int, double,
+	 * int)
+	 */
+	public GifExporter(Path path, int _width, int _height,
+			int _snapshotSize, Snapshot _snapshot, Painter _painter,
+			int frameDelay, double stepSize, int threads, WhenFull _whenFull)
+			throws IOException
+	{
+		if (frameDelay <= 0)
+			throw new IllegalArgumentException("Invalid frame delay!");
+		if (!(stepSize > 0))
+			throw new IllegalArgumentException("Invalid step size!");
+		if (threads < 1)
+			throw new IllegalArgumentException("Invalid thread count!");
+		width = _width;
+		height = _height;
+		snapshotSize = _snapshotSize;
+		snapshot = _snapshot;
+		painter = _painter;
+		whenFull = _whenFull;
+		ticksPerFrame = (int) Math.max(1,
+				Math.round(frameDelay / (stepSize * 1000)));
+
+		// Enough to keep every worker busy while the encoder writes.
+		framesInFlight = 2 * threads + 2;
+		images = new ArrayBlockingQueue<>(framesInFlight);
+		for (int i = 0; i < framesInFlight; i++)
+			images.add(new BufferedImage(width, height,
+					BufferedImage.TYPE_BYTE_INDEXED));
+
+		final int pooled = framesInFlight + queuedSnapshots;
+		freeSnapshots = new ArrayBlockingQueue<>(pooled);
+		for (int i = 0; i < pooled; i++)
+			freeSnapshots.add(new double[snapshotSize]);
+		snapshots = new ArrayBlockingQueue<>(pooled + 1);
+
+		workers = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "GIF worker");
+			t.setDaemon(true);
+			return t;
+		});
+
+		ImageOutputStream output = new FileImageOutputStream(path.toFile());
+		GifSequenceWriter gif = new GifSequenceWriter(output,
+				BufferedImage.TYPE_BYTE_INDEXED, frameDelay, true);
+		encoder = new Thread(() -> encode(output, gif), "GIF encoder");
+		encoder.start();
+	}
+
+	@Override
+	public void onTick(long tick)
+	{
+		if (tick % ticksPerFrame != 0) return;
+		double[] s = spareSnapshot();
+		if (s == null) return;
+		snapshot.copy(s);
+		snapshots.add(s);
+	}
+
+	/**
+	 * Get an unused snapshot array, waiting for one if the policy says to,
+	 * for as long as the encoder is still running.
+	 * @return the array, or null if the frame should be skipped.
+	 */
+	double[] spareSnapshot()
+	{
+		double[] s = null;
+		try
+		{
+			if (encoderRunning()) s = freeSnapshots.poll();
+			while (s == null && whenFull == WhenFull.BLOCK
+					&& encoderRunning())
+				s = freeSnapshots.poll(waitMillis, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		if (s == null) dropped++;
+		return s;
+	}
+
+	/**
+	 * Whether the encoder can still take frames. A dead encoder never gives
+	 * back the snapshot arrays it was holding.
+	 */
+	boolean encoderRunning()
+	{
+		return failure == null && encoder.isAlive();
+	}
+	
+	/**
+	 * Add a frame that was captured some other way, such as from a 
+	 * {@link sim.DenseSampler} at an exact time. Pass null as the snapshot
+	 * to the constructor, and don't add this as an observer, to only get 
+	 * frames from here. 
+	 * @param s the snapshot of the frame. It is copied. 
+	 */
+	public void addFrame(double[] s)
+	{
+		double[] copy = spareSnapshot();
+		if (copy == null) return;
+		System.arraycopy(s, 0, copy, 0, snapshotSize);
+		snapshots.add(copy);
+	}
+
+	@Override
+	public void onFinish(long tick)
+	{
+		snapshots.add(end);
+	}
+
+	/**
+	 * Draw snapshots on the workers, and write them to the GIF in order,
+	 * until the last one.
+	 */
+	void encode(ImageOutputStream output, GifSequenceWriter gif)
+	{
+		ArrayDeque<Future<BufferedImage>> inFlight =
+				new ArrayDeque<>(framesInFlight);
+		boolean ended = false;
+		try
+		{
+			while (!ended || !inFlight.isEmpty())
+			{
+				// Hand out as many snapshots as there is room for. Only
+				// wait for one if there is nothing else to do.
+				while (!ended && inFlight.size() < framesInFlight)
+				{
+					final double[] s = inFlight.isEmpty()
+							? snapshots.take() : snapshots.poll();
+					if (s == null) break;
+					if (s == end)
+					{
+						ended = true;
+						break;
+					}
+					inFlight.add(workers.submit(() -> draw(s)));
+				}
+				if (inFlight.isEmpty()) continue;
+
+				BufferedImage frame = inFlight.poll().get();
+				gif.writeToSequence(frame);
+				images.add(frame);
+				frames++;
+			}
+			gif.close();
+		}
+		catch (IOException | ExecutionException e)
+		{
+			failure = e;
+		}
+		catch (InterruptedException e)
+		{
+			failure = e;
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			workers.shutdownNow();
+			// Nothing will draw the snapshots still waiting, so free them.
+			for (double[] s; (s = snapshots.poll()) != null; )
+				if (s != end) freeSnapshots.offer(s);
+			try
+			{
+				output.close();
+			}
+			catch (IOException e)
+			{
+				if (failure == null) failure = e;
+			}
+		}
+	}
+
+	/**
+	 * Draw a snapshot onto a free image. Runs on a worker.
+	 */
+	BufferedImage draw(double[] s) throws InterruptedException
+	{
+		final BufferedImage image;
+		RenderEvent event = new RenderEvent();
+		try
+		{
+			image = images.take();
+			event.begin();
+			Graphics2D g = image.createGraphics();
+			try
+			{
+				painter.paint(g, s);
+			}
+			finally
+			{
+				g.dispose();
+			}
+		}
+		finally
+		{
+			freeSnapshots.add(s);
+		}
+		if (event.shouldCommit())
+		{
+			event.target = "GIF";
+			event.commit();
+		}
+		return image;
+	}
+
+	/**
+	 * Get the number of frames written so far.
+	 * @return the number of frames in the GIF.
+	 */
+	public long getFrames()
+	{
+		return frames;
+	}
+
+	/**
+	 * Get the number of frames skipped because the encoder was too far
+	 * behind, or had failed. With {@link WhenFull#BLOCK}, only frames after
+	 * a failure are skipped.
+	 */
+	public long getDropped()
+	{
+		return dropped;
+	}
+
+	/**
+	 * Wait for every frame to be written and the GIF to be finished. The
+	 * simulation must have finished first.
+	 * @throws IOException If the GIF couldn't be written.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			encoder.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while finishing the GIF", e);
+		}
+		if (failure != null)
+			throw new IOException("Couldn't write the GIF", failure);
+	}
+
+	/**
+	 * Usage: <code>GifExporter [ticks] [output.gif] [threads]</code><br>
+	 * Runs the default double pendulum as fast as possible and saves a
+	 * movie of it.
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		final long ticks = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+		final String output = args.length > 1 ? args[1] : "pendulum.gif";
+		final int threads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+
+		DoublePendulum p = new DoublePendulum(1, 0.1, 2.5, 30.0);
+		SimulationEngine engine = new SimulationEngine(p,
+				new RungeKutta(p.createODE()), p.getParameters().stepSize,
+				ticks);
+		GifExporter gif = new GifExporter(Path.of(output), 500, 500,
+				DoublePendulum.snapshotSize, p::getSnapshot,
+				DoublePendulum::drawSnapshot, 40, engine.getStepSize(),
+				threads);
+		engine.addObserver(gif);
+
+		long start = System.nanoTime();
+		engine.run();
+		final double simulated = (System.nanoTime() - start) * 1e-9;
+		gif.close();
+		final double total = (System.nanoTime() - start) * 1e-9;
+
+		System.out.printf("%d ticks simulated in %.2f s; %d frames "
+				+ "written (%d skipped) in %.2f s%n", ticks, simulated,
+				gif.getFrames(), gif.getDropped(), total);
+	}
+}
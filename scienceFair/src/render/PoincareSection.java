@@ -0,0 +1,134 @@
+package render;
+
+import java.io.File;
+import java.io.IOException;
+
+import math.DormandPrince;
+import math.Event;
+import math.EventDetector;
+import physics.DoublePendulum;
+import sim.SimulationEngine;
+
+/**
+ * A Poincare section of a double pendulum: where bob 1 is, and how fast
+ * it is moving, every time bob 2 swings forwards through the bottom. <br>
+ * <br>
+ * Each crossing is found as it happens by an {@link EventDetector}, at the
+ * exact moment bob 2 passes the bottom rather than the nearest tick, and
+ * goes straight into a {@link DensityGrid} of theta1 against its angular
+ * velocity. Nothing else is kept, so a run of any length uses the same
+ * memory. Ordered motion shows up as thin curves, and chaos as a spread
+ * out cloud.
+ * @author AD417
+ *
+ */
+public class PoincareSection
+{
+	static final double tau = 2 * Math.PI;
+
+	final DensityGrid grid;
+
+	final EventDetector detector;
+
+	/**
+	 * The number of crossings counted, and how many of them had bob 2
+	 * moving backwards, which should never happen.
+	 */
+	long crossings = 0, backwards = 0;
+
+	/**
+	 * Start recording crossings from the tick the simulation is on now. The
+	 * engine's solver must have {@link math.DenseOutput}.
+	 * @param engine the engine running a double pendulum.
+	 * @param _grid where to count the crossings. x is theta1, from -pi to
+	 * pi, and y is the angular velocity of bob 1.
+	 */
+	public PoincareSection(SimulationEngine engine, DensityGrid _grid)
+	{
+		grid = _grid;
+		detector = new EventDetector(engine.getSolver(),
+				engine.getModel().getTicks() * engine.getStepSize());
+		// theta2 counts whole turns, so use its sine, which is smooth. The
+		// sine also rises when bob 2 goes backwards over the top, so those
+		// crossings are left out.
+		detector.add("Section", state -> Math.sin(state[2]),
+				Event.Direction.RISING, (event, time, state) -> {
+					if (Math.cos(state[2]) <= 0) return Event.Action.CONTINUE;
+					crossings++;
+					if (!(state[3] > 0)) backwards++;
+					grid.add(Math.IEEEremainder(state[0], tau), state[1]);
+					return Event.Action.CONTINUE;
+				});
+	}
+
+	public DensityGrid getGrid()
+	{
+		return grid;
+	}
+
+	/**
+	 * Get the number of crossings so far.
+	 */
+	public long getCrossings()
+	{
+		return crossings;
+	}
+
+	/**
+	 * Get the number of crossings counted with bob 2 moving backwards. Only
+	 * a check: bob 2 moves forwards every time sin(theta2) rises through 0
+	 * at the bottom.
+	 */
+	public long getBackwards()
+	{
+		return backwards;
+	}
+
+	/**
+	 * Save the section as a picture and as counts that can be read back
+	 * with {@link DensityGrid#read(java.nio.file.Path)}.
+	 */
+	public void save(String image, String counts) throws IOException
+	{
+		grid.saveImage(new File(image).toPath());
+		grid.write(new File(counts).toPath());
+	}
+
+	/**
+	 * Usage: <code>PoincareSection [seconds] [theta1] [max speed] [size]
+	 * [output]</code> <br>
+	 * Runs an equal-armed double pendulum released from rest with bob 2
+	 * hanging straight down, and saves [output].png and [output].bin.
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		final double seconds = args.length > 0
+				? Double.parseDouble(args[0]) : 100000;
+		final double theta1 = args.length > 1
+				? Double.parseDouble(args[1]) : 1.5;
+		final double maxSpeed = args.length > 2
+				? Double.parseDouble(args[2]) : 8;
+		final int size = args.length > 3 ? Integer.parseInt(args[3]) : 1024;
+		final String output = args.length > 4 ? args[4] : "poincare";
+
+		DoublePendulum p = new DoublePendulum(1, 1, 1, 1, theta1, 0, 0, 0);
+		// Long steps: the crossings come from the interpolant anyway.
+		final double stepSize = 0.1;
+		SimulationEngine engine = new SimulationEngine(p,
+				new DormandPrince(p.createODE()), stepSize,
+				(long) Math.ceil(seconds / stepSize));
+		PoincareSection section = new PoincareSection(engine,
+				new DensityGrid(size, size, -Math.PI, Math.PI,
+						-maxSpeed, maxSpeed));
+
+		final long start = System.nanoTime();
+		engine.run();
+		section.save(output + ".png", output + ".bin");
+		System.out.printf("%d crossings (%d outside, %d backwards) in "
+				+ "%.1f s%n", section.getCrossings(),
+				section.getGrid().getOutside(), section.getBackwards(),
+				(System.nanoTime() - start) * 1e-9);
+		if (section.getBackwards() > 0)
+			throw new IllegalStateException("Counted bob 2 moving backwards!");
+	}
+}
@@ -0,0 +1,169 @@
+package sim;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import io.Checkpoint;
+
+/**
+ * Saves a {@link Checkpoint} of a simulation every few ticks, so it can be
+ * picked up again if the run dies. <br>
+ * <br>
+ * The checkpoint is captured on the simulation thread, which only takes
+ * copying a handful of numbers, and written to disk on a thread of its
+ * own. Anything the checkpoint depends on, such as the rows of a 
+ * recording, is saved to disk by that thread too, just before it. If the disk is slow enough that a checkpoint is still waiting when
+ * the next one is captured, the older one is skipped. A last checkpoint is
+ * written, and waited for, when the simulation finishes.
+ * @author AD417
+ *
+ */
+public class Checkpointer implements SimulationObserver
+{
+	final Path path;
+
+	final long ticksPerCheckpoint;
+
+	final Supplier<Checkpoint> capture;
+
+	/**
+	 * Saves what a checkpoint depends on to disk. Runs on the writer thread,
+	 * just before each checkpoint is written.
+	 */
+	@FunctionalInterface
+	public interface Sync
+	{
+		void sync() throws IOException;
+	}
+
+	final Sync sync;
+
+	/**
+	 * The newest checkpoint that hasn't been written yet, if any.
+	 */
+	final AtomicReference<Checkpoint> pending = new AtomicReference<>();
+
+	final Thread writer;
+
+	/**
+	 * Set once the last checkpoint has been handed over.
+	 */
+	volatile boolean finished = false;
+
+	/**
+	 * The number of checkpoints written so far.
+	 */
+	volatile long written = 0;
+
+	/**
+	 * Whatever stopped the last checkpoint being written, if anything did.
+	 */
+	volatile IOException failure;
+
+	/**
+	 * @param _path where to save the checkpoints. Each one replaces the last.
+	 * @param _ticksPerCheckpoint how many ticks pass between checkpoints.
+	 * @param _capture captures the simulation. Called on the simulation
+	 * thread, after every observer added before this one.
+	 */
+	public Checkpointer(Path _path, long _ticksPerCheckpoint,
+			Supplier<Checkpoint> _capture)
+	{
+		this(_path, _ticksPerCheckpoint, _capture, () -> {});
+	}
+
+	/**
+	 * @param _sync saves what each checkpoint depends on, such as a 
+	 * recording, before the checkpoint itself is written.
+	 * @see #Checkpointer(Path, long, Supplier)
+	 */
+	public Checkpointer(Path _path, long _ticksPerCheckpoint,
+			Supplier<Checkpoint> _capture, Sync _sync)
+	{
+		if (_ticksPerCheckpoint < 1)
+			throw new IllegalArgumentException("Invalid ticks per checkpoint!");
+		path = _path;
+		ticksPerCheckpoint = _ticksPerCheckpoint;
+		capture = _capture;
+		sync = _sync;
+		writer = new Thread(this::write, "Checkpoint writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@Override
+	public void onTick(long tick)
+	{
+		if (tick % ticksPerCheckpoint != 0) return;
+		pending.set(capture.get());
+		LockSupport.unpark(writer);
+	}
+
+	/**
+	 * Write the last checkpoint, and wait until it is saved.
+	 * @throws UncheckedIOException If the last checkpoint couldn't be saved.
+	 */
+	@Override
+	public void onFinish(long tick)
+	{
+		pending.set(capture.get());
+		finished = true;
+		LockSupport.unpark(writer);
+		try
+		{
+			writer.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return;
+		}
+		if (failure != null) throw new UncheckedIOException(
+				"Couldn't save a checkpoint to " + path, failure);
+	}
+
+	/**
+	 * Write checkpoints as they turn up, until the last one.
+	 */
+	void write()
+	{
+		while (true)
+		{
+			// Read this first, so a checkpoint handed over just before
+			// finishing is never missed.
+			final boolean last = finished;
+			Checkpoint checkpoint = pending.getAndSet(null);
+			if (checkpoint != null)
+			{
+				try
+				{
+					// The checkpoint mustn't count rows that aren't saved.
+					sync.sync();
+					checkpoint.write(path);
+					written++;
+					failure = null;
+				}
+				catch (IOException e)
+				{
+					// Keep going; the next checkpoint may well work.
+					failure = e;
+				}
+			}
+			else if (last) return;
+			else LockSupport.park(this);
+		}
+	}
+
+	/**
+	 * Get the number of checkpoints saved so far.
+	 * @return the number of checkpoints.
+	 */
+	public long getWritten()
+	{
+		return written;
+	}
+}
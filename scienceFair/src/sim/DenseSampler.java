@@ -0,0 +1,115 @@
+package sim;
+
+import math.DenseOutput;
+
+/**
+ * Samples a simulation at evenly spaced times, such as once per frame or
+ * once per recorded row, however the solver's steps line up with them.
+ * <br><br>
+ * Every time the solver accepts a step, each sample time that falls inside
+ * it is worked out from the solver's {@link DenseOutput}, so the engine can
+ * take steps much larger than the time between samples, and samples are
+ * never rounded to the nearest tick. Samples are handed over on the thread
+ * that runs the engine.
+ * @author AD417
+ *
+ */
+public class DenseSampler implements SimulationObserver,
+		DenseOutput.StepListener
+{
+	/**
+	 * Receives each sample.
+	 */
+	@FunctionalInterface
+	public interface Listener
+	{
+		/**
+		 * @param sample the number of the sample, counting from time 0.
+		 * @param time the simulated time of the sample, in seconds.
+		 * @param state the state of the simulation at that time. Only valid
+		 * until this returns.
+		 */
+		void onSample(long sample, double time, double[] state);
+	}
+
+	final Listener listener;
+
+	/**
+	 * The time between samples, in seconds.
+	 */
+	final double period;
+
+	/**
+	 * The amount of simulated time per tick, in seconds.
+	 */
+	final double stepSize;
+
+	/**
+	 * When the tick being simulated started, in seconds.
+	 */
+	double tickStart;
+
+	/**
+	 * The number of the next sample.
+	 */
+	long next;
+
+	final double[] state;
+
+	/**
+	 * Start sampling a simulation from the tick it is on now. The engine's
+	 * solver must have {@link DenseOutput}.
+	 * @param engine the engine running the simulation.
+	 * @param _period the time between samples, in seconds.
+	 * @param _listener receives each sample.
+	 */
+	public DenseSampler(SimulationEngine engine, double _period,
+			Listener _listener)
+	{
+		if (!(engine.getSolver() instanceof DenseOutput))
+			throw new IllegalArgumentException(
+					"Solver has no dense output!");
+		if (!(_period > 0))
+			throw new IllegalArgumentException("Invalid period!");
+		period = _period;
+		listener = _listener;
+		stepSize = engine.getStepSize();
+		tickStart = engine.getModel().getTicks() * stepSize;
+		next = (long) Math.ceil(tickStart / period);
+		state = new double[engine.getModel().createODE().getSize()];
+
+		((DenseOutput) engine.getSolver()).addStepListener(this);
+		engine.addObserver(this);
+	}
+
+	@Override
+	public void onStep(DenseOutput step)
+	{
+		final double end = step.getStepEnd();
+		while (true)
+		{
+			// Worked out from the sample number, so rounding never builds up.
+			final double time = next * period;
+			final double offset = time - tickStart;
+			if (offset > end) return;
+			step.interpolate(offset, state);
+			listener.onSample(next, time, state);
+			next++;
+		}
+	}
+
+	@Override
+	public void onTick(long tick)
+	{
+		tickStart = tick * stepSize;
+	}
+
+	/**
+	 * Get the number of the next sample to be taken.
+	 * @return the number of samples taken, counting from time 0.
+	 */
+	public long getNext()
+	{
+		return next;
+	}
+}
@@ -0,0 +1,160 @@
+package sim;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+import io.CsvWriter;
+import math.*;
+import physics.*;
+
+/**
+ * Estimates the largest Lyapunov exponent of a simulation while it runs. 
+ * <br><br>
+ * The simulation is run through a {@link LyapunovODE}, which carries a 
+ * tangent vector alongside the state. Every few ticks, this observer 
+ * measures how much the tangent has grown, adds the log of that growth to a
+ * running total, and scales the tangent back down. The running total 
+ * divided by the time so far is the estimate of the exponent, which settles
+ * down the longer the simulation runs. 
+ * @author AD417
+ *
+ */
+public class LyapunovEstimator implements SimulationObserver 
+{
+	/**
+	 * Receives each new estimate of the exponent. 
+	 */
+	@FunctionalInterface
+	public interface Listener 
+	{
+		void onEstimate(long tick, double time, double exponent);
+	}
+	
+	final LyapunovODE ode;
+	
+	/**
+	 * The amount of simulated time per tick, in seconds. 
+	 */
+	final double stepSize;
+	
+	/**
+	 * How many ticks pass between each renormalization. 
+	 */
+	final int ticksPerRenormalize;
+	
+	/**
+	 * The sum of the log of the tangent's growth so far. 
+	 */
+	double logGrowth = 0;
+	
+	/**
+	 * The tick the estimate started at. 
+	 */
+	long startTick = -1;
+	
+	/**
+	 * The latest estimate of the exponent. 
+	 */
+	double exponent = Double.NaN;
+	
+	Listener listener;
+	
+	/**
+	 * @param _ode the ODE being solved by the engine. 
+	 * @param _stepSize the amount of simulated time per tick, in seconds.
+	 * @param _ticksPerRenormalize how many ticks pass between each 
+	 * renormalization of the tangent.
+	 */
+	public LyapunovEstimator(LyapunovODE _ode, double _stepSize, 
+			int _ticksPerRenormalize)
+	{
+		if (_ticksPerRenormalize < 1) 
+			throw new IllegalArgumentException("Invalid interval!");
+		ode = _ode;
+		stepSize = _stepSize;
+		ticksPerRenormalize = _ticksPerRenormalize;
+	}
+	
+	public LyapunovEstimator setListener(Listener _listener)
+	{
+		listener = _listener;
+		return this;
+	}
+	
+	@Override
+	public void onTick(long tick)
+	{
+		if (startTick < 0) startTick = tick - 1;
+		if (tick % ticksPerRenormalize != 0) return;
+		
+		logGrowth += Math.log(ode.normalize());
+		final double time = (tick - startTick) * stepSize;
+		exponent = logGrowth / time;
+		if (listener != null) listener.onEstimate(tick, time, exponent);
+	}
+	
+	/**
+	 * Get the latest estimate of the largest Lyapunov exponent. 
+	 * @return the exponent, in 1 / seconds, or NaN before the first 
+	 * renormalization. 
+	 */
+	public double getExponent()
+	{
+		return exponent;
+	}
+	
+	/**
+	 * Usage: <code>LyapunovEstimator [seconds] [output.csv]</code><br>
+	 * Runs the default double pendulum and streams the estimate to a CSV 
+	 * file, then compares the time taken to a plain run. 
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		final double seconds = args.length > 0 
+				? Double.parseDouble(args[0]) : 1000;
+		final String output = args.length > 1 ? args[1] : "lyapunov.csv";
+		final double stepSize = Config.tickSize / 1000;
+		final long ticks = Math.round(seconds / stepSize);
+		
+		DoublePendulum p = new DoublePendulum(1, 1, 1, 1, 
+				Math.PI / 2, 0, Math.PI / 2, 0);
+		LyapunovODE ode = new LyapunovODE(p.createODE());
+		SimulationEngine engine = new SimulationEngine(
+				p, new RungeKutta(ode), stepSize, ticks);
+		LyapunovEstimator estimator = new LyapunovEstimator(ode, stepSize, 10);
+		engine.addObserver(estimator);
+		
+		try (CsvWriter csv = new CsvWriter(Path.of(output), 
+				"TICK, TIME, LAMBDA", 1000))
+		{
+			estimator.setListener((tick, time, exponent) -> {
+				if (tick % 1000 != 0) return;
+				try 
+				{
+					csv.add(tick).add(time).add(exponent).endRow();
+				}
+				catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			});
+			
+			long start = System.nanoTime();
+			engine.run();
+			final double withExponent = (System.nanoTime() - start) * 1e-9;
+			
+			DoublePendulum plain = new DoublePendulum(1, 1, 1, 1, 
+					Math.PI / 2, 0, Math.PI / 2, 0);
+			start = System.nanoTime();
+			new SimulationEngine(plain, new RungeKutta(plain.createODE()), 
+					stepSize, ticks).run();
+			final double without = (System.nanoTime() - start) * 1e-9;
+			
+			System.out.printf("Largest Lyapunov exponent: %.4f / s%n", 
+					estimator.getExponent());
+			System.out.printf("%.2f s with the estimate, %.2f s without "
+					+ "(%.2fx)%n", withExponent, without, withExponent / without);
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package sim;
+
+import physics.AbstractODE;
+
+/**
+ * A simulation that can be run by a {@link SimulationEngine}. <br>
+ * <br>
+ * The model holds the state of the simulation, and hands out ODEs that 
+ * a solver can use to change it. It knows nothing about how (or whether)
+ * it is being drawn. 
+ * @author AD417
+ *
+ */
+public interface Model 
+{
+	/**
+	 * Create a new ODE for this model, to give to a solver. 
+	 * @return an ODE that reads and writes the state of this model.
+	 */
+	AbstractODE createODE();
+	
+	/**
+	 * Get the number of ticks that have been simulated. 
+	 * @return the current tick. 
+	 */
+	long getTicks();
+	
+	/**
+	 * Set the number of ticks that have been simulated. 
+	 * @param ticks the current tick. 
+	 */
+	void setTicks(long ticks);
+	
+	/**
+	 * Get the total (kinetic + potential) energy of the model. 
+	 * @return the total energy. 
+	 */
+	double getTotalEnergy();
+	
+	/**
+	 * Get an energy to measure energy errors against that doesn't depend 
+	 * on the state: the potential energy of lifting everything from the 
+	 * bottom up to the height of the pivot. 
+	 * @return the energy scale, which is only 0 without gravity. 
+	 */
+	double getEnergyScale();
+	
+	/**
+	 * Turn an energy error into a fraction of the initial energy, or of 
+	 * {@link #getEnergyScale()} if that is larger. The total energy is 0 
+	 * when hanging at rest, so dividing by it alone could give NaN or 
+	 * infinity. 
+	 * @param error the difference from the initial energy. 
+	 * @param initialEnergy the total energy at the start. 
+	 * @return the relative error, or the error itself if both are 0. 
+	 */
+	default double relativeEnergyError(double error, double initialEnergy)
+	{
+		final double scale = Math.max(Math.abs(initialEnergy), 
+				getEnergyScale());
+		return scale > 0 ? error / scale : error;
+	}
+}
@@ -0,0 +1,135 @@
+package sim;
+
+import physics.Config;
+
+/**
+ * Every combination of a set of values for each parameter of a 
+ * {@link physics.DoublePendulum}. <br>
+ * <br>
+ * The grid is never stored; run number i is worked out from i on demand,
+ * so a grid of millions of runs costs nothing until it is used. Lengths and
+ * masses that are not set are 1, starting angles that are not set keep
+ * the default of 
+ * {@link physics.DoublePendulum#DoublePendulum(double, double, double, double)},
+ * and gravity that is not set is {@link Config#gravity}.
+ * @author AD417
+ *
+ */
+public class ParameterGrid 
+{
+	// Index of each parameter in axes.
+	static final int GRAVITY = 0, L1 = 1, M1 = 2, L2 = 3, M2 = 4, 
+			THETA1 = 5, THETA_PRIME1 = 6, THETA2 = 7, THETA_PRIME2 = 8;
+	
+	/**
+	 * The values each parameter takes. 
+	 */
+	final double[][] axes = {
+			{Config.gravity}, 
+			{1}, {1}, {1}, {1}, 
+			{0}, {0}, {Math.PI / 2}, {-0.001}
+	};
+	
+	public ParameterGrid gravity(double... values)
+	{
+		return set(GRAVITY, values);
+	}
+	
+	public ParameterGrid l1(double... values)
+	{
+		return set(L1, values);
+	}
+	
+	public ParameterGrid m1(double... values)
+	{
+		return set(M1, values);
+	}
+	
+	public ParameterGrid l2(double... values)
+	{
+		return set(L2, values);
+	}
+	
+	public ParameterGrid m2(double... values)
+	{
+		return set(M2, values);
+	}
+	
+	public ParameterGrid theta1(double... values)
+	{
+		return set(THETA1, values);
+	}
+	
+	public ParameterGrid thetaPrime1(double... values)
+	{
+		return set(THETA_PRIME1, values);
+	}
+	
+	public ParameterGrid theta2(double... values)
+	{
+		return set(THETA2, values);
+	}
+	
+	public ParameterGrid thetaPrime2(double... values)
+	{
+		return set(THETA_PRIME2, values);
+	}
+	
+	ParameterGrid set(int axis, double[] values)
+	{
+		if (values.length == 0) 
+			throw new IllegalArgumentException("A parameter needs a value!");
+		axes[axis] = values.clone();
+		return this;
+	}
+	
+	/**
+	 * Create count evenly spaced values from min to max, inclusive. 
+	 * @return the values, for use as an axis of the grid.
+	 */
+	public static double[] range(double min, double max, int count)
+	{
+		if (count == 1) return new double[] {min};
+		double[] values = new double[count];
+		for (int i = 0; i < count; i++) 
+			values[i] = min + (max - min) * i / (count - 1);
+		return values;
+	}
+	
+	/**
+	 * Get the number of runs in the grid. 
+	 * @return the product of the number of values of every parameter. 
+	 */
+	public int size()
+	{
+		long size = 1;
+		for (double[] axis : axes) size *= axis.length;
+		if (size > Integer.MAX_VALUE) 
+			throw new IllegalStateException("Grid is too large!");
+		return (int) size;
+	}
+	
+	/**
+	 * Get the parameters of a single run. The last parameter 
+	 * (thetaPrime2) changes fastest. 
+	 * @param index the run number, from 0 to {@link #size()} - 1.
+	 * @return the parameters of that run. 
+	 */
+	public SweepParameters get(int index)
+	{
+		if (index < 0 || index >= size()) 
+			throw new IndexOutOfBoundsException(index);
+		
+		double[] values = new double[axes.length];
+		for (int axis = axes.length - 1; axis >= 0; axis--)
+		{
+			final int count = axes[axis].length;
+			values[axis] = axes[axis][index % count];
+			index /= count;
+		}
+		return new SweepParameters(
+				values[L1], values[M1], values[L2], values[M2], 
+				values[THETA1], values[THETA_PRIME1], 
+				values[THETA2], values[THETA_PRIME2], values[GRAVITY]);
+	}
+}
@@ -0,0 +1,193 @@
+package sim;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+import math.*;
+import physics.AbstractODE;
+import physics.DoublePendulum;
+import physics.SimulationParameters;
+
+/**
+ * Runs a {@link DoublePendulum} for every point of a {@link ParameterGrid},
+ * spread across all cores. <br>
+ * <br>
+ * Every run builds its own pendulum, solver and engine, so runs share no 
+ * mutable state and never wait on each other. The grid is split in half 
+ * recursively on a work-stealing {@link ForkJoinPool}, so a core that 
+ * finishes its share early takes work from the others. 
+ * @author AD417
+ *
+ */
+public class ParameterSweep 
+{
+	final ParameterGrid grid;
+	
+	/**
+	 * Creates the solver for each run. 
+	 */
+	final Function<AbstractODE, AbstractSolverMethod> solverFactory;
+	
+	/**
+	 * The amount of simulated time per tick, in seconds. 
+	 */
+	final double stepSize;
+	
+	/**
+	 * The number of ticks in each run. 
+	 */
+	final long ticksPerRun;
+	
+	/**
+	 * The number of threads used. Defaults to one per core. 
+	 */
+	int parallelism = Runtime.getRuntime().availableProcessors();
+	
+	public ParameterSweep(ParameterGrid _grid, 
+			Function<AbstractODE, AbstractSolverMethod> _solverFactory,
+			double _stepSize, long _ticksPerRun)
+	{
+		grid = _grid;
+		solverFactory = _solverFactory;
+		stepSize = _stepSize;
+		ticksPerRun = _ticksPerRun;
+	}
+	
+	public ParameterSweep setParallelism(int _parallelism)
+	{
+		if (_parallelism < 1) 
+			throw new IllegalArgumentException("Invalid parallelism!");
+		parallelism = _parallelism;
+		return this;
+	}
+	
+	/**
+	 * Run every point of the grid. 
+	 * @return a summary of each run, in the same order as the grid.
+	 */
+	public RunSummary[] run()
+	{
+		final int size = grid.size();
+		final RunSummary[] results = new RunSummary[size];
+		// Leave enough pieces for stealing to even out uneven runs.
+		final int batchSize = Math.max(1, size / (parallelism * 16));
+		
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try 
+		{
+			pool.invoke(new SweepTask(results, 0, size, batchSize));
+		}
+		finally 
+		{
+			pool.shutdown();
+		}
+		return results;
+	}
+	
+	/**
+	 * Runs a range of the grid, splitting it in half while it is too big. 
+	 */
+	class SweepTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		final RunSummary[] results;
+		final int from, to, batchSize;
+		
+		SweepTask(RunSummary[] _results, int _from, int _to, int _batchSize)
+		{
+			results = _results;
+			from = _from;
+			to = _to;
+			batchSize = _batchSize;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if (to - from <= batchSize)
+			{
+				for (int i = from; i < to; i++) 
+					results[i] = runOne(grid.get(i));
+				return;
+			}
+			final int middle = (from + to) >>> 1;
+			invokeAll(new SweepTask(results, from, middle, batchSize),
+					new SweepTask(results, middle, to, batchSize));
+		}
+	}
+	
+	/**
+	 * Run a single point of the grid on the current thread. 
+	 * @param p the parameters of the run. 
+	 * @return a summary of the run. 
+	 */
+	public RunSummary runOne(SweepParameters p)
+	{
+		final long start = System.nanoTime();
+		
+		final DoublePendulum pendulum;
+		try 
+		{
+			pendulum = new DoublePendulum(p.l1, p.m1, p.l2, p.m2, 
+					p.theta1, p.thetaPrime1, p.theta2, p.thetaPrime2, 
+					new SimulationParameters(p.gravity, stepSize * 1000));
+		}
+		catch (Exception e)
+		{
+			throw new IllegalArgumentException("Invalid run: " + p, e);
+		}
+		
+		final AbstractSolverMethod solver = 
+				solverFactory.apply(pendulum.createODE());
+		final SimulationEngine engine = 
+				new SimulationEngine(pendulum, solver, stepSize, ticksPerRun);
+		
+		final double initialEnergy = pendulum.getTotalEnergy();
+		final double[] maxError = {0};
+		engine.addObserver(tick -> {
+			double error = Math.abs(pendulum.getTotalEnergy() - initialEnergy);
+			if (error > maxError[0]) maxError[0] = error;
+		});
+		engine.run();
+		
+		return new RunSummary(p, pendulum.getTicks(), 
+				pendulum.getBob1().getTheta(), 
+				pendulum.getBob1().getThetaPrime(),
+				pendulum.getBob2().getTheta(), 
+				pendulum.getBob2().getThetaPrime(),
+				initialEnergy, pendulum.getTotalEnergy(), 
+				pendulum.relativeEnergyError(maxError[0], initialEnergy),
+				System.nanoTime() - start);
+	}
+	
+	public static void main(String[] args)
+	{
+		ParameterGrid grid = new ParameterGrid()
+				.l1(1, 2)
+				.m2(0.5, 1, 2)
+				.theta1(ParameterGrid.range(0, Math.PI, 16))
+				.theta2(ParameterGrid.range(0, Math.PI, 16));
+		
+		final int cores = Runtime.getRuntime().availableProcessors();
+		System.out.printf("%d runs of %d ticks%n", grid.size(), 10_000);
+		System.out.printf("%8s %12s %12s%n", "Threads", "Runs / s", "Speedup");
+		
+		double serialRate = 0;
+		for (int threads = 1; ; threads = Math.min(threads * 2, cores))
+		{
+			ParameterSweep sweep = new ParameterSweep(
+					grid, RungeKutta::new, 0.001, 10_000)
+					.setParallelism(threads);
+			final long start = System.nanoTime();
+			sweep.run();
+			final double rate = grid.size() / 
+					((System.nanoTime() - start) * 1e-9);
+			if (threads == 1) serialRate = rate;
+			System.out.printf("%8d %12.1f %12.2f%n", 
+					threads, rate, rate / serialRate);
+			if (threads == cores) break;
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package sim;
+
+import java.util.concurrent.locks.LockSupport;
+
+import physics.Config;
+
+/**
+ * Runs a {@link SimulationEngine} in real time, a frame at a time. <br>
+ * <br>
+ * The scheduler wakes up once per frame, works out from
+ * {@link System#nanoTime()} how many ticks should have happened since it
+ * started, and runs every tick it is missing before the frame is drawn.
+ * The count is worked out from the start rather than added up frame by
+ * frame, so simulated time follows real time exactly for any step size,
+ * including ones that aren't a whole number of milliseconds or
+ * nanoseconds. Steps much shorter than a frame are run many to a frame,
+ * and steps longer than a frame simply leave some frames with none. <br>
+ * <br>
+ * If the simulation falls behind, for example because the computer was
+ * busy, it catches up as fast as it can, but never runs more than
+ * {@link #maxCatchUp} of simulated time in one frame. If it still can't
+ * keep up, the rest is dropped, and the simulation carries on that far
+ * behind, rather than taking longer and longer to catch up until it never
+ * draws a frame again.
+ * @author AD417
+ *
+ */
+public class RealTimeScheduler
+{
+	/**
+	 * The default most simulated time run in one frame, in seconds.
+	 */
+	public static final double defaultMaxCatchUp = 0.25;
+
+	final SimulationEngine engine;
+
+	/**
+	 * The time between frames, in nanoseconds.
+	 */
+	final long frameNanos;
+
+	/**
+	 * The most simulated time run in one frame, in seconds.
+	 */
+	final double maxCatchUp;
+
+	/**
+	 * The most ticks run in one frame.
+	 */
+	final long maxTicksPerFrame;
+
+	/**
+	 * The number of ticks dropped so far to stop falling further behind.
+	 */
+	volatile long droppedTicks = 0;
+
+	/**
+	 * Run at {@link Config#FPS} frames a second, catching up at most
+	 * {@link #defaultMaxCatchUp} seconds in a frame.
+	 * @param _engine the engine to run.
+	 */
+	public RealTimeScheduler(SimulationEngine _engine)
+	{
+		this(_engine, Config.FPS, defaultMaxCatchUp);
+	}
+
+	/**
+	 * @param _engine the engine to run.
+	 * @param framesPerSecond how many frames to run a second.
+	 * @param _maxCatchUp the most simulated time to run in one frame, in
+	 * seconds. At least one tick is always run if one is due.
+	 */
+	public RealTimeScheduler(SimulationEngine _engine, double framesPerSecond,
+			double _maxCatchUp)
+	{
+		if (!(framesPerSecond > 0))
+			throw new IllegalArgumentException("Invalid frame rate!");
+		if (!(_maxCatchUp > 0))
+			throw new IllegalArgumentException("Invalid catch up time!");
+		engine = _engine;
+		frameNanos = Math.max(1, Math.round(1e9 / framesPerSecond));
+		maxCatchUp = _maxCatchUp;
+		maxTicksPerFrame = Math.max(1,
+				(long) Math.floor(maxCatchUp / engine.stepSize));
+	}
+
+	/**
+	 * Run the simulation on a thread of its own until it runs out of ticks
+	 * or is stopped.
+	 * @param whenDone run on the simulation thread once it stops, or null.
+	 * @return the thread, which has already been started.
+	 */
+	public Thread start(Runnable whenDone)
+	{
+		Thread thread = new Thread(() -> {
+			run();
+			if (whenDone != null) whenDone.run();
+		}, "Simulation");
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Run the simulation in real time on this thread until it runs out of
+	 * ticks or is stopped.
+	 */
+	public void run()
+	{
+		final double stepNanos = engine.stepSize * 1e9;
+		final long startTick = engine.model.getTicks();
+		final long origin = System.nanoTime();
+		long nextFrame = origin;
+		while (!engine.isFinished())
+		{
+			// Every tick that should have happened by now, apart from the
+			// ones that were dropped.
+			final long elapsed = System.nanoTime() - origin;
+			final long due = startTick + (long) (elapsed / stepNanos)
+					- droppedTicks;
+			long behind = due - engine.model.getTicks();
+			if (behind > maxTicksPerFrame)
+			{
+				droppedTicks += behind - maxTicksPerFrame;
+				behind = maxTicksPerFrame;
+			}
+			// A stop request is only noticed by the next step.
+			if (behind == 0 && engine.stopRequested) behind = 1;
+			for (long i = 0; i < behind; i++) if (!engine.step()) break;
+			engine.frame();
+
+			final long now = System.nanoTime();
+			final double simulated = (engine.model.getTicks() - startTick
+					+ droppedTicks) * stepNanos;
+			engine.lagNanos = Math.max(0, (long) ((now - origin) - simulated));
+
+			// Frames that were missed aren't made up.
+			nextFrame = Math.max(nextFrame + frameNanos, now);
+			LockSupport.parkNanos(nextFrame - now);
+		}
+	}
+
+	/**
+	 * Get the number of ticks dropped so far because the simulation
+	 * couldn't keep up. The simulation is this far behind real time for
+	 * good.
+	 */
+	public long getDroppedTicks()
+	{
+		return droppedTicks;
+	}
+}
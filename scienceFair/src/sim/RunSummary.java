@@ -0,0 +1,65 @@
+package sim;
+
+/**
+ * The outcome of a single run of a {@link ParameterSweep}. 
+ * @author AD417
+ *
+ */
+public final class RunSummary 
+{
+	public final SweepParameters parameters;
+	
+	/**
+	 * The number of ticks that were simulated. 
+	 */
+	public final long ticks;
+	
+	/**
+	 * The state of the pendulum after the last tick. 
+	 */
+	public final double theta1, thetaPrime1, theta2, thetaPrime2;
+	
+	/**
+	 * The total energy before the first and after the last tick. 
+	 */
+	public final double initialEnergy, finalEnergy;
+	
+	/**
+	 * The worst energy error seen during the run, relative to the 
+	 * initial energy, or to {@link physics.DoublePendulum#getEnergyScale()}
+	 * if that is larger, so a pendulum starting at rest doesn't give NaN. 
+	 */
+	public final double maxEnergyError;
+	
+	/**
+	 * How long the run took, in nanoseconds of real time. 
+	 */
+	public final long nanos;
+	
+	public RunSummary(SweepParameters _parameters, long _ticks, 
+			double _theta1, double _thetaPrime1, 
+			double _theta2, double _thetaPrime2,
+			double _initialEnergy, double _finalEnergy, 
+			double _maxEnergyError, long _nanos)
+	{
+		parameters = _parameters;
+		ticks = _ticks;
+		theta1 = _theta1;
+		thetaPrime1 = _thetaPrime1;
+		theta2 = _theta2;
+		thetaPrime2 = _thetaPrime2;
+		initialEnergy = _initialEnergy;
+		finalEnergy = _finalEnergy;
+		maxEnergyError = _maxEnergyError;
+		nanos = _nanos;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "RunSummary{" + parameters + ", ticks: " + ticks + 
+				", t1: " + theta1 + ", dt1: " + thetaPrime1 + 
+				", t2: " + theta2 + ", dt2: " + thetaPrime2 + 
+				", energy error: " + maxEnergyError + "}";
+	}
+}
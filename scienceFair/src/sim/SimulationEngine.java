@@ -0,0 +1,216 @@
+package sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import math.AbstractSolverMethod;
+import monitor.SolverStepEvent;
+
+/**
+ * Runs a {@link Model} with a solver, a fixed step size and a tick budget.
+ * <br><br>
+ * The engine has no idea what a screen is: {@link #run()} steps the model
+ * as fast as the CPU allows until the budget runs out, and anything that 
+ * wants to watch (a window, a recorder) registers as a 
+ * {@link SimulationObserver}. {@link #start(Runnable)} runs it in real time
+ * on a thread of its own instead, with a {@link RealTimeScheduler}.
+ * @author AD417
+ *
+ */
+public class SimulationEngine 
+{
+	final Model model;
+	
+	final AbstractSolverMethod solver;
+	
+	/**
+	 * The amount of simulated time per tick, in seconds. 
+	 */
+	final double stepSize;
+	
+	/**
+	 * The tick at which the simulation stops.
+	 */
+	final long maxTicks;
+	
+	final List<SimulationObserver> observers = new ArrayList<>();
+	
+	/**
+	 * Set from any thread to stop the simulation after the current tick.
+	 */
+	volatile boolean stopRequested = false;
+	
+	boolean finished = false;
+	
+	/**
+	 * How far behind real time the simulation was at its last frame, in 
+	 * nanoseconds. Only set by a {@link RealTimeScheduler}. 
+	 */
+	volatile long lagNanos = 0;
+	
+	/**
+	 * @param _model the simulation to run. 
+	 * @param _solver a solver for an ODE of the model. 
+	 * @param _stepSize the amount of simulated time per tick, in seconds.
+	 * @param _maxTicks the tick at which the simulation stops. 
+	 */
+	public SimulationEngine(Model _model, AbstractSolverMethod _solver, 
+			double _stepSize, long _maxTicks)
+	{
+		if (_stepSize <= 0) 
+			throw new IllegalArgumentException("Invalid step size!");
+		model = _model;
+		solver = _solver;
+		stepSize = _stepSize;
+		maxTicks = _maxTicks;
+	}
+	
+	public void addObserver(SimulationObserver observer)
+	{
+		observers.add(observer);
+	}
+	
+	public void removeObserver(SimulationObserver observer)
+	{
+		observers.remove(observer);
+	}
+	
+	/**
+	 * Stop the simulation after the first tick at which a condition holds,
+	 * such as {@link math.EventDetector#isStopped()}. 
+	 * @param condition checked after every tick. 
+	 */
+	public void stopWhen(BooleanSupplier condition)
+	{
+		addObserver(tick -> {
+			if (condition.getAsBoolean()) stop();
+		});
+	}
+	
+	/**
+	 * Advance the simulation by one tick and notify the observers. 
+	 * @return false if the simulation had already finished, and nothing 
+	 * was done. 
+	 */
+	public boolean step()
+	{
+		if (finished) return false;
+		if (stopRequested || model.getTicks() >= maxTicks)
+		{
+			finish();
+			return false;
+		}
+		
+		// Free unless a flight recording has asked for solver steps. 
+		SolverStepEvent event = new SolverStepEvent();
+		event.begin();
+		final long evaluations = solver.getEvaluations();
+		solver.step(stepSize);
+		final long tick = model.getTicks() + 1;
+		model.setTicks(tick);
+		event.end();
+		if (event.shouldCommit())
+		{
+			event.solver = solver.getClass().getSimpleName();
+			event.tick = tick;
+			event.evaluations = solver.getEvaluations() - evaluations;
+			event.commit();
+		}
+		
+		for (int i = 0; i < observers.size(); i++) 
+			observers.get(i).onTick(tick);
+		
+		if (tick >= maxTicks) finish();
+		return true;
+	}
+	
+	/**
+	 * Run the simulation until it runs out of ticks or is stopped, as fast
+	 * as possible. 
+	 * @return the number of ticks that were simulated by this call. 
+	 */
+	public long run()
+	{
+		final long start = model.getTicks();
+		while (step());
+		return model.getTicks() - start;
+	}
+	
+	/**
+	 * Run the simulation on a thread of its own in real time, with a 
+	 * {@link RealTimeScheduler} at {@link physics.Config#FPS} frames a 
+	 * second, until it runs out of ticks or is stopped. <br>
+	 * <br>
+	 * Observers are called on that thread, so anything that draws the 
+	 * simulation should only look at what they hand over, never at the 
+	 * model itself. 
+	 * @param whenDone run on the simulation thread once it stops, or null.
+	 * @return the thread, which has already been started. 
+	 */
+	public Thread start(Runnable whenDone)
+	{
+		return new RealTimeScheduler(this).start(whenDone);
+	}
+	
+	/**
+	 * Tell the observers that a frame of real time is over. 
+	 */
+	void frame()
+	{
+		final long tick = model.getTicks();
+		for (int i = 0; i < observers.size(); i++) 
+			observers.get(i).onFrame(tick);
+	}
+	
+	/**
+	 * Ask the simulation to stop after the current tick. Safe to call from
+	 * any thread. 
+	 */
+	public void stop()
+	{
+		stopRequested = true;
+	}
+	
+	void finish()
+	{
+		finished = true;
+		final long tick = model.getTicks();
+		for (int i = 0; i < observers.size(); i++) 
+			observers.get(i).onFinish(tick);
+	}
+	
+	public boolean isFinished()
+	{
+		return finished;
+	}
+	
+	public Model getModel()
+	{
+		return model;
+	}
+	
+	public AbstractSolverMethod getSolver()
+	{
+		return solver;
+	}
+	
+	public double getStepSize()
+	{
+		return stepSize;
+	}
+	
+	public long getMaxTicks()
+	{
+		return maxTicks;
+	}
+	
+	/**
+	 * Get how far behind real time the simulation is. 
+	 * @return the lag, in nanoseconds. 0 unless running in real time. 
+	 */
+	public long getLagNanos()
+	{
+		return lagNanos;
+	}
+}
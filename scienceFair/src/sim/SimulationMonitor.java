@@ -0,0 +1,252 @@
+package sim;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import math.AbstractSolverMethod;
+import monitor.SimulationMonitorMBean;
+
+/**
+ * Shows the health of a running simulation through JMX, under 
+ * <code>scienceFair:type=Simulation</code>, for as long as it runs. <br>
+ * <br>
+ * Every few ticks, the simulation thread takes a sample: how fast it is
+ * going, how hard the solver is working, and how far the energy has 
+ * drifted. JMX only ever reads the last sample, so it never touches the 
+ * simulation itself. Between samples, a tick costs one comparison. <br>
+ * <br>
+ * Only {@link SimulationMonitorMBean} is exported from the module, since 
+ * that is all JMX needs to see, so this is registered through a 
+ * {@link StandardMBean} of that interface. 
+ * @author AD417
+ *
+ */
+public class SimulationMonitor implements SimulationMonitorMBean, 
+		SimulationObserver 
+{
+	/**
+	 * Used to tell apart simulations with the same name. 
+	 */
+	static final AtomicInteger ids = new AtomicInteger();
+	
+	final SimulationEngine engine;
+	
+	final Model model;
+	
+	final AbstractSolverMethod solver;
+	
+	/**
+	 * How many ticks pass between each sample. 
+	 */
+	final int ticksPerSample;
+	
+	final ObjectName name;
+	
+	final double initialEnergy;
+	
+	/**
+	 * The tick, time and evaluation count at the last sample. Only 
+	 * touched by the simulation thread. 
+	 */
+	long lastTick, lastTime, lastEvaluations;
+	
+	// The last sample, for JMX to read. 
+	volatile long ticks;
+	volatile double stepsPerSecond, evaluationsPerStep, energy, drift, 
+			worstDrift;
+	volatile boolean finished = false;
+	
+	/**
+	 * @param _engine the engine to watch. Add the monitor to it as an 
+	 * observer, or use {@link #attach(SimulationEngine, String)}. 
+	 * @param _name the name to show in JMX. 
+	 * @param _ticksPerSample how many ticks pass between each sample. 
+	 */
+	public SimulationMonitor(SimulationEngine _engine, String _name, 
+			int _ticksPerSample)
+	{
+		if (_ticksPerSample < 1) 
+			throw new IllegalArgumentException("Invalid sample interval!");
+		engine = _engine;
+		model = engine.getModel();
+		solver = engine.getSolver();
+		ticksPerSample = _ticksPerSample;
+		
+		initialEnergy = model.getTotalEnergy();
+		energy = initialEnergy;
+		lastTick = ticks = model.getTicks();
+		lastTime = System.nanoTime();
+		lastEvaluations = solver.getEvaluations();
+		
+		try 
+		{
+			name = new ObjectName("scienceFair:type=Simulation,name=" 
+					+ ObjectName.quote(_name) + ",id=" + ids.incrementAndGet());
+		}
+		catch (JMException e)
+		{
+			throw new IllegalArgumentException("Invalid name!", e);
+		}
+	}
+	
+	/**
+	 * Watch an engine, and show it through JMX until it finishes. 
+	 * @param engine the engine to watch. 
+	 * @param name the name to show in JMX. 
+	 * @return the monitor. 
+	 */
+	public static SimulationMonitor attach(SimulationEngine engine, 
+			String name)
+	{
+		SimulationMonitor monitor = new SimulationMonitor(engine, name, 100);
+		monitor.register();
+		engine.addObserver(monitor);
+		return monitor;
+	}
+	
+	public void register()
+	{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try 
+		{
+			server.registerMBean(
+					new StandardMBean(this, SimulationMonitorMBean.class), name);
+		}
+		catch (JMException e)
+		{
+			throw new IllegalStateException("Couldn't register " + name, e);
+		}
+	}
+	
+	public void unregister()
+	{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try 
+		{
+			if (server.isRegistered(name)) server.unregisterMBean(name);
+		}
+		catch (JMException e)
+		{
+			throw new IllegalStateException("Couldn't unregister " + name, e);
+		}
+	}
+	
+	@Override
+	public void onTick(long tick)
+	{
+		if (tick - lastTick < ticksPerSample) return;
+		sample(tick);
+	}
+	
+	@Override
+	public void onFinish(long tick)
+	{
+		sample(tick);
+		finished = true;
+		unregister();
+	}
+	
+	/**
+	 * Take a sample. Called on the simulation thread. 
+	 */
+	void sample(long tick)
+	{
+		final long time = System.nanoTime();
+		final long evaluations = solver.getEvaluations();
+		final long steps = tick - lastTick;
+		if (steps > 0)
+		{
+			stepsPerSecond = steps * 1e9 / Math.max(1, time - lastTime);
+			evaluationsPerStep = (double) (evaluations - lastEvaluations) 
+					/ steps;
+		}
+		
+		final double e = model.getTotalEnergy();
+		final double d = model.relativeEnergyError(e - initialEnergy, 
+				initialEnergy);
+		energy = e;
+		drift = d;
+		if (Math.abs(d) > worstDrift) worstDrift = Math.abs(d);
+		
+		lastTick = tick;
+		lastTime = time;
+		lastEvaluations = evaluations;
+		ticks = tick;
+	}
+	
+	public ObjectName getName()
+	{
+		return name;
+	}
+	
+	@Override
+	public String getModel()
+	{
+		return model.getClass().getSimpleName();
+	}
+	
+	@Override
+	public String getSolver()
+	{
+		return solver.getClass().getSimpleName();
+	}
+	
+	@Override
+	public long getTicks()
+	{
+		return ticks;
+	}
+	
+	@Override
+	public double getStepsPerSecond()
+	{
+		return stepsPerSecond;
+	}
+	
+	@Override
+	public double getEvaluationsPerStep()
+	{
+		return evaluationsPerStep;
+	}
+	
+	@Override
+	public double getInitialEnergy()
+	{
+		return initialEnergy;
+	}
+	
+	@Override
+	public double getEnergy()
+	{
+		return energy;
+	}
+	
+	@Override
+	public double getEnergyDrift()
+	{
+		return drift;
+	}
+	
+	@Override
+	public double getWorstEnergyDrift()
+	{
+		return worstDrift;
+	}
+	
+	@Override
+	public double getLagMillis()
+	{
+		return engine.getLagNanos() * 1e-6;
+	}
+	
+	@Override
+	public boolean isFinished()
+	{
+		return finished;
+	}
+}
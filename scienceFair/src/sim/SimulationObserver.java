@@ -0,0 +1,33 @@
+package sim;
+
+/**
+ * Something that watches a {@link SimulationEngine} run, such as a 
+ * recorder or a window. <br>
+ * <br>
+ * Observers are called on the thread that runs the engine, right after 
+ * each tick, so they should return quickly. 
+ * @author AD417
+ *
+ */
+@FunctionalInterface
+public interface SimulationObserver 
+{
+	/**
+	 * Called after every tick of the simulation. 
+	 * @param tick the number of ticks that have been simulated so far.
+	 */
+	void onTick(long tick);
+	
+	/**
+	 * Called once, after the last tick of the simulation. 
+	 * @param tick the number of ticks that were simulated.
+	 */
+	default void onFinish(long tick) {}
+	
+	/**
+	 * Called after the ticks of each frame, when the simulation is run in
+	 * real time by a {@link RealTimeScheduler}. 
+	 * @param tick the number of ticks that have been simulated so far.
+	 */
+	default void onFrame(long tick) {}
+}
@@ -0,0 +1,61 @@
+package sim;
+
+import physics.Config;
+
+/**
+ * The parameters of a single {@link physics.DoublePendulum} run in a 
+ * {@link ParameterSweep}. Immutable, so it can be handed between threads 
+ * freely. 
+ * @author AD417
+ *
+ */
+public final class SweepParameters 
+{
+	/**
+	 * Rod lengths and masses of the two bobs. 
+	 */
+	public final double l1, m1, l2, m2;
+	
+	/**
+	 * Starting angles and angular velocities of the two bobs. 
+	 */
+	public final double theta1, thetaPrime1, theta2, thetaPrime2;
+	
+	/**
+	 * The force of gravity, in m/s^2. 
+	 */
+	public final double gravity;
+	
+	public SweepParameters(double _l1, double _m1, double _l2, double _m2,
+			double _theta1, double _thetaPrime1, 
+			double _theta2, double _thetaPrime2)
+	{
+		this(_l1, _m1, _l2, _m2, _theta1, _thetaPrime1, _theta2, 
+				_thetaPrime2, Config.gravity);
+	}
+	
+	public SweepParameters(double _l1, double _m1, double _l2, double _m2,
+			double _theta1, double _thetaPrime1, 
+			double _theta2, double _thetaPrime2, double _gravity)
+	{
+		l1 = _l1;
+		m1 = _m1;
+		l2 = _l2;
+		m2 = _m2;
+		theta1 = _theta1;
+		thetaPrime1 = _thetaPrime1;
+		theta2 = _theta2;
+		thetaPrime2 = _thetaPrime2;
+		gravity = _gravity;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "SweepParameters{l1: " + l1 + ", m1: " + m1 + 
+				", l2: " + l2 + ", m2: " + m2 + 
+				", t1: " + theta1 + ", dt1: " + thetaPrime1 + 
+				", t2: " + theta2 + ", dt2: " + thetaPrime2 + 
+				", g: " + gravity + "}";
+	}
+}
@@ -0,0 +1,84 @@
+package sim;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands the latest state of a simulation from the thread that runs it to 
+ * the thread that draws it, without either one ever waiting. <br>
+ * <br>
+ * There are three buffers: the writer fills the back one, the reader draws
+ * the front one, and the middle one is swapped between them with a single 
+ * atomic operation. The writer can publish as often as it likes, and the 
+ * reader only ever sees the most recent complete state. Nothing is 
+ * allocated after construction. <br>
+ * <br>
+ * Only one thread may write, and only one thread may read. 
+ * @author AD417
+ *
+ */
+public class TripleBuffer 
+{
+	/**
+	 * Set on the middle index when it holds a state the reader hasn't 
+	 * seen yet. 
+	 */
+	static final int FRESH = 4;
+	
+	static final int INDEX = 3;
+	
+	final double[][] buffers;
+	
+	/**
+	 * The index of the middle buffer, and whether it is fresh. 
+	 */
+	final AtomicInteger middle = new AtomicInteger(1);
+	
+	/**
+	 * The buffer the writer is filling. Only touched by the writer.
+	 */
+	int back = 0;
+	
+	/**
+	 * The buffer the reader is drawing. Only touched by the reader.
+	 */
+	int front = 2;
+	
+	/**
+	 * @param size the number of values in each state. 
+	 */
+	public TripleBuffer(int size)
+	{
+		buffers = new double[3][size];
+	}
+	
+	/**
+	 * Get the buffer to write the next state into. Call 
+	 * {@link #publish()} once it is filled. 
+	 * @return the back buffer. 
+	 */
+	public double[] getBack()
+	{
+		return buffers[back];
+	}
+	
+	/**
+	 * Make the state in the back buffer the latest one, and get a new back
+	 * buffer. 
+	 */
+	public void publish()
+	{
+		back = middle.getAndSet(back | FRESH) & INDEX;
+	}
+	
+	/**
+	 * Get the most recently published state. The array stays valid, and 
+	 * unchanged, until the next call to this method. 
+	 * @return the front buffer. 
+	 */
+	public double[] getLatest()
+	{
+		if ((middle.get() & FRESH) != 0) 
+			front = middle.getAndSet(front) & INDEX;
+		return buffers[front];
+	}
+}